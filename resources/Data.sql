@@ -18,6 +18,19 @@ create table ticket(
  FOREIGN KEY (PARKING_NUMBER)
  REFERENCES parking(PARKING_NUMBER));
 
+create table ticket_archive(
+ ID int PRIMARY KEY,
+ PARKING_NUMBER int NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL);
+
+create table vehicle_visit_summary(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ ARCHIVED_TICKETS int NOT NULL);
+
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
@@ -45,6 +58,19 @@ create table ticket(
  FOREIGN KEY (PARKING_NUMBER)
  REFERENCES parking(PARKING_NUMBER));
 
+create table ticket_archive(
+ ID int PRIMARY KEY,
+ PARKING_NUMBER int NOT NULL,
+ TYPE varchar(10) NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL);
+
+create table vehicle_visit_summary(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ ARCHIVED_TICKETS int NOT NULL);
+
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
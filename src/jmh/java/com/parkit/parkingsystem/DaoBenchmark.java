@@ -0,0 +1,119 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JDBC paths of the DAOs against an embedded H2 database holding HISTORY closed tickets,
+ * next to the in-memory paths that replace them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DaoBenchmark {
+
+    private static final int HISTORY = 10_000;
+    private static final int PLATES = 1_000;
+
+    private EmbeddedDataBaseConfig dataBaseConfig;
+    private TicketDAO ticketDAO;
+    private ParkingSpotDAO parkingSpotDAO;
+    private ParkingSpotDAO allocatedParkingSpotDAO;
+    private int plate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataBaseConfig = new EmbeddedDataBaseConfig("jdbc:h2:mem:dao_benchmark;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        if (!new SchemaMigrator(dataBaseConfig, false).migrate()) {
+            throw new IllegalStateException("Schema migration failed");
+        }
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        allocatedParkingSpotDAO = new ParkingSpotDAO();
+        allocatedParkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        allocatedParkingSpotDAO.loadAllocator();
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < HISTORY; i++) {
+            Ticket ticket = ticket("PLATE" + (i % PLATES), new Date(now - TimeUnit.DAYS.toMillis(i % 365) - TimeUnit.HOURS.toMillis(2)));
+            ticket.setOutTime(new Date(ticket.getInTime().getTime() + TimeUnit.HOURS.toMillis(1)));
+            ticket.setPrice(1.5);
+            ticketDAO.saveTicket(ticket);
+        }
+        ticketDAO.saveTicket(ticket("OPEN1", new Date(now - TimeUnit.HOURS.toMillis(1))));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DataBaseConfig.shutdownPools();
+    }
+
+    private static Ticket ticket(String vehicleRegNumber, Date inTime) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(inTime);
+        return ticket;
+    }
+
+    @Benchmark
+    public boolean saveAndCloseTicket() {
+        Ticket ticket = ticket("BENCH" + (plate++ % PLATES), new Date());
+        ticketDAO.saveTicket(ticket);
+        ticket.setOutTime(new Date());
+        ticket.setPrice(0);
+        return ticketDAO.updateTicket(ticket);
+    }
+
+    @Benchmark
+    public Ticket getOpenTicketFromDatabase() {
+        ticketDAO.activeTicketCache.clear();
+        return ticketDAO.getTicket("OPEN1");
+    }
+
+    @Benchmark
+    public Ticket getOpenTicketFromCache() {
+        return ticketDAO.getTicket("OPEN1");
+    }
+
+    @Benchmark
+    public int countTicketsFromDatabase() {
+        return ticketDAO.getNbTicket("PLATE" + (plate++ % PLATES));
+    }
+
+    @Benchmark
+    public int nextAvailableSlotFromDatabase() {
+        return parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+    }
+
+    @Benchmark
+    public int nextAvailableSlotFromAllocator() {
+        return allocatedParkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+    }
+}
@@ -0,0 +1,60 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * calculateFare for both vehicle types, with and without the loyalty discount; 20 minutes hits the free branch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FareCalculatorBenchmark {
+
+    @Param({"CAR", "BIKE"})
+    private ParkingType parkingType;
+
+    @Param({"false", "true"})
+    private boolean discount;
+
+    @Param({"20", "150"})
+    private int minutes;
+
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private Ticket ticket;
+
+    @Setup
+    public void setUp() {
+        long outTime = System.currentTimeMillis();
+        ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(outTime - TimeUnit.MINUTES.toMillis(minutes)));
+        ticket.setOutTime(new Date(outTime));
+    }
+
+    @Benchmark
+    public double calculateFare() {
+        fareCalculatorService.calculateFare(ticket, discount);
+        return ticket.getPrice();
+    }
+}
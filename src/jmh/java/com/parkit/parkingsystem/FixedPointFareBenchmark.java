@@ -0,0 +1,63 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.FixedPointFareEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stays priced per second by the fixed-point engine, one at a time and in batches of BATCH.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixedPointFareBenchmark {
+
+    private static final int BATCH = 4096;
+
+    private final FixedPointFareEngine fareEngine = new FixedPointFareEngine();
+    private final ParkingType[] parkingTypes = new ParkingType[BATCH];
+    private final long[] inMillis = new long[BATCH];
+    private final long[] outMillis = new long[BATCH];
+    private final boolean[] discounts = new boolean[BATCH];
+    private final long[] prices = new long[BATCH];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < BATCH; i++) {
+            parkingTypes[i] = random.nextBoolean() ? ParkingType.CAR : ParkingType.BIKE;
+            outMillis[i] = 1_700_000_000_000L + random.nextInt(1_000_000);
+            inMillis[i] = outMillis[i] - random.nextInt(10 * 60 * 60 * 1000);
+            discounts[i] = random.nextBoolean();
+        }
+    }
+
+    @Benchmark
+    public long priceOneStay() {
+        int i = next++ & (BATCH - 1);
+        return fareEngine.priceCents(parkingTypes[i], inMillis[i], outMillis[i], discounts[i]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long priceBatch() {
+        return fareEngine.priceCents(parkingTypes, inMillis, outMillis, discounts, prices, 0, BATCH);
+    }
+}
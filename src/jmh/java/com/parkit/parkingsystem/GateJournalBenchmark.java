@@ -0,0 +1,80 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.GateJournal;
+import com.parkit.parkingsystem.dao.GateJournal.FsyncPolicy;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost one gate operation adds to the hot path: its journal record plus the done record. The target is
+ * well over 50k operations per second with the default policy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GateJournalBenchmark {
+
+    @Param({"NONE", "INTERVAL"})
+    private FsyncPolicy fsync;
+
+    private Path directory;
+    private GateJournal journal;
+    private final Ticket ticket = new Ticket();
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("gate-journal");
+        journal = new GateJournal(directory, 16 << 20, fsync, 100);
+        ticket.setParkingSpot(new ParkingSpot(12, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("AB123CD");
+        ticket.setInTime(new Date());
+        ticket.setOutTime(new Date());
+        ticket.setPrice(1.5);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void entry() {
+        journal.done(journal.entering(ticket));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void entryContended() {
+        journal.done(journal.entering(ticket));
+    }
+}
@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.builder.api.AppenderComponentBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.api.RootLoggerComponentBuilder;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gate transactions per second when each one logs the connection lifecycle, as DataBaseConfig did at INFO
+ * (open, three statement and result set closes, connection close: about 10 lines per transaction), with all
+ * gate threads logging at once:
+ * <ul>
+ * <li>sync: synchronous logger, file flushed at every line, the behavior before log4j2.xml</li>
+ * <li>async: asynchronous logger and unflushed RandomAccessFile, as in log4j2.xml</li>
+ * <li>disabled: lifecycle at TRACE below the INFO level of log4j2.xml, the shipped setting</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class LoggingBenchmark {
+
+    private static final int LINES_PER_TRANSACTION = 10;
+
+    @Param({"sync", "async", "disabled"})
+    public String mode;
+
+    private Logger logger;
+    private Level level;
+
+    @Setup
+    public void setUp() {
+        ConfigurationBuilder<BuiltConfiguration> builder = ConfigurationBuilderFactory.newConfigurationBuilder();
+        builder.setStatusLevel(Level.WARN);
+        AppenderComponentBuilder file = builder.newAppender("file", "RandomAccessFile")
+                .addAttribute("fileName", "target/jmh-logging/" + mode + ".log")
+                .addAttribute("append", false)
+                .addAttribute("immediateFlush", "sync".equals(mode))
+                .add(builder.newLayout("PatternLayout").addAttribute("pattern", "%d{ISO8601} %-5level [%t] %c{1} - %m%n"));
+        builder.add(file);
+        RootLoggerComponentBuilder root = "async".equals(mode)
+                ? builder.newAsyncRootLogger(Level.INFO) : builder.newRootLogger(Level.INFO);
+        builder.add(root.addAttribute("includeLocation", false).add(builder.newAppenderRef("file")));
+        Configurator.reconfigure(builder.build());
+        logger = LogManager.getLogger("com.parkit.parkingsystem.config.DataBaseConfig");
+        level = "disabled".equals(mode) ? Level.TRACE : Level.INFO;
+    }
+
+    @TearDown
+    public void tearDown() {
+        LogManager.shutdown();
+    }
+
+    @Benchmark
+    public void gateTransaction() {
+        for (int i = 0; i < LINES_PER_TRANSACTION; i++) {
+            logger.log(level, "Closing Prepared Statement");
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.util.OperationTimer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of timing one operation (start + stop), against System.nanoTime() alone; the target is under 100 ns,
+ * also with all gate threads recording into the same timer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationTimerBenchmark {
+
+    private final OperationTimer timer = new OperationTimer("benchmark", TimeUnit.SECONDS.toNanos(1));
+
+    @Benchmark
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public void startStop() {
+        timer.stop(timer.start());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void startStopContended() {
+        timer.stop(timer.start());
+    }
+}
@@ -0,0 +1,129 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The console entry and exit flows with DAOs answering from memory: measures the service layer alone
+ * (input parsing, ticket building, fare, console output).
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParkingServiceBenchmark {
+
+    private ParkingService parkingService;
+    private Ticket openTicket;
+    private PrintStream console;
+
+    @Setup
+    public void setUp() {
+        console = System.out;
+        // les messages de la console ne doivent pas être mesurés comme des écritures sur le terminal
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+
+        InputReaderUtil inputReaderUtil = new InputReaderUtil() {
+            @Override
+            public int readSelection() {
+                return 1;
+            }
+
+            @Override
+            public String readVehicleRegistrationNumber() {
+                return "ABCDEF";
+            }
+        };
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO() {
+            @Override
+            public int getNextAvailableSlot(ParkingType parkingType) {
+                return 1;
+            }
+
+            @Override
+            public boolean claimParkingSpot(ParkingSpot parkingSpot) {
+                return true;
+            }
+
+            @Override
+            public boolean updateParking(ParkingSpot parkingSpot) {
+                return true;
+            }
+        };
+        TicketDAO ticketDAO = new TicketDAO() {
+            @Override
+            public boolean saveTicket(Ticket ticket) {
+                return true;
+            }
+
+            @Override
+            public Ticket getTicket(String vehicleRegNumber) {
+                openTicket.setOutTime(null);
+                return openTicket;
+            }
+
+            @Override
+            public int getNbTicket(String vehicleRegNumber) {
+                return 2;
+            }
+
+            @Override
+            public boolean updateTicket(Ticket ticket) {
+                return true;
+            }
+        };
+        parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+
+        openTicket = new Ticket();
+        openTicket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        openTicket.setVehicleRegNumber("ABCDEF");
+        openTicket.setInTime(new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public void processIncomingVehicle() {
+        parkingService.processIncomingVehicle();
+    }
+
+    @Benchmark
+    public double processExitingVehicle() {
+        parkingService.processExitingVehicle();
+        return openTicket.getPrice();
+    }
+}
@@ -0,0 +1,65 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.Tariff;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stays priced per second by a banded, capped tariff; the cost should not grow with maxStayDays.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TariffBenchmark {
+
+    private static final int STAYS = 4096;
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Param({"1", "30"})
+    public int maxStayDays;
+
+    private Tariff tariff;
+    private final ParkingType[] parkingTypes = new ParkingType[STAYS];
+    private final long[] inMillis = new long[STAYS];
+    private final long[] outMillis = new long[STAYS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.setProperty("tariff.zone", "Europe/Paris");
+        properties.setProperty("tariff.CAR.bands", "08:00-19:00@2.0,22:00-06:00@0.5");
+        properties.setProperty("tariff.CAR.dailyCap", "20");
+        properties.setProperty("tariff.BIKE.bands", "22:00-06:00@0.3");
+        tariff = Tariff.load(properties);
+        Random random = new Random(42);
+        for (int i = 0; i < STAYS; i++) {
+            parkingTypes[i] = random.nextBoolean() ? ParkingType.CAR : ParkingType.BIKE;
+            outMillis[i] = 1_700_000_000_000L + random.nextInt(1_000_000);
+            inMillis[i] = outMillis[i] - (long) (random.nextDouble() * maxStayDays * DAY);
+        }
+    }
+
+    @Benchmark
+    public long priceOneStay() {
+        int i = next++ & (STAYS - 1);
+        return tariff.priceCents(parkingTypes[i], inMillis[i], outMillis[i], (i & 1) == 0);
+    }
+}
@@ -4,10 +4,29 @@ import com.parkit.parkingsystem.service.InteractiveShell;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.file.Paths;
+import java.time.LocalDate;
+
 public class App {
-    private static final Logger logger = LogManager.getLogger("App");
-    public static void main(String args[]){
+    private static final Logger logger = LogManager.getLogger(App.class);
+    public static void main(String args[]) throws Exception {
         logger.info("Initializing Parking System");
-        InteractiveShell.loadInterface();
+        // "server" : les bornes se connectent en TCP au lieu de la console
+        if (args.length > 0 && "server".equals(args[0])) {
+            InteractiveShell.loadGateServer();
+        } else if (args.length == 4 && "settle".equals(args[0])) {
+            // settle <premier jour> <dernier jour> <fichier du rapport>, jours au format AAAA-MM-JJ
+            boolean settled = InteractiveShell.loadSettlement(LocalDate.parse(args[1]), LocalDate.parse(args[2]),
+                    Paths.get(args[3]));
+            System.exit(settled ? 0 : 1);
+        } else if (args.length == 2 && "ingest".equals(args[0])) {
+            // ingest <fichier d'événements>, CSV ou JSON lines des caméras des bornes
+            System.exit(InteractiveShell.loadIngestion(Paths.get(args[1])) ? 0 : 1);
+        } else if (args.length > 0 && "loadtest".equals(args[0])) {
+            // trafic simulé, profil donné par les propriétés -Dparkit.load.*
+            InteractiveShell.loadTrafficGenerator();
+        } else {
+            InteractiveShell.loadInterface();
+        }
     }
 }
@@ -0,0 +1,367 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded pool of JDBC connections.
+ * Connections handed out are proxies: closing them gives the physical connection back to the pool,
+ * and any statement left open by the borrower is closed and counted as a leak.
+ */
+public class ConnectionPool {
+
+    private static final Logger logger = LogManager.getLogger(ConnectionPool.class);
+
+    public interface ConnectionFactory {
+        Connection create() throws ClassNotFoundException, SQLException;
+    }
+
+    private final String name;
+    private final ConnectionFactory factory;
+    private final PoolSettings settings;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition connectionReturned = lock.newCondition();
+    // LIFO: the most recently used connection is handed out first, so the tail holds the idlest ones
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private int total;
+    private int waiters;
+    private boolean closed;
+
+    private final LongAdder borrowCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder leakedConnections = new LongAdder();
+    private final LongAdder leakedStatements = new LongAdder();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+
+    private final ScheduledExecutorService housekeeper;
+
+    public ConnectionPool(String name, ConnectionFactory factory, PoolSettings settings) {
+        this.name = name;
+        this.factory = factory;
+        this.settings = settings;
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pool-housekeeper-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = settings.getHousekeepingIntervalMillis();
+        housekeeper.scheduleWithFixedDelay(this::houseKeep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public Connection borrow() throws ClassNotFoundException, SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(settings.getBorrowTimeoutMillis());
+        while (true) {
+            PooledConnection candidate = null;
+            lock.lock();
+            try {
+                while (candidate == null) {
+                    if (closed) {
+                        throw new SQLException("Connection pool " + name + " is closed");
+                    }
+                    candidate = idle.pollFirst();
+                    if (candidate == null && total < settings.getMaxSize()) {
+                        total++;
+                        break;
+                    }
+                    if (candidate == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            timeoutCount.increment();
+                            throw new SQLTimeoutException("Timed out after " + settings.getBorrowTimeoutMillis()
+                                    + " ms waiting for a connection from pool " + name + " (" + getStats() + ")");
+                        }
+                        waiters++;
+                        try {
+                            connectionReturned.awaitNanos(remaining);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new SQLException("Interrupted while waiting for a database connection", e);
+                        } finally {
+                            waiters--;
+                        }
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (candidate == null) {
+                candidate = openPhysicalConnection();
+            } else if (!isUsable(candidate)) {
+                destroy(candidate);
+                continue;
+            }
+            long waited = System.nanoTime() - start;
+            borrowCount.increment();
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+            return candidate.lease();
+        }
+    }
+
+    private PooledConnection openPhysicalConnection() throws ClassNotFoundException, SQLException {
+        try {
+            return new PooledConnection(factory.create());
+        } catch (ClassNotFoundException | SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                total--;
+                connectionReturned.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    private boolean isUsable(PooledConnection candidate) {
+        if (System.currentTimeMillis() - candidate.lastReturnedAt < settings.getValidationIntervalMillis()) {
+            return true;
+        }
+        try {
+            return candidate.raw.isValid(settings.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            logger.warn("Error while validating pooled connection", e);
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled, List<Statement> openStatements) {
+        borrowed.remove(pooled);
+        closeLeakedStatements(openStatements);
+        boolean reusable;
+        try {
+            reusable = !pooled.raw.isClosed();
+            if (reusable && !pooled.raw.getAutoCommit()) {
+                pooled.raw.rollback();
+                pooled.raw.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.warn("Discarding pooled connection that failed to reset", e);
+            reusable = false;
+        }
+        if (!reusable) {
+            destroy(pooled);
+            return;
+        }
+        pooled.lastReturnedAt = System.currentTimeMillis();
+        lock.lock();
+        try {
+            if (!closed) {
+                idle.addFirst(pooled);
+                connectionReturned.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        destroy(pooled);
+    }
+
+    private void closeLeakedStatements(List<Statement> openStatements) {
+        for (Statement statement : openStatements) {
+            try {
+                if (!statement.isClosed()) {
+                    leakedStatements.increment();
+                    logger.debug("Closing statement left open by its borrower");
+                    statement.close();
+                }
+            } catch (SQLException e) {
+                logger.error("Error while closing leaked statement", e);
+            }
+        }
+    }
+
+    private void destroy(PooledConnection pooled) {
+        if (pooled.statementCache != null) {
+            pooled.statementCache.closeAll();
+        }
+        try {
+            pooled.raw.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing pooled connection", e);
+        }
+        lock.lock();
+        try {
+            total--;
+            connectionReturned.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void houseKeep() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+            while (oldestFirst.hasNext() && total - evicted.size() > settings.getMinIdle()) {
+                PooledConnection pooled = oldestFirst.next();
+                if (now - pooled.lastReturnedAt > settings.getIdleTimeoutMillis()) {
+                    oldestFirst.remove();
+                    evicted.add(pooled);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pooled : evicted) {
+            destroy(pooled);
+        }
+
+        long threshold = settings.getLeakDetectionThresholdMillis();
+        if (threshold > 0) {
+            for (PooledConnection pooled : borrowed) {
+                if (!pooled.leakReported && now - pooled.leasedAt > threshold) {
+                    pooled.leakReported = true;
+                    leakedConnections.increment();
+                    logger.warn("Connection held for more than " + threshold + " ms, possible leak", pooled.leaseSite);
+                }
+            }
+        }
+    }
+
+    public PoolStats getStats() {
+        lock.lock();
+        try {
+            return new PoolStats(borrowed.size(), idle.size(), waiters, borrowCount.sum(), timeoutCount.sum(),
+                    totalWaitNanos.sum(), maxWaitNanos.get(), leakedConnections.sum(), leakedStatements.sum(),
+                    statementCacheHits.sum(), statementCacheMisses.sum());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void shutdown() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            connectionReturned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        housekeeper.shutdownNow();
+        for (PooledConnection pooled : toClose) {
+            destroy(pooled);
+        }
+        logger.info("Connection pool " + name + " shut down");
+    }
+
+    private class PooledConnection {
+        private final Connection raw;
+        private final StatementCache statementCache;
+        private volatile long lastReturnedAt = System.currentTimeMillis();
+        private volatile long leasedAt;
+        private volatile Throwable leaseSite;
+        private volatile boolean leakReported;
+
+        PooledConnection(Connection raw) {
+            this.raw = raw;
+            this.statementCache = settings.getStatementCacheSize() > 0
+                    ? new StatementCache(raw, settings.getStatementCacheSize(), statementCacheHits, statementCacheMisses)
+                    : null;
+        }
+
+        Connection lease() {
+            leasedAt = System.currentTimeMillis();
+            leakReported = false;
+            leaseSite = settings.getLeakDetectionThresholdMillis() > 0 ? new Throwable("Connection borrowed here") : null;
+            borrowed.add(this);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Lease(this));
+        }
+    }
+
+    /**
+     * One borrow of a pooled connection. Once closed, the handle can no longer reach the physical connection.
+     */
+    private class Lease implements InvocationHandler {
+        private final PooledConnection pooled;
+        private final List<Statement> openStatements = new ArrayList<>();
+        private boolean closed;
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        release(pooled, openStatements);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + pooled.raw;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            try {
+                Object result = isCacheable(method) ? prepareCached(args) : method.invoke(pooled.raw, args);
+                if (result instanceof Statement) {
+                    openStatements.add((Statement) result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private boolean isCacheable(Method method) {
+            if (pooled.statementCache == null || !"prepareStatement".equals(method.getName())) {
+                return false;
+            }
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            return parameterTypes.length == 1 || (parameterTypes.length == 2 && parameterTypes[1] == int.class);
+        }
+
+        private Object prepareCached(Object[] args) throws SQLException {
+            int autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : -1;
+            return pooled.statementCache.prepare((String) args[0], autoGeneratedKeys);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.parkit.parkingsystem.config;
 
+import com.parkit.parkingsystem.util.OperationMetrics;
+import com.parkit.parkingsystem.util.OperationTimer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -8,23 +10,112 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class DataBaseConfig {
 
-    private static final Logger logger = LogManager.getLogger("DataBaseConfig");
+    private static final Logger logger = LogManager.getLogger(DataBaseConfig.class);
+    private static final OperationTimer getConnectionTimer = OperationMetrics.timer("DataBaseConfig.getConnection");
+    private static final OperationTimer openConnectionTimer = OperationMetrics.timer("DataBaseConfig.openConnection");
+
+    // Un pool par base : les DAO créent chacun leur DataBaseConfig mais partagent les connexions
+    private static final ConcurrentMap<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+
+    private final String jdbcUrl;
+
+    public DataBaseConfig() {
+        this("jdbc:mysql://localhost:3306/prod");
+    }
+
+    /**
+     * MySQL database at this URL, e.g. the schema of one facility.
+     */
+    public DataBaseConfig(String jdbcUrl) {
+        this.jdbcUrl = jdbcUrl;
+    }
+
+    /**
+     * -Dparkit.db=embedded selects the in-process database, MySQL otherwise.
+     */
+    public static DataBaseConfig fromSystemProperties() {
+        return "embedded".equalsIgnoreCase(System.getProperty("parkit.db")) ? new EmbeddedDataBaseConfig() : new DataBaseConfig();
+    }
+
+    /**
+     * In-process database for jdbc:h2: URLs, MySQL otherwise.
+     */
+    public static DataBaseConfig forUrl(String jdbcUrl) {
+        return jdbcUrl.startsWith("jdbc:h2:") ? new EmbeddedDataBaseConfig(jdbcUrl) : new DataBaseConfig(jdbcUrl);
+    }
 
     public Connection getConnection() throws ClassNotFoundException, SQLException {
-        logger.info("Create DB connection");
+        long start = getConnectionTimer.start();
+        try {
+            return getConnectionPool().borrow();
+        } catch (Exception e) {
+            getConnectionTimer.error();
+            throw e;
+        } finally {
+            getConnectionTimer.stop(start);
+        }
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return pools.computeIfAbsent(getJdbcUrl(), url -> {
+            PoolSettings settings = PoolSettings.fromSystemProperties();
+            return new ConnectionPool(url, () -> openTimedConnection(settings), settings);
+        });
+    }
+
+    public PoolStats getPoolStats() {
+        return getConnectionPool().getStats();
+    }
+
+    // ouverture physique d'une connexion, distincte de l'emprunt au pool
+    private Connection openTimedConnection(PoolSettings settings) throws ClassNotFoundException, SQLException {
+        long start = openConnectionTimer.start();
+        try {
+            return openConnection(settings);
+        } catch (Exception e) {
+            openConnectionTimer.error();
+            throw e;
+        } finally {
+            openConnectionTimer.stop(start);
+        }
+    }
+
+    protected String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    protected Connection openConnection(PoolSettings settings) throws ClassNotFoundException, SQLException {
+        logger.debug("Create DB connection");
         Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/prod","root","rootroot");
+        Properties properties = new Properties();
+        properties.setProperty("user", "root");
+        properties.setProperty("password", "rootroot");
+        // les statements sont déjà mis en cache par le pool, le cache du driver ferait doublon
+        properties.setProperty("useServerPrepStmts", String.valueOf(settings.isServerSidePrepare()));
+        properties.setProperty("cachePrepStmts", "false");
+        // les lots JDBC (écriture différée, ingestion) partent en un insert multi-lignes au lieu d'un aller-retour par ligne
+        properties.setProperty("rewriteBatchedStatements", "true");
+        return DriverManager.getConnection(getJdbcUrl(), properties);
+    }
+
+    public static void shutdownPools() {
+        for (ConnectionPool pool : pools.values()) {
+            pool.shutdown();
+        }
+        pools.clear();
     }
 
     public void closeConnection(Connection con){
         if(con != null){
             try {
                 con.close();
-                logger.info("Closing DB connection");
+                logger.trace("Closing DB connection");
             } catch (SQLException e) {
                 logger.error("Error while closing connection", e);
             }
@@ -35,7 +126,7 @@ public class DataBaseConfig {
         if(ps != null){
             try {
                 ps.close();
-                logger.info("Closing Prepared Statement");
+                logger.trace("Closing Prepared Statement");
             } catch (SQLException e) {
                 logger.error("Error while closing prepared statement", e);
             }
@@ -46,7 +137,7 @@ public class DataBaseConfig {
         if(rs != null){
             try {
                 rs.close();
-                logger.info("Closing Result Set");
+                logger.trace("Closing Result Set");
             } catch (SQLException e) {
                 logger.error("Error while closing result set", e);
             }
@@ -0,0 +1,88 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process H2 database in MySQL mode, for small sites without a database server and for the integration tests.
+ * The tables of Data.sql are created, with the five default spots, the first time a database is opened;
+ * the same DAOs and SQL as with MySQL are used on top of it.
+ */
+public class EmbeddedDataBaseConfig extends DataBaseConfig {
+
+    private static final Logger logger = LogManager.getLogger(EmbeddedDataBaseConfig.class);
+
+    static final String CREATE_PARKING = "create table if not exists parking("
+            + "PARKING_NUMBER int PRIMARY KEY, AVAILABLE bool NOT NULL, TYPE varchar(10) NOT NULL)";
+    static final String CREATE_TICKET = "create table if not exists ticket("
+            + "ID int PRIMARY KEY AUTO_INCREMENT, PARKING_NUMBER int NOT NULL, VEHICLE_REG_NUMBER varchar(10) NOT NULL, "
+            + "PRICE double, IN_TIME DATETIME NOT NULL, OUT_TIME DATETIME, "
+            + "FOREIGN KEY (PARKING_NUMBER) REFERENCES parking(PARKING_NUMBER))";
+    static final String CREATE_TICKET_ARCHIVE = "create table if not exists ticket_archive("
+            + "ID int PRIMARY KEY, PARKING_NUMBER int NOT NULL, TYPE varchar(10) NOT NULL, VEHICLE_REG_NUMBER varchar(10) NOT NULL, "
+            + "PRICE double, IN_TIME DATETIME NOT NULL, OUT_TIME DATETIME NOT NULL)";
+    static final String CREATE_VEHICLE_VISIT_SUMMARY = "create table if not exists vehicle_visit_summary("
+            + "VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY, ARCHIVED_TICKETS int NOT NULL)";
+    static final String INSERT_DEFAULT_SPOTS = "insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values"
+            + "(1,true,'CAR'),(2,true,'CAR'),(3,true,'CAR'),(4,true,'BIKE'),(5,true,'BIKE')";
+
+    private static final Set<String> initializedUrls = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Database file given by -Dparkit.db.embedded.path, ./data/parkit by default.
+     */
+    public EmbeddedDataBaseConfig() {
+        this(fileUrl(System.getProperty("parkit.db.embedded.path", "./data/parkit")));
+    }
+
+    public EmbeddedDataBaseConfig(String jdbcUrl) {
+        super(jdbcUrl);
+    }
+
+    /**
+     * URL of the database file at this path, without the .mv.db extension.
+     */
+    public static String fileUrl(String path) {
+        return "jdbc:h2:file:" + path + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+    }
+
+    @Override
+    protected Connection openConnection(PoolSettings settings) throws SQLException {
+        logger.debug("Create embedded DB connection");
+        String jdbcUrl = getJdbcUrl();
+        Connection con = DriverManager.getConnection(jdbcUrl, "sa", "");
+        if (initializedUrls.add(jdbcUrl)) {
+            try {
+                createSchema(con);
+            } catch (SQLException e) {
+                initializedUrls.remove(jdbcUrl);
+                con.close();
+                throw e;
+            }
+        }
+        return con;
+    }
+
+    private void createSchema(Connection con) throws SQLException {
+        Statement statement = con.createStatement();
+        statement.execute(CREATE_PARKING);
+        statement.execute(CREATE_TICKET);
+        statement.execute(CREATE_TICKET_ARCHIVE);
+        statement.execute(CREATE_VEHICLE_VISIT_SUMMARY);
+        ResultSet rs = statement.executeQuery("select count(*) from parking");
+        if (rs.next() && rs.getInt(1) == 0) {
+            statement.execute(INSERT_DEFAULT_SPOTS);
+            logger.info("Created embedded database " + getJdbcUrl());
+        }
+        rs.close();
+        statement.close();
+    }
+}
@@ -0,0 +1,139 @@
+package com.parkit.parkingsystem.config;
+
+/**
+ * Tuning knobs of the {@link ConnectionPool}.
+ * Defaults can be overridden with system properties, e.g. {@code -Dparkit.db.pool.maxSize=20}.
+ */
+public class PoolSettings {
+
+    private static final String PREFIX = "parkit.db.pool.";
+
+    private int maxSize = 10;
+    private int minIdle = 2;
+    private long borrowTimeoutMillis = 5_000;
+    private long idleTimeoutMillis = 10 * 60_000;
+    private long validationIntervalMillis = 30_000;
+    private int validationTimeoutSeconds = 2;
+    private long leakDetectionThresholdMillis = 20_000;
+    private long housekeepingIntervalMillis = 30_000;
+    private int statementCacheSize = 16;
+    private boolean serverSidePrepare = true;
+
+    public static PoolSettings fromSystemProperties() {
+        PoolSettings settings = new PoolSettings();
+        settings.maxSize = Integer.getInteger(PREFIX + "maxSize", settings.maxSize);
+        settings.minIdle = Integer.getInteger(PREFIX + "minIdle", settings.minIdle);
+        settings.borrowTimeoutMillis = Long.getLong(PREFIX + "borrowTimeoutMillis", settings.borrowTimeoutMillis);
+        settings.idleTimeoutMillis = Long.getLong(PREFIX + "idleTimeoutMillis", settings.idleTimeoutMillis);
+        settings.validationIntervalMillis = Long.getLong(PREFIX + "validationIntervalMillis", settings.validationIntervalMillis);
+        settings.validationTimeoutSeconds = Integer.getInteger(PREFIX + "validationTimeoutSeconds", settings.validationTimeoutSeconds);
+        settings.leakDetectionThresholdMillis = Long.getLong(PREFIX + "leakDetectionThresholdMillis", settings.leakDetectionThresholdMillis);
+        settings.housekeepingIntervalMillis = Long.getLong(PREFIX + "housekeepingIntervalMillis", settings.housekeepingIntervalMillis);
+        settings.statementCacheSize = Integer.getInteger(PREFIX + "statementCacheSize", settings.statementCacheSize);
+        settings.serverSidePrepare = Boolean.parseBoolean(
+                System.getProperty(PREFIX + "serverSidePrepare", String.valueOf(settings.serverSidePrepare)));
+        return settings;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public PoolSettings setMaxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool max size must be at least 1");
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public PoolSettings setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+        return this;
+    }
+
+    public long getBorrowTimeoutMillis() {
+        return borrowTimeoutMillis;
+    }
+
+    public PoolSettings setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        return this;
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public PoolSettings setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    public PoolSettings setValidationIntervalMillis(long validationIntervalMillis) {
+        this.validationIntervalMillis = validationIntervalMillis;
+        return this;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public PoolSettings setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        return this;
+    }
+
+    /**
+     * A connection held longer than this is reported as a possible leak, 0 disables the check.
+     */
+    public long getLeakDetectionThresholdMillis() {
+        return leakDetectionThresholdMillis;
+    }
+
+    public PoolSettings setLeakDetectionThresholdMillis(long leakDetectionThresholdMillis) {
+        this.leakDetectionThresholdMillis = leakDetectionThresholdMillis;
+        return this;
+    }
+
+    public long getHousekeepingIntervalMillis() {
+        return housekeepingIntervalMillis;
+    }
+
+    public PoolSettings setHousekeepingIntervalMillis(long housekeepingIntervalMillis) {
+        this.housekeepingIntervalMillis = housekeepingIntervalMillis;
+        return this;
+    }
+
+    /**
+     * Number of prepared statements kept per connection, 0 disables the cache.
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public PoolSettings setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+        return this;
+    }
+
+    /**
+     * true : statements are prepared once by the MySQL server, false : the driver inlines the parameters.
+     */
+    public boolean isServerSidePrepare() {
+        return serverSidePrepare;
+    }
+
+    public PoolSettings setServerSidePrepare(boolean serverSidePrepare) {
+        this.serverSidePrepare = serverSidePrepare;
+        return this;
+    }
+}
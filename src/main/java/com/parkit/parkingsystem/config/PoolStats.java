@@ -0,0 +1,93 @@
+package com.parkit.parkingsystem.config;
+
+/**
+ * Point-in-time snapshot of a {@link ConnectionPool}, used to size the pool.
+ */
+public class PoolStats {
+
+    private final int active;
+    private final int idle;
+    private final int waiters;
+    private final long borrowCount;
+    private final long timeoutCount;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+    private final long leakedConnections;
+    private final long leakedStatements;
+    private final long statementCacheHits;
+    private final long statementCacheMisses;
+
+    public PoolStats(int active, int idle, int waiters, long borrowCount, long timeoutCount,
+                     long totalWaitNanos, long maxWaitNanos, long leakedConnections, long leakedStatements,
+                     long statementCacheHits, long statementCacheMisses) {
+        this.active = active;
+        this.idle = idle;
+        this.waiters = waiters;
+        this.borrowCount = borrowCount;
+        this.timeoutCount = timeoutCount;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+        this.leakedConnections = leakedConnections;
+        this.leakedStatements = leakedStatements;
+        this.statementCacheHits = statementCacheHits;
+        this.statementCacheMisses = statementCacheMisses;
+    }
+
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getWaiters() {
+        return waiters;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos;
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    public double getAverageWaitMillis() {
+        return borrowCount == 0 ? 0 : totalWaitNanos / 1_000_000.0 / borrowCount;
+    }
+
+    public long getLeakedConnections() {
+        return leakedConnections;
+    }
+
+    public long getLeakedStatements() {
+        return leakedStatements;
+    }
+
+    public long getStatementCacheHits() {
+        return statementCacheHits;
+    }
+
+    public long getStatementCacheMisses() {
+        return statementCacheMisses;
+    }
+
+    @Override
+    public String toString() {
+        return "active=" + active + ", idle=" + idle + ", waiters=" + waiters
+                + ", borrows=" + borrowCount + ", timeouts=" + timeoutCount
+                + ", avgWaitMs=" + String.format("%.3f", getAverageWaitMillis())
+                + ", maxWaitMs=" + maxWaitNanos / 1_000_000
+                + ", leakedConnections=" + leakedConnections + ", leakedStatements=" + leakedStatements
+                + ", statementCacheHits=" + statementCacheHits + ", statementCacheMisses=" + statementCacheMisses;
+    }
+}
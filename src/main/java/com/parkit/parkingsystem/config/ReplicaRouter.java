@@ -0,0 +1,211 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends the read-only queries of a facility to its read replicas, round robin over the healthy ones, and
+ * everything else to the primary.
+ *
+ * <p>Replication is asynchronous, so a read about a vehicle written less than readYourWritesMillis ago stays on
+ * the primary: the gate that just saved a ticket always finds it. The window must cover the replication lag.
+ * A replica that fails a borrow is left out until the health check, which validates every replica each
+ * healthCheckIntervalMillis, finds it usable again. Without any healthy replica reads go to the primary.
+ *
+ * <p>Configured with system properties:
+ * <pre>
+ * -Dparkit.db.replicas=jdbc:mysql://replica1:3306/prod,jdbc:mysql://replica2:3306/prod
+ * -Dparkit.facility.north.replicas=jdbc:mysql://replica1:3306/north
+ * </pre>
+ */
+public class ReplicaRouter {
+
+    private static final Logger logger = LogManager.getLogger(ReplicaRouter.class);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final DataBaseConfig primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long readYourWritesNanos;
+    // dernière écriture par véhicule, purgée par le contrôle de santé
+    private final ConcurrentMap<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryReads = new LongAdder();
+    private final ScheduledExecutorService healthChecker;
+
+    /**
+     * @param readYourWritesMillis how long reads about a written vehicle stay on the primary
+     * @param healthCheckIntervalMillis period of the replica validation, 0 to disable it
+     */
+    public ReplicaRouter(DataBaseConfig primary, List<DataBaseConfig> replicas, long readYourWritesMillis, long healthCheckIntervalMillis) {
+        this.primary = primary;
+        for (DataBaseConfig replica : replicas) {
+            this.replicas.add(new Replica(replica));
+        }
+        this.readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(readYourWritesMillis);
+        if (healthCheckIntervalMillis > 0) {
+            healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "replica-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(this::checkHealth, healthCheckIntervalMillis, healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            healthChecker = null;
+        }
+    }
+
+    /**
+     * Replicas of the facility: -Dparkit.facility.&lt;id&gt;.replicas, or -Dparkit.db.replicas for the
+     * {@link ShardRouter#DEFAULT_FACILITY}.
+     *
+     * @return null when the facility has no replica
+     */
+    public static ReplicaRouter fromSystemProperties(String facilityId, DataBaseConfig primary) {
+        String urls = System.getProperty("parkit.facility." + facilityId + ".replicas");
+        if (urls == null && ShardRouter.DEFAULT_FACILITY.equals(facilityId)) {
+            urls = System.getProperty("parkit.db.replicas");
+        }
+        if (urls == null || urls.trim().isEmpty()) {
+            return null;
+        }
+        List<DataBaseConfig> replicas = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (!url.trim().isEmpty()) {
+                replicas.add(DataBaseConfig.forUrl(url.trim()));
+            }
+        }
+        return new ReplicaRouter(primary, replicas,
+                Long.getLong("parkit.db.replicas.readYourWritesMillis", 5000),
+                Long.getLong("parkit.db.replicas.healthCheckIntervalMillis", 5000));
+    }
+
+    /**
+     * Connection for a read-only query about this vehicle, to close with closeConnection as usual.
+     *
+     * @param vehicleRegNumber vehicle the query is about, null for a read that tolerates any lag
+     */
+    public Connection getReadConnection(String vehicleRegNumber) throws ClassNotFoundException, SQLException {
+        if (vehicleRegNumber == null || !writtenRecently(vehicleRegNumber)) {
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+                if (!replica.healthy) {
+                    continue;
+                }
+                try {
+                    Connection con = replica.dataBaseConfig.getConnection();
+                    replicaReads.increment();
+                    return con;
+                } catch (Exception e) {
+                    replica.down(e);
+                }
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    /**
+     * Keeps the reads about this vehicle on the primary until the replicas have caught up with the write.
+     */
+    public void written(String vehicleRegNumber) {
+        if (vehicleRegNumber != null) {
+            lastWrites.put(vehicleRegNumber, System.nanoTime());
+        }
+    }
+
+    private boolean writtenRecently(String vehicleRegNumber) {
+        Long writtenAt = lastWrites.get(vehicleRegNumber);
+        if (writtenAt == null) {
+            return false;
+        }
+        if (System.nanoTime() - writtenAt < readYourWritesNanos) {
+            return true;
+        }
+        lastWrites.remove(vehicleRegNumber, writtenAt);
+        return false;
+    }
+
+    /**
+     * Validates every replica and forgets the writes the replicas have caught up with.
+     */
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            Connection con = null;
+            try {
+                con = replica.dataBaseConfig.getConnection();
+                if (con.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    replica.up();
+                } else {
+                    replica.down(null);
+                }
+            } catch (Exception e) {
+                replica.down(e);
+            } finally {
+                replica.dataBaseConfig.closeConnection(con);
+            }
+        }
+        long now = System.nanoTime();
+        lastWrites.values().removeIf(writtenAt -> now - writtenAt >= readYourWritesNanos);
+    }
+
+    public int getHealthyReplicaCount() {
+        int healthy = 0;
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    public long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    public long getPrimaryReads() {
+        return primaryReads.sum();
+    }
+
+    public void close() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+    }
+
+    private static final class Replica {
+
+        private final DataBaseConfig dataBaseConfig;
+        private volatile boolean healthy = true;
+
+        private Replica(DataBaseConfig dataBaseConfig) {
+            this.dataBaseConfig = dataBaseConfig;
+        }
+
+        private void up() {
+            if (!healthy) {
+                logger.info("Read replica " + dataBaseConfig.getJdbcUrl() + " is back, reads are sent to it again");
+                healthy = true;
+            }
+        }
+
+        private void down(Exception cause) {
+            if (healthy) {
+                logger.warn("Read replica " + dataBaseConfig.getJdbcUrl() + " is unusable, reads go to the other databases", cause);
+                healthy = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies the versioned SQL scripts of db/migration at startup and records them in the schema_version table,
+ * so a database created from Data.sql is brought to the current schema whatever version it was left at.
+ */
+public class SchemaMigrator {
+
+    private static final Logger logger = LogManager.getLogger(SchemaMigrator.class);
+
+    static final String CREATE_SCHEMA_VERSION = "create table if not exists schema_version("
+            + "VERSION int PRIMARY KEY, DESCRIPTION varchar(100) NOT NULL, INSTALLED_ON DATETIME NOT NULL)";
+    static final String GET_SCHEMA_VERSIONS = "select VERSION from schema_version";
+    static final String SAVE_SCHEMA_VERSION = "insert into schema_version(VERSION, DESCRIPTION, INSTALLED_ON) values(?,?,?)";
+    static final String GET_TICKET_PARTITIONS = "select PARTITION_NAME from information_schema.PARTITIONS "
+            + "where TABLE_SCHEMA = database() and TABLE_NAME = 'ticket' and PARTITION_NAME is not null";
+
+    static final Migration[] MIGRATIONS = {
+            new Migration(1, "ticket and parking indexes", "V1__ticket_and_parking_indexes.sql", false),
+            new Migration(2, "ticket monthly partitions", "V2__ticket_monthly_partitions.sql", true),
+            new Migration(3, "ticket out time index", "V3__ticket_out_time_index.sql", false),
+            new Migration(4, "ticket archive", "V4__ticket_archive.sql", false),
+    };
+
+    private final DataBaseConfig dataBaseConfig;
+    private final boolean partitionTickets;
+
+    public SchemaMigrator(DataBaseConfig dataBaseConfig) {
+        this(dataBaseConfig, Boolean.getBoolean("parkit.db.partitionTickets"));
+    }
+
+    public SchemaMigrator(DataBaseConfig dataBaseConfig, boolean partitionTickets) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.partitionTickets = partitionTickets;
+    }
+
+    /**
+     * Applies the migrations not recorded yet, in version order. The partitioning migration is only applied
+     * when enabled; it is applied later if it gets enabled once the others are in place.
+     *
+     * @return false if a migration failed, the following ones are then not applied
+     */
+    public boolean migrate() {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            Statement statement = con.createStatement();
+            statement.execute(CREATE_SCHEMA_VERSION);
+            statement.close();
+            Set<Integer> applied = getAppliedVersions(con);
+            for (Migration migration : MIGRATIONS) {
+                if (applied.contains(migration.version) || (migration.partitioning && !partitionTickets)) {
+                    continue;
+                }
+                apply(con, migration);
+            }
+            if (partitionTickets) {
+                addMonthlyPartitions(con, YearMonth.now(), 3);
+            }
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error migrating the database schema", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private Set<Integer> getAppliedVersions(Connection con) throws SQLException {
+        Set<Integer> applied = new HashSet<>();
+        PreparedStatement ps = con.prepareStatement(GET_SCHEMA_VERSIONS);
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            applied.add(rs.getInt(1));
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+        return applied;
+    }
+
+    // MySQL valide implicitement chaque DDL : une migration interrompue doit être terminée à la main
+    private void apply(Connection con, Migration migration) throws IOException, SQLException {
+        logger.info("Applying migration V" + migration.version + " " + migration.description);
+        Statement statement = con.createStatement();
+        for (String sql : readStatements(migration.resource)) {
+            statement.execute(sql);
+        }
+        statement.close();
+        PreparedStatement ps = con.prepareStatement(SAVE_SCHEMA_VERSION);
+        ps.setInt(1, migration.version);
+        ps.setString(2, migration.description);
+        ps.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+        ps.execute();
+        dataBaseConfig.closePreparedStatement(ps);
+    }
+
+    /**
+     * Splits P_FUTURE so that every month from the given one to monthsAhead months later has its own partition.
+     * Old months can then be archived by exchanging or dropping their partition instead of deleting rows.
+     */
+    void addMonthlyPartitions(Connection con, YearMonth from, int monthsAhead) throws SQLException {
+        Set<String> partitions = new HashSet<>();
+        PreparedStatement ps = con.prepareStatement(GET_TICKET_PARTITIONS);
+        ResultSet rs = ps.executeQuery();
+        while (rs.next()) {
+            partitions.add(rs.getString(1).toUpperCase());
+        }
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(ps);
+
+        Statement statement = con.createStatement();
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = from.plusMonths(i);
+            String name = partitionName(month);
+            if (!partitions.contains(name)) {
+                statement.execute("alter table ticket reorganize partition P_FUTURE into ("
+                        + "partition " + name + " values less than ('" + month.plusMonths(1).atDay(1) + "'), "
+                        + "partition P_FUTURE values less than (MAXVALUE))");
+                logger.info("Added ticket partition " + name);
+            }
+        }
+        statement.close();
+    }
+
+    static String partitionName(YearMonth month) {
+        return String.format("P%04d%02d", month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * @return the statements of the script, without the comment lines
+     */
+    static List<String> readStatements(String resource) throws IOException {
+        InputStream in = SchemaMigrator.class.getResourceAsStream("/db/migration/" + resource);
+        if (in == null) {
+            throw new IOException("Migration script not found: " + resource);
+        }
+        StringBuilder script = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().startsWith("--")) {
+                    script.append(line).append('\n');
+                }
+            }
+        }
+        List<String> statements = new ArrayList<>();
+        for (String sql : script.toString().split(";")) {
+            if (!sql.trim().isEmpty()) {
+                statements.add(sql.trim());
+            }
+        }
+        return statements;
+    }
+
+    static class Migration {
+        final int version;
+        final String description;
+        final String resource;
+        final boolean partitioning;
+
+        Migration(int version, String description, String resource, boolean partitioning) {
+            this.version = version;
+            this.description = description;
+            this.resource = resource;
+            this.partitioning = partitioning;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.parkit.parkingsystem.config;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps each facility served by the process to the database holding its spots and tickets. Spot numbers are
+ * only unique within a facility, so every facility has its own database (or schema), and with it its own
+ * connection pool: gates of one lot never wait for a connection of another.
+ *
+ * <p>Configured with system properties:
+ * <pre>
+ * -Dparkit.facilities=north,south
+ * -Dparkit.facility.north.url=jdbc:mysql://db1:3306/north
+ * </pre>
+ * A facility without URL gets the MySQL schema of its name on localhost, or with -Dparkit.db=embedded the file
+ * database of -Dparkit.db.embedded.path suffixed with its name. Without -Dparkit.facilities the process serves
+ * the single {@link #DEFAULT_FACILITY} on the usual database.
+ */
+public class ShardRouter {
+
+    public static final String DEFAULT_FACILITY = "default";
+    private static final String PREFIX = "parkit.facility.";
+
+    private final Map<String, DataBaseConfig> shards;
+
+    /**
+     * @param shards database of each facility, in the order the facilities are listed
+     */
+    public ShardRouter(Map<String, DataBaseConfig> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one facility is needed");
+        }
+        this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+    }
+
+    public static ShardRouter fromSystemProperties() {
+        Map<String, DataBaseConfig> shards = new LinkedHashMap<>();
+        String facilities = System.getProperty("parkit.facilities");
+        if (facilities == null || facilities.trim().isEmpty()) {
+            shards.put(DEFAULT_FACILITY, DataBaseConfig.fromSystemProperties());
+            return new ShardRouter(shards);
+        }
+        boolean embedded = "embedded".equalsIgnoreCase(System.getProperty("parkit.db"));
+        for (String facilityId : facilities.split(",")) {
+            facilityId = facilityId.trim();
+            if (facilityId.isEmpty()) {
+                continue;
+            }
+            String url = System.getProperty(PREFIX + facilityId + ".url");
+            if (url == null) {
+                url = embedded
+                        ? EmbeddedDataBaseConfig.fileUrl(System.getProperty("parkit.db.embedded.path", "./data/parkit") + "-" + facilityId)
+                        : "jdbc:mysql://localhost:3306/" + facilityId;
+            }
+            shards.put(facilityId, DataBaseConfig.forUrl(url));
+        }
+        return new ShardRouter(shards);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the facility is not served by this process
+     */
+    public DataBaseConfig route(String facilityId) {
+        DataBaseConfig dataBaseConfig = shards.get(facilityId);
+        if (dataBaseConfig == null) {
+            throw new IllegalArgumentException("Unknown facility " + facilityId);
+        }
+        return dataBaseConfig;
+    }
+
+    public Set<String> getFacilityIds() {
+        return shards.keySet();
+    }
+
+    /**
+     * Facility of the single-lot commands (console, settlement, ingestion, load test): -Dparkit.facility,
+     * else the first one listed.
+     */
+    public String getSelectedFacilityId() {
+        String facilityId = System.getProperty("parkit.facility");
+        if (facilityId != null) {
+            route(facilityId);
+            return facilityId;
+        }
+        return shards.keySet().iterator().next();
+    }
+}
@@ -0,0 +1,232 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepared statements of one physical connection, keyed by SQL (the queries of DBConstants).
+ * Closing a statement obtained from the cache only clears its parameters so the next borrower can reuse it.
+ * Settings changed by a borrower (fetch size, max rows, query timeout...) are restored at that point; a statement
+ * whose other settings were changed, e.g. its cursor name, is closed instead of being kept.
+ * A pooled connection is used by one thread at a time, so the cache itself is not synchronized.
+ */
+class StatementCache {
+
+    private static final Logger logger = LogManager.getLogger(StatementCache.class);
+    // réglages int de Statement remis à leur valeur d'origine quand la requête revient dans le cache
+    private static final Set<String> RESTORED_SETTINGS = new HashSet<>(Arrays.asList(
+            "setFetchSize", "setFetchDirection", "setMaxRows", "setMaxFieldSize", "setQueryTimeout"));
+
+    private final Connection connection;
+    private final int maxSize;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    // access order : the first entry is the least recently used one
+    private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection connection, int maxSize, LongAdder hits, LongAdder misses) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == -1 ? sql : sql + '#' + autoGeneratedKeys;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            hits.increment();
+        } else {
+            misses.increment();
+            PreparedStatement raw = autoGeneratedKeys == -1
+                    ? connection.prepareStatement(sql)
+                    : connection.prepareStatement(sql, autoGeneratedKeys);
+            if (cached != null) {
+                // same query prepared twice on one connection : the second one is not kept
+                return raw;
+            }
+            cached = new CachedStatement(raw);
+            statements.put(key, cached);
+            evictIfNeeded();
+        }
+        cached.inUse = true;
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new Checkout(cached));
+    }
+
+    private void evictIfNeeded() {
+        Iterator<CachedStatement> leastRecentlyUsed = statements.values().iterator();
+        while (statements.size() > maxSize && leastRecentlyUsed.hasNext()) {
+            CachedStatement cached = leastRecentlyUsed.next();
+            if (!cached.inUse) {
+                leastRecentlyUsed.remove();
+                closeQuietly(cached.raw);
+            }
+        }
+    }
+
+    void closeAll() {
+        for (CachedStatement cached : statements.values()) {
+            closeQuietly(cached.raw);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing cached prepared statement", e);
+        }
+    }
+
+    private static class CachedStatement {
+        private final PreparedStatement raw;
+        private boolean inUse;
+
+        CachedStatement(PreparedStatement raw) {
+            this.raw = raw;
+        }
+    }
+
+    /**
+     * One use of a cached statement, from prepareStatement() to close().
+     */
+    private class Checkout implements InvocationHandler {
+        private final CachedStatement cached;
+        private boolean closed;
+        // valeur d'origine des réglages modifiés par cet emprunteur
+        private final Map<String, Integer> changedSettings = new HashMap<>();
+        private boolean discard;
+
+        Checkout(CachedStatement cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        giveBack();
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement has already been closed");
+            }
+            if (method.getDeclaringClass() == Statement.class
+                    && (method.getName().startsWith("set") || "closeOnCompletion".equals(method.getName()))) {
+                settingChanged(method);
+            }
+            try {
+                return method.invoke(cached.raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        private void settingChanged(Method method) throws SQLException {
+            String setter = method.getName();
+            if (!RESTORED_SETTINGS.contains(setter)) {
+                discard = true;
+            } else if (!changedSettings.containsKey(setter)) {
+                changedSettings.put(setter, originalSetting(setter));
+            }
+        }
+
+        private int originalSetting(String setter) throws SQLException {
+            switch (setter) {
+                case "setFetchSize":
+                    return cached.raw.getFetchSize();
+                case "setFetchDirection":
+                    return cached.raw.getFetchDirection();
+                case "setMaxRows":
+                    return cached.raw.getMaxRows();
+                case "setMaxFieldSize":
+                    return cached.raw.getMaxFieldSize();
+                default:
+                    return cached.raw.getQueryTimeout();
+            }
+        }
+
+        private void restoreSettings() throws SQLException {
+            for (Map.Entry<String, Integer> setting : changedSettings.entrySet()) {
+                int value = setting.getValue();
+                switch (setting.getKey()) {
+                    case "setFetchSize":
+                        cached.raw.setFetchSize(value);
+                        break;
+                    case "setFetchDirection":
+                        cached.raw.setFetchDirection(value);
+                        break;
+                    case "setMaxRows":
+                        cached.raw.setMaxRows(value);
+                        break;
+                    case "setMaxFieldSize":
+                        cached.raw.setMaxFieldSize(value);
+                        break;
+                    default:
+                        cached.raw.setQueryTimeout(value);
+                        break;
+                }
+            }
+        }
+
+        private void giveBack() throws SQLException {
+            try {
+                if (discard) {
+                    evict();
+                    return;
+                }
+                cached.raw.clearParameters();
+                cached.raw.clearBatch();
+                restoreSettings();
+            } catch (SQLException e) {
+                evict();
+                throw e;
+            } finally {
+                cached.inUse = false;
+            }
+        }
+
+        private void evict() {
+            Map.Entry<String, CachedStatement> evicted = null;
+            for (Map.Entry<String, CachedStatement> entry : statements.entrySet()) {
+                if (entry.getValue() == cached) {
+                    evicted = entry;
+                }
+            }
+            if (evicted != null) {
+                statements.remove(evicted.getKey());
+            }
+            closeQuietly(cached.raw);
+        }
+    }
+}
@@ -3,9 +3,41 @@ package com.parkit.parkingsystem.constants;
 public class DBConstants {
 
     public static final String GET_NEXT_PARKING_SPOT = "select min(PARKING_NUMBER) from parking where AVAILABLE = true and TYPE = ?";
+    public static final String GET_PARKING_SPOTS = "select PARKING_NUMBER, AVAILABLE, TYPE from parking";
     public static final String UPDATE_PARKING_SPOT = "update parking set available = ? where PARKING_NUMBER = ?";
+    public static final String CLAIM_PARKING_SPOT = "update parking set available = false where PARKING_NUMBER = ? and AVAILABLE = true";
+    public static final String COUNT_PARKING_SPOTS = "select count(*) from parking where TYPE = ?";
+    public static final String GET_MAX_PARKING_NUMBER = "select max(PARKING_NUMBER) from parking";
+    // une place est libre si et seulement si aucun ticket ouvert ne l'occupe
+    public static final String RECONCILE_PARKING_SPOT = "update parking p set AVAILABLE = not exists (select 1 from ticket t where t.PARKING_NUMBER = p.PARKING_NUMBER and t.OUT_TIME is null) where p.PARKING_NUMBER = ?";
+    public static final String RECONCILE_PARKING_SPOTS = "update parking p set AVAILABLE = not exists (select 1 from ticket t where t.PARKING_NUMBER = p.PARKING_NUMBER and t.OUT_TIME is null) where p.TYPE = ?";
+    public static final String SAVE_PARKING_SPOT = "insert into parking(PARKING_NUMBER, AVAILABLE, TYPE) values(?, true, ?)";
 
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
-    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
-    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME  limit 1";
+    // un ticket déjà fermé n'est jamais refermé : 0 ligne mise à jour
+    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=? and OUT_TIME is null";
+    public static final String GET_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? and t.OUT_TIME is null order by t.IN_TIME desc limit 1";
+    // rejeu du journal des bornes : IN_TIME n'est gardé qu'à la seconde en base, d'où la fenêtre
+    public static final String COUNT_JOURNALED_TICKETS = "select count(*) from ticket where VEHICLE_REG_NUMBER=? and (OUT_TIME is null or (IN_TIME >= ? and IN_TIME < ?))";
+    public static final String GET_REPLAY_PARKING_SPOT = "select p.PARKING_NUMBER from parking p where p.TYPE = ? and not exists (select 1 from ticket t where t.PARKING_NUMBER = p.PARKING_NUMBER and t.OUT_TIME is null)"
+            + " order by case when p.PARKING_NUMBER = ? then 0 else 1 end, p.PARKING_NUMBER limit 1";
+    public static final String CLOSE_OPEN_TICKET = "update ticket set PRICE=?, OUT_TIME=? where VEHICLE_REG_NUMBER=? and OUT_TIME is null";
+    public static final String GET_LAST_TICKET = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.VEHICLE_REG_NUMBER=? order by t.IN_TIME desc limit 1";
+    public static final String GET_OPEN_TICKETS = "select t.PARKING_NUMBER, t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE, t.VEHICLE_REG_NUMBER from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME is null";
+    public static final String GET_LAST_ARCHIVED_TICKET = "select PARKING_NUMBER, ID, PRICE, IN_TIME, OUT_TIME, TYPE from ticket_archive where VEHICLE_REG_NUMBER=? order by OUT_TIME desc limit 1";
+    // l'historique se lit sur les deux niveaux : les tickets récents dans ticket, les anciens dans ticket_archive
+    public static final String GET_CLOSED_TICKETS = "select t.ID, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME >= ? and t.OUT_TIME < ?"
+            + " union all select ID, PRICE, IN_TIME, OUT_TIME, TYPE from ticket_archive where OUT_TIME >= ? and OUT_TIME < ?";
+    // tickets encore dans ticket plus ceux déjà archivés, tenus à jour dans vehicle_visit_summary
+    public static final String COUNT_TICKETS = "SELECT (SELECT COUNT(*) FROM ticket WHERE VEHICLE_REG_NUMBER=?)"
+            + " + COALESCE((SELECT ARCHIVED_TICKETS FROM vehicle_visit_summary WHERE VEHICLE_REG_NUMBER=?), 0)";
+    public static final String COUNT_TICKETS_PER_VEHICLE = "SELECT VEHICLE_REG_NUMBER, SUM(NB) FROM ("
+            + "SELECT VEHICLE_REG_NUMBER, COUNT(*) NB FROM ticket GROUP BY VEHICLE_REG_NUMBER"
+            + " UNION ALL SELECT VEHICLE_REG_NUMBER, ARCHIVED_TICKETS NB FROM vehicle_visit_summary) v GROUP BY VEHICLE_REG_NUMBER";
+
+    // archivage par lots : le plus ancien d'abord, le long de IDX_TICKET_OUT_TIME
+    public static final String GET_TICKETS_TO_ARCHIVE = "select t.ID, t.PARKING_NUMBER, p.TYPE, t.VEHICLE_REG_NUMBER, t.PRICE, t.IN_TIME, t.OUT_TIME from ticket t,parking p where p.parking_number = t.parking_number and t.OUT_TIME < ? order by t.OUT_TIME limit ?";
+    public static final String ARCHIVE_TICKET = "insert into ticket_archive(ID, PARKING_NUMBER, TYPE, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?,?,?)";
+    public static final String ADD_ARCHIVED_VISITS = "insert into vehicle_visit_summary(VEHICLE_REG_NUMBER, ARCHIVED_TICKETS) values(?,?) on duplicate key update ARCHIVED_TICKETS = ARCHIVED_TICKETS + values(ARCHIVED_TICKETS)";
+    public static final String DELETE_TICKET = "delete from ticket where ID = ?";
 }
@@ -0,0 +1,83 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Open tickets (no out time yet) indexed by vehicle registration number, so that the exit path
+ * finds the ticket without querying the ticket table.
+ * Tickets are copied in and out: callers can mutate what they get without touching the cache.
+ */
+public class ActiveTicketCache {
+
+    private final ConcurrentMap<String, Ticket> openTickets = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public void put(Ticket ticket) {
+        openTickets.put(ticket.getVehicleRegNumber(), copy(ticket));
+    }
+
+    /**
+     * Caches the ticket unless the vehicle already has an open ticket cached.
+     */
+    public void putIfAbsent(Ticket ticket) {
+        openTickets.putIfAbsent(ticket.getVehicleRegNumber(), copy(ticket));
+    }
+
+    /**
+     * @return a copy of the open ticket of this vehicle, or null if it is not cached
+     */
+    public Ticket get(String vehicleRegNumber) {
+        Ticket ticket = openTickets.get(vehicleRegNumber);
+        if (ticket == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copy(ticket);
+    }
+
+    /**
+     * Forgets the ticket once it has been closed. Does nothing if a newer ticket was cached meanwhile.
+     */
+    public void remove(Ticket ticket) {
+        openTickets.computeIfPresent(ticket.getVehicleRegNumber(),
+                (vehicleRegNumber, cached) -> cached.getId() == ticket.getId() ? null : cached);
+    }
+
+    public void clear() {
+        openTickets.clear();
+    }
+
+    public int size() {
+        return openTickets.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private static Ticket copy(Ticket ticket) {
+        Ticket copy = new Ticket();
+        copy.setId(ticket.getId());
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        if (parkingSpot != null) {
+            copy.setParkingSpot(new ParkingSpot(parkingSpot.getFacilityId(), parkingSpot.getId(), parkingSpot.getParkingType(),
+                    parkingSpot.isAvailable()));
+        }
+        copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+        copy.setPrice(ticket.getPrice());
+        copy.setInTime(ticket.getInTime());
+        copy.setOutTime(ticket.getOutTime());
+        return copy;
+    }
+}
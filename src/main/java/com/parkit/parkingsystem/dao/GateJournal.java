@@ -0,0 +1,501 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.ShardRouter;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.OperationMetrics;
+import com.parkit.parkingsystem.util.OperationTimer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the gate operations. Each entry and exit is written here before the database, then
+ * marked done once it is in the database or aborted when the gate refused it, so that an operation interrupted
+ * by the death of the JVM, e.g. between claiming the spot and saving the ticket, or whose batched write failed,
+ * is found at the next start and replayed by {@link #recover(ParkingSpotDAO, TicketDAO)}.
+ *
+ * <p>Records go to memory-mapped segment files of segmentSize bytes, named after their first sequence number:
+ * an append is a few stores in the page cache, which survive the JVM. Every record carries its sequence number
+ * and a CRC32, so a record torn by a system crash ends the scan of its segment. The pages are forced to disk
+ * after every record (ALWAYS), every fsyncIntervalMillis (INTERVAL) or left to the OS (NONE). A segment is
+ * deleted once it and all older segments only hold operations marked done.
+ */
+public class GateJournal {
+
+    private static final Logger logger = LogManager.getLogger(GateJournal.class);
+    private static final OperationTimer appendTimer = OperationMetrics.timer("GateJournal.append");
+    private static final String PREFIX = "parkit.journal.";
+    private static final String FILE_PREFIX = "gate-";
+    private static final String FILE_SUFFIX = ".journal";
+
+    // longueur, CRC, puis le corps : séquence, type et données
+    private static final int HEADER_SIZE = 8;
+    private static final int BODY_HEADER_SIZE = 9;
+    private static final byte ENTRY = 1;
+    private static final byte EXIT = 2;
+    private static final byte DONE = 3;
+    private static final byte ABORTED = 4;
+
+    public enum FsyncPolicy {
+        NONE, INTERVAL, ALWAYS
+    }
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+    private final CRC32 crc = new CRC32();
+    // segments par numéro du premier enregistrement, supprimés dans l'ordre
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final List<Operation> incompleteOperations;
+    private final Thread syncer;
+    private Segment current;
+    private long nextSequence = 1;
+    private boolean closed;
+
+    public GateJournal(Path directory, int segmentSize, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) throws IOException {
+        if (segmentSize < 4096) {
+            throw new IllegalArgumentException("Journal segments must be at least 4096 bytes");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        Files.createDirectories(directory);
+        this.incompleteOperations = scan();
+        // on n'écrit jamais à la suite d'un ancien segment, dont la fin a pu être déchirée
+        this.current = newSegment();
+        deleteCompletedSegments();
+        logger.info("Gate journal opened in " + directory + " at sequence " + nextSequence + ", "
+                + incompleteOperations.size() + " incomplete operations");
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            syncer = new Thread(() -> syncLoop(fsyncIntervalMillis), "gate-journal-sync");
+            syncer.setDaemon(true);
+            syncer.start();
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Journal in -Dparkit.journal.dir, in a subdirectory per facility other than the default one,
+     * 16 MB segments and an fsync every 100 ms unless overridden.
+     */
+    public static GateJournal fromSystemProperties(String facilityId) throws IOException {
+        String directory = System.getProperty(PREFIX + "dir");
+        if (directory == null) {
+            throw new IllegalStateException("-D" + PREFIX + "dir is not set");
+        }
+        Path path = Paths.get(directory);
+        return new GateJournal(ShardRouter.DEFAULT_FACILITY.equals(facilityId) ? path : path.resolve(facilityId),
+                Integer.getInteger(PREFIX + "segmentSize", 16 << 20),
+                FsyncPolicy.valueOf(System.getProperty(PREFIX + "fsync", "interval").toUpperCase(Locale.ROOT)),
+                Long.getLong(PREFIX + "fsyncIntervalMillis", 100));
+    }
+
+    /**
+     * Records an entry about to be written: the ticket must have its vehicle, spot and in time.
+     *
+     * @return the sequence number to pass to {@link #done(long)}
+     * @throws UncheckedIOException if the journal cannot be written, in which case the entry must not go on
+     */
+    public long entering(Ticket ticket) {
+        return append(ENTRY, ticket, 0);
+    }
+
+    /**
+     * Records an exit about to be written: the ticket must have its out time and price.
+     */
+    public long exiting(Ticket ticket) {
+        return append(EXIT, ticket, 0);
+    }
+
+    /**
+     * Marks the operation as finished: it is in the database.
+     */
+    public void done(long sequence) {
+        append(DONE, null, sequence);
+    }
+
+    /**
+     * Marks the operation as finished without effect: it failed and the gate was told so, nothing is to replay.
+     */
+    public void aborted(long sequence) {
+        append(ABORTED, null, sequence);
+    }
+
+    /**
+     * Operations left without their done record by the previous run, oldest first.
+     */
+    public List<Operation> getIncompleteOperations() {
+        return Collections.unmodifiableList(incompleteOperations);
+    }
+
+    /**
+     * Replays the incomplete operations in order against the tickets, then reconciles their spots with the
+     * tickets, the tickets being the reference: a spot is free unless an open ticket is on it. An entry
+     * interrupted before its ticket was saved thus gets its ticket and keeps its spot, and an interrupted exit
+     * closes its ticket and frees the spot. Replaying is idempotent, see {@link TicketDAO#replay}, so a crash
+     * during recovery only replays again. The whole type is reconciled for an entry, since a gate may have moved
+     * on to another spot than the journaled one. Call before the allocator and the ticket caches are loaded;
+     * the old segments are then deleted.
+     *
+     * @return the number of operations replayed, or -1 if the database could not be updated
+     */
+    public int recover(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        if (incompleteOperations.isEmpty()) {
+            return 0;
+        }
+        Set<ParkingType> parkingTypes = EnumSet.noneOf(ParkingType.class);
+        Set<Integer> parkingNumbers = new TreeSet<>();
+        for (Operation operation : incompleteOperations) {
+            logger.warn("Replaying the " + operation);
+            if (!ticketDAO.replay(operation)) {
+                return -1;
+            }
+            if (operation.isEntry()) {
+                parkingTypes.add(operation.getParkingType());
+            } else {
+                parkingNumbers.add(operation.getParkingNumber());
+            }
+        }
+        for (ParkingType parkingType : parkingTypes) {
+            if (parkingSpotDAO.reconcileParkingSpots(parkingType) < 0) {
+                return -1;
+            }
+        }
+        for (int parkingNumber : parkingNumbers) {
+            if (parkingSpotDAO.reconcileParkingSpot(parkingNumber) < 0) {
+                return -1;
+            }
+        }
+        int recovered = incompleteOperations.size();
+        synchronized (this) {
+            for (Segment segment : segments.values()) {
+                if (segment != current) {
+                    segment.pending = 0;
+                }
+            }
+            deleteCompletedSegments();
+        }
+        incompleteOperations.clear();
+        logger.info("Replayed " + recovered + " incomplete gate operations");
+        return recovered;
+    }
+
+    private synchronized long append(byte type, Ticket ticket, long intentSequence) {
+        long start = appendTimer.start();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Gate journal is closed");
+            }
+            byte[] plate = ticket == null ? null : plateBytes(ticket.getVehicleRegNumber());
+            int length = BODY_HEADER_SIZE + (type == ENTRY ? 14 + plate.length : type == EXIT ? 26 + plate.length : 8);
+            if (current.position + HEADER_SIZE + length > segmentSize) {
+                roll();
+            }
+            long sequence = nextSequence++;
+            MappedByteBuffer buffer = current.buffer;
+            int position = current.position;
+            buffer.position(position + HEADER_SIZE);
+            buffer.putLong(sequence).put(type);
+            if (type == DONE || type == ABORTED) {
+                buffer.putLong(intentSequence);
+            } else {
+                if (type == EXIT) {
+                    buffer.putInt(ticket.getId());
+                }
+                buffer.putInt(ticket.getParkingSpot().getId());
+                buffer.put((byte) ticket.getParkingSpot().getParkingType().ordinal());
+                if (type == ENTRY) {
+                    buffer.putLong(ticket.getInTime().getTime());
+                } else {
+                    buffer.putLong(ticket.getOutTime().getTime());
+                    buffer.putDouble(ticket.getPrice());
+                }
+                buffer.put((byte) plate.length).put(plate);
+            }
+            buffer.putInt(position + 4, checksum(buffer, position + HEADER_SIZE, length));
+            // la longueur en dernier : un enregistrement de longueur nulle marque la fin du segment
+            buffer.putInt(position, length);
+            current.position = position + HEADER_SIZE + length;
+            if (type == DONE || type == ABORTED) {
+                Map.Entry<Long, Segment> intentSegment = segments.floorEntry(intentSequence);
+                if (intentSegment != null) {
+                    intentSegment.getValue().pending--;
+                    deleteCompletedSegments();
+                }
+            } else {
+                current.pending++;
+            }
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                buffer.force();
+            }
+            return sequence;
+        } catch (IOException e) {
+            appendTimer.error();
+            throw new UncheckedIOException("Unable to write the gate journal", e);
+        } catch (RuntimeException e) {
+            appendTimer.error();
+            throw e;
+        } finally {
+            appendTimer.stop(start);
+        }
+    }
+
+    private static byte[] plateBytes(String vehicleRegNumber) {
+        byte[] plate = vehicleRegNumber.getBytes(StandardCharsets.UTF_8);
+        if (plate.length > 255) {
+            throw new IllegalArgumentException("Registration number too long for the journal: " + vehicleRegNumber);
+        }
+        return plate;
+    }
+
+    private int checksum(MappedByteBuffer buffer, int start, int length) {
+        crc.reset();
+        buffer.limit(start + length).position(start);
+        crc.update(buffer);
+        buffer.limit(buffer.capacity());
+        return (int) crc.getValue();
+    }
+
+    private void roll() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NONE) {
+            current.buffer.force();
+        }
+        current.buffer = null;
+        current = newSegment();
+        deleteCompletedSegments();
+    }
+
+    private Segment newSegment() throws IOException {
+        Path path = directory.resolve(String.format(Locale.ROOT, "%s%020d%s", FILE_PREFIX, nextSequence, FILE_SUFFIX));
+        Segment segment = new Segment(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // le fichier est créé à sa taille finale, rempli de zéros
+            segment.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segments.put(nextSequence, segment);
+        return segment;
+    }
+
+    private void deleteCompletedSegments() {
+        while (segments.size() > 1) {
+            Map.Entry<Long, Segment> oldest = segments.firstEntry();
+            if (oldest.getValue() == current || oldest.getValue().pending > 0) {
+                return;
+            }
+            segments.pollFirstEntry();
+            try {
+                Files.deleteIfExists(oldest.getValue().path);
+            } catch (IOException e) {
+                logger.error("Unable to delete the journal segment " + oldest.getValue().path, e);
+            }
+        }
+    }
+
+    /**
+     * Reads the existing segments in order and keeps the operations without a done record.
+     */
+    private List<Operation> scan() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        Collections.sort(paths);
+        Map<Long, Operation> operations = new LinkedHashMap<>();
+        Map<Long, Long> segmentOfOperation = new LinkedHashMap<>();
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            long firstSequence = Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+            segments.put(firstSequence, new Segment(path));
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            int position = 0;
+            while (position + HEADER_SIZE + BODY_HEADER_SIZE <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length == 0) {
+                    break;
+                }
+                if (length < BODY_HEADER_SIZE || position + HEADER_SIZE + length > buffer.capacity()
+                        || checksum(buffer, position + HEADER_SIZE, length) != buffer.getInt(position + 4)) {
+                    logger.warn("Torn record at offset " + position + " of " + path + ", rest of the segment ignored");
+                    break;
+                }
+                buffer.position(position + HEADER_SIZE);
+                long sequence = buffer.getLong();
+                byte type = buffer.get();
+                if (type == DONE || type == ABORTED) {
+                    long intentSequence = buffer.getLong();
+                    operations.remove(intentSequence);
+                    segmentOfOperation.remove(intentSequence);
+                } else {
+                    operations.put(sequence, readOperation(buffer, sequence, type));
+                    segmentOfOperation.put(sequence, firstSequence);
+                }
+                nextSequence = Math.max(nextSequence, sequence + 1);
+                position += HEADER_SIZE + length;
+            }
+        }
+        for (long firstSequence : segmentOfOperation.values()) {
+            segments.get(firstSequence).pending++;
+        }
+        return new ArrayList<>(operations.values());
+    }
+
+    private static Operation readOperation(MappedByteBuffer buffer, long sequence, byte type) {
+        Operation operation = new Operation(sequence, type == ENTRY);
+        if (type == EXIT) {
+            operation.ticketId = buffer.getInt();
+        }
+        operation.parkingNumber = buffer.getInt();
+        operation.parkingType = ParkingType.values()[buffer.get()];
+        operation.timeMillis = buffer.getLong();
+        if (type == EXIT) {
+            operation.price = buffer.getDouble();
+        }
+        byte[] plate = new byte[buffer.get() & 0xFF];
+        buffer.get(plate);
+        operation.vehicleRegNumber = new String(plate, StandardCharsets.UTF_8);
+        return operation;
+    }
+
+    private void syncLoop(long intervalMillis) {
+        while (true) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            MappedByteBuffer buffer;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                buffer = current.buffer;
+            }
+            // hors du verrou : les bornes continuent d'écrire pendant le msync
+            buffer.force();
+        }
+    }
+
+    /**
+     * Forces the current segment to disk and stops accepting operations.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (fsyncPolicy != FsyncPolicy.NONE) {
+                current.buffer.force();
+            }
+        }
+        if (syncer != null) {
+            syncer.interrupt();
+        }
+    }
+
+    private static class Segment {
+        private final Path path;
+        // null pour les segments pleins ou relus au démarrage
+        private MappedByteBuffer buffer;
+        private int position;
+        private int pending;
+
+        Segment(Path path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * A journaled entry or exit.
+     */
+    public static class Operation {
+        private final long sequence;
+        private final boolean entry;
+        private int ticketId;
+        private int parkingNumber;
+        private ParkingType parkingType;
+        private long timeMillis;
+        private double price;
+        private String vehicleRegNumber;
+
+        Operation(long sequence, boolean entry) {
+            this.sequence = sequence;
+            this.entry = entry;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public boolean isEntry() {
+            return entry;
+        }
+
+        /**
+         * 0 for an entry, or for an exit of a ticket not yet written by the write-behind queue.
+         */
+        public int getTicketId() {
+            return ticketId;
+        }
+
+        public int getParkingNumber() {
+            return parkingNumber;
+        }
+
+        public ParkingType getParkingType() {
+            return parkingType;
+        }
+
+        /**
+         * In time of an entry, out time of an exit.
+         */
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public String getVehicleRegNumber() {
+            return vehicleRegNumber;
+        }
+
+        @Override
+        public String toString() {
+            return (entry ? "entry" : "exit") + " #" + sequence + " of " + vehicleRegNumber + " on " + parkingType
+                    + " spot " + parkingNumber + " at " + new Date(timeMillis);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Live occupancy of the parking per {@link ParkingType}, kept up to date by the DAOs so that dashboards can poll it
+ * as often as they like without querying the database. Every query is O(1) and nothing takes a lock.
+ *
+ * <p>Entries, exits and peak occupancy are also kept per minute, hour and day (UTC) in ring buffers of
+ * fixed size, see {@link Resolution}. A ring cell packs the bucket number with its value, so a cell left
+ * from an older round of the ring is recognized and restarted by the same compare-and-set that updates it.
+ */
+public class OccupancyTracker {
+
+    public enum Resolution {
+        MINUTE(60 * 1000L, 24 * 60),
+        HOUR(60 * 60 * 1000L, 7 * 24),
+        DAY(24 * 60 * 60 * 1000L, 366);
+
+        private final long millis;
+        private final int buckets;
+
+        Resolution(long millis, int buckets) {
+            this.millis = millis;
+            this.buckets = buckets;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return how many buckets are kept, older ones read as 0
+         */
+        public int getBuckets() {
+            return buckets;
+        }
+    }
+
+    private static final int ENTRIES = 0;
+    private static final int EXITS = 1;
+    private static final int PEAK_OCCUPANCY = 2;
+    private static final int METRICS = 3;
+
+    // cellule = numéro de tranche (28 bits) | valeur (36 bits)
+    private static final int VALUE_BITS = 36;
+    private static final long VALUE_MASK = (1L << VALUE_BITS) - 1;
+
+    private final LongSupplier clock;
+    private final int types = ParkingType.values().length;
+    private final AtomicIntegerArray capacity = new AtomicIntegerArray(types);
+    private final AtomicIntegerArray occupied = new AtomicIntegerArray(types);
+    // bit n : place n occupée
+    private volatile AtomicLongArray occupiedSpots = new AtomicLongArray(0);
+    // [métrique * types + type][résolution]
+    private final AtomicLongArray[][] rings = new AtomicLongArray[METRICS * types][Resolution.values().length];
+    // dernière tranche où l'occupation a été enregistrée, [type][résolution]
+    private final AtomicLongArray lastOccupancyBuckets = new AtomicLongArray(types * Resolution.values().length);
+
+    public OccupancyTracker() {
+        this(System::currentTimeMillis);
+    }
+
+    public OccupancyTracker(LongSupplier clock) {
+        this.clock = clock;
+        for (AtomicLongArray[] ring : rings) {
+            for (Resolution resolution : Resolution.values()) {
+                ring[resolution.ordinal()] = new AtomicLongArray(resolution.buckets);
+            }
+        }
+    }
+
+    /**
+     * Sets the capacity and occupancy from the state of every spot, typically once at startup.
+     */
+    public void load(List<ParkingSpot> parkingSpots) {
+        int maxNumber = 0;
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            maxNumber = Math.max(maxNumber, parkingSpot.getId());
+        }
+        AtomicLongArray loaded = new AtomicLongArray((maxNumber + 64) >>> 6);
+        int[] capacities = new int[types];
+        int[] occupancies = new int[types];
+        for (ParkingSpot parkingSpot : parkingSpots) {
+            int type = parkingSpot.getParkingType().ordinal();
+            capacities[type]++;
+            if (!parkingSpot.isAvailable()) {
+                occupancies[type]++;
+                int number = parkingSpot.getId();
+                loaded.set(number >>> 6, loaded.get(number >>> 6) | (1L << number));
+            }
+        }
+        occupiedSpots = loaded;
+        long now = clock.getAsLong();
+        for (int type = 0; type < types; type++) {
+            capacity.set(type, capacities[type]);
+            occupied.set(type, occupancies[type]);
+            for (Resolution resolution : Resolution.values()) {
+                lastOccupancyBuckets.set(type * Resolution.values().length + resolution.ordinal(), now / resolution.millis);
+            }
+            recordOccupancy(type, occupancies[type], occupancies[type], now);
+        }
+    }
+
+    /**
+     * Records the new state of a spot. Repeated calls with the same state are ignored, so every path that
+     * frees or takes a spot can report it. Spots unknown at {@link #load} time are ignored.
+     */
+    public void spotUpdated(int number, ParkingType parkingType, boolean available) {
+        AtomicLongArray spots = occupiedSpots;
+        if (parkingType == null || number < 0 || (number >>> 6) >= spots.length()) {
+            return;
+        }
+        int word = number >>> 6;
+        long mask = 1L << number;
+        long bits;
+        do {
+            bits = spots.get(word);
+            if (((bits & mask) == 0) == available) {
+                return;
+            }
+        } while (!spots.compareAndSet(word, bits, bits ^ mask));
+        int type = parkingType.ordinal();
+        int level = available ? occupied.decrementAndGet(type) : occupied.incrementAndGet(type);
+        recordOccupancy(type, available ? level + 1 : level - 1, level, clock.getAsLong());
+    }
+
+    public void vehicleEntered(ParkingType parkingType) {
+        if (parkingType != null) {
+            add(ENTRIES, parkingType.ordinal(), clock.getAsLong());
+        }
+    }
+
+    public void vehicleExited(ParkingType parkingType) {
+        if (parkingType != null) {
+            add(EXITS, parkingType.ordinal(), clock.getAsLong());
+        }
+    }
+
+    public int getCapacity(ParkingType parkingType) {
+        return capacity.get(parkingType.ordinal());
+    }
+
+    public int getOccupied(ParkingType parkingType) {
+        return occupied.get(parkingType.ordinal());
+    }
+
+    public int getAvailable(ParkingType parkingType) {
+        return getCapacity(parkingType) - getOccupied(parkingType);
+    }
+
+    /**
+     * @return the entries of the bucket holding epochMillis, 0 if it is no longer kept
+     */
+    public long getEntries(ParkingType parkingType, Resolution resolution, long epochMillis) {
+        return read(ENTRIES, parkingType.ordinal(), resolution, epochMillis / resolution.millis);
+    }
+
+    public long getEntries(ParkingType parkingType, Resolution resolution) {
+        return getEntries(parkingType, resolution, clock.getAsLong());
+    }
+
+    public long getExits(ParkingType parkingType, Resolution resolution, long epochMillis) {
+        return read(EXITS, parkingType.ordinal(), resolution, epochMillis / resolution.millis);
+    }
+
+    public long getExits(ParkingType parkingType, Resolution resolution) {
+        return getExits(parkingType, resolution, clock.getAsLong());
+    }
+
+    /**
+     * @return the highest number of occupied spots during the bucket holding epochMillis, 0 if it is no longer kept
+     */
+    public long getPeakOccupancy(ParkingType parkingType, Resolution resolution, long epochMillis) {
+        int type = parkingType.ordinal();
+        long bucket = epochMillis / resolution.millis;
+        // aucun changement depuis : l'occupation n'a pas bougé
+        if (bucket > lastOccupancyBuckets.get(type * Resolution.values().length + resolution.ordinal())) {
+            return occupied.get(type);
+        }
+        return read(PEAK_OCCUPANCY, type, resolution, bucket);
+    }
+
+    public long getPeakOccupancy(ParkingType parkingType, Resolution resolution) {
+        return getPeakOccupancy(parkingType, resolution, clock.getAsLong());
+    }
+
+    private void add(int metric, int type, long now) {
+        for (Resolution resolution : Resolution.values()) {
+            increment(rings[metric * types + type][resolution.ordinal()], resolution, now / resolution.millis);
+        }
+    }
+
+    private static void increment(AtomicLongArray ring, Resolution resolution, long bucket) {
+        int slot = (int) (bucket % resolution.buckets);
+        long cell;
+        long next;
+        do {
+            cell = ring.get(slot);
+            long cellBucket = cell >>> VALUE_BITS;
+            // horloge revenue en arrière au-delà d'un tour : la tranche n'est plus conservée
+            if (cellBucket > bucket) {
+                return;
+            }
+            next = cellBucket == bucket ? cell + 1 : (bucket << VALUE_BITS) | 1;
+        } while (!ring.compareAndSet(slot, cell, next));
+    }
+
+    private void recordOccupancy(int type, int previousLevel, int level, long now) {
+        for (Resolution resolution : Resolution.values()) {
+            AtomicLongArray ring = rings[PEAK_OCCUPANCY * types + type][resolution.ordinal()];
+            long bucket = now / resolution.millis;
+            long lastBucket = lastOccupancyBuckets.getAndAccumulate(
+                    type * Resolution.values().length + resolution.ordinal(), bucket, Math::max);
+            // tranches sans changement depuis le précédent : l'occupation y était celle d'avant ce changement
+            for (long skipped = Math.max(lastBucket + 1, bucket - resolution.buckets + 1); skipped < bucket; skipped++) {
+                max(ring, resolution, skipped, previousLevel);
+            }
+            max(ring, resolution, bucket, Math.max(previousLevel, level));
+        }
+    }
+
+    private static void max(AtomicLongArray ring, Resolution resolution, long bucket, long value) {
+        int slot = (int) (bucket % resolution.buckets);
+        long cell;
+        long next;
+        do {
+            cell = ring.get(slot);
+            long cellBucket = cell >>> VALUE_BITS;
+            if (cellBucket > bucket || (cellBucket == bucket && (cell & VALUE_MASK) >= value)) {
+                return;
+            }
+            next = (bucket << VALUE_BITS) | value;
+        } while (!ring.compareAndSet(slot, cell, next));
+    }
+
+    private long read(int metric, int type, Resolution resolution, long bucket) {
+        long cell = rings[metric * types + type][resolution.ordinal()].get((int) (bucket % resolution.buckets));
+        return (cell >>> VALUE_BITS) == bucket ? cell & VALUE_MASK : 0;
+    }
+}
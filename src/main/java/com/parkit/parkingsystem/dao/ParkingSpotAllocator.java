@@ -0,0 +1,121 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory view of the free spots of the parking, one bitmap per {@link ParkingType}.
+ * Bit n of a bitmap is set when spot n is free, so the lowest free spot is found by scanning
+ * 64 spots per word instead of running the min() query against the parking table.
+ */
+public class ParkingSpotAllocator {
+
+    private final int capacity;
+    private final Map<ParkingType, AtomicLongArray> freeSpots = new EnumMap<>(ParkingType.class);
+
+    /**
+     * @param capacity highest spot number + 1
+     */
+    public ParkingSpotAllocator(int capacity) {
+        this.capacity = capacity;
+        int words = (capacity + 63) >>> 6;
+        for (ParkingType parkingType : ParkingType.values()) {
+            freeSpots.put(parkingType, new AtomicLongArray(words));
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the lowest free spot number for this type, or -1 when the parking is full
+     */
+    public int nextAvailable(ParkingType parkingType) {
+        AtomicLongArray bitmap = freeSpots.get(parkingType);
+        for (int word = 0; word < bitmap.length(); word++) {
+            long bits = bitmap.get(word);
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Atomically takes the lowest free spot of this type, so two gates can never get the same one.
+     *
+     * @return the claimed spot number, or -1 when the parking is full
+     */
+    public int claim(ParkingType parkingType) {
+        AtomicLongArray bitmap = freeSpots.get(parkingType);
+        for (int word = 0; word < bitmap.length(); word++) {
+            long bits;
+            while ((bits = bitmap.get(word)) != 0) {
+                long lowest = Long.lowestOneBit(bits);
+                if (bitmap.compareAndSet(word, bits, bits & ~lowest)) {
+                    return (word << 6) + Long.numberOfTrailingZeros(lowest);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Atomically takes the given spot.
+     *
+     * @return false if the spot was not free, e.g. another gate claimed it first
+     */
+    public boolean claim(int number, ParkingType parkingType) {
+        checkNumber(number);
+        AtomicLongArray bitmap = freeSpots.get(parkingType);
+        int word = number >>> 6;
+        long mask = 1L << number;
+        while (true) {
+            long current = bitmap.get(word);
+            if ((current & mask) == 0) {
+                return false;
+            }
+            if (bitmap.compareAndSet(word, current, current & ~mask)) {
+                return true;
+            }
+        }
+    }
+
+    public void setAvailable(int number, ParkingType parkingType, boolean available) {
+        checkNumber(number);
+        AtomicLongArray bitmap = freeSpots.get(parkingType);
+        int word = number >>> 6;
+        long mask = 1L << number;
+        while (true) {
+            long current = bitmap.get(word);
+            long updated = available ? current | mask : current & ~mask;
+            if (current == updated || bitmap.compareAndSet(word, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    public boolean isAvailable(int number, ParkingType parkingType) {
+        checkNumber(number);
+        return (freeSpots.get(parkingType).get(number >>> 6) & (1L << number)) != 0;
+    }
+
+    public int countAvailable(ParkingType parkingType) {
+        AtomicLongArray bitmap = freeSpots.get(parkingType);
+        int count = 0;
+        for (int word = 0; word < bitmap.length(); word++) {
+            count += Long.bitCount(bitmap.get(word));
+        }
+        return count;
+    }
+
+    private void checkNumber(int number) {
+        if (number < 0 || number >= capacity) {
+            throw new IllegalArgumentException("Parking number out of range: " + number);
+        }
+    }
+}
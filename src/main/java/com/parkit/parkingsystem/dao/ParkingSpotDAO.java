@@ -4,19 +4,162 @@ import com.parkit.parkingsystem.config.DataBaseConfig;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.util.OperationMetrics;
+import com.parkit.parkingsystem.util.OperationTimer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
 
-public class ParkingSpotDAO {
+public class ParkingSpotDAO implements ParkingSpotRepository {
 
-    private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
+    private static final Logger logger = LogManager.getLogger(ParkingSpotDAO.class);
+    private static final OperationTimer getNextAvailableSlotTimer = OperationMetrics.timer("ParkingSpotDAO.getNextAvailableSlot");
+    private static final OperationTimer claimParkingSpotTimer = OperationMetrics.timer("ParkingSpotDAO.claimParkingSpot");
+    private static final OperationTimer updateParkingTimer = OperationMetrics.timer("ParkingSpotDAO.updateParking");
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+    // lot dont la base est dataBaseConfig, reporté sur les places lues
+    public String facilityId;
+    // null tant que loadAllocator() n'a pas été appelé : on interroge alors la base à chaque fois
+    public ParkingSpotAllocator allocator;
+    // non null : l'occupation est suivie en mémoire pour les tableaux de bord
+    public OccupancyTracker occupancyTracker;
 
+    /**
+     * Loads the state of every spot in memory so that getNextAvailableSlot no longer queries the database.
+     * updateParking keeps the allocator in sync afterwards.
+     */
+    public boolean loadAllocator() {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            ResultSet rs = ps.executeQuery();
+            List<ParkingSpot> parkingSpots = new ArrayList<>();
+            int maxNumber = 0;
+            while (rs.next()) {
+                ParkingSpot parkingSpot = new ParkingSpot(facilityId, rs.getInt(1), ParkingType.valueOf(rs.getString(3)), rs.getBoolean(2));
+                parkingSpots.add(parkingSpot);
+                maxNumber = Math.max(maxNumber, parkingSpot.getId());
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+
+            ParkingSpotAllocator loaded = new ParkingSpotAllocator(maxNumber + 1);
+            for (ParkingSpot parkingSpot : parkingSpots) {
+                loaded.setAvailable(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable());
+            }
+            allocator = loaded;
+            if (occupancyTracker != null) {
+                occupancyTracker.load(parkingSpots);
+            }
+            logger.info("Loaded " + parkingSpots.size() + " parking spots in memory");
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error loading parking spots", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Adds free spots of this type, numbered after the last spot, until the lot has at least count of them.
+     * A loaded allocator is reloaded so that the new spots are allocated.
+     *
+     * @return the number of spots added, or -1 on error
+     */
+    public int ensureParkingSpots(ParkingType parkingType, int count) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_PARKING_SPOTS);
+            ps.setString(1, parkingType.toString());
+            ResultSet rs = ps.executeQuery();
+            int existing = rs.next() ? rs.getInt(1) : 0;
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            if (existing >= count) {
+                return 0;
+            }
+            ps = con.prepareStatement(DBConstants.GET_MAX_PARKING_NUMBER);
+            rs = ps.executeQuery();
+            int maxNumber = rs.next() ? rs.getInt(1) : 0;
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+
+            ps = con.prepareStatement(DBConstants.SAVE_PARKING_SPOT);
+            for (int i = 1; i <= count - existing; i++) {
+                ps.setInt(1, maxNumber + i);
+                ps.setString(2, parkingType.toString());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            dataBaseConfig.closePreparedStatement(ps);
+            logger.info("Added " + (count - existing) + " " + parkingType + " spots");
+            if (allocator != null) {
+                loadAllocator();
+            }
+            return count - existing;
+        } catch (Exception ex) {
+            logger.error("Error adding parking spots", ex);
+            return -1;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Frees the spot unless an open ticket is on it, and marks it taken otherwise.
+     * Call before {@link #loadAllocator()}, which is not updated.
+     *
+     * @return the number of rows updated, or -1 on error
+     */
+    public int reconcileParkingSpot(int parkingNumber) {
+        return reconcile(DBConstants.RECONCILE_PARKING_SPOT, parkingNumber);
+    }
+
+    /**
+     * Same as {@link #reconcileParkingSpot(int)} for every spot of this type.
+     */
+    public int reconcileParkingSpots(ParkingType parkingType) {
+        return reconcile(DBConstants.RECONCILE_PARKING_SPOTS, parkingType.toString());
+    }
+
+    private int reconcile(String sql, Object key) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setObject(1, key);
+            int updateCount = ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            return updateCount;
+        } catch (Exception ex) {
+            logger.error("Error reconciling parking spots with the open tickets", ex);
+            return -1;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    @Override
+    public String getFacilityId() {
+        return facilityId;
+    }
+
+    @Override
     public int getNextAvailableSlot(ParkingType parkingType) {
+        long start = getNextAvailableSlotTimer.start();
+        if (allocator != null) {
+            int parkingNumber = allocator.nextAvailable(parkingType);
+            getNextAvailableSlotTimer.stop(start);
+            return parkingNumber;
+        }
         Connection con = null;
         int result = -1;
         try {
@@ -30,14 +173,101 @@ public class ParkingSpotDAO {
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
         } catch (Exception ex) {
+            getNextAvailableSlotTimer.error();
             logger.error("Error fetching next available slot", ex);
         } finally {
             dataBaseConfig.closeConnection(con);
+            getNextAvailableSlotTimer.stop(start);
         }
         return result;
     }
 
+    /**
+     * Marks the spot as taken only if it is still free. The update count tells whether this gate won the spot,
+     * so concurrent gates never share a PARKING_NUMBER and no global lock is needed.
+     */
+    @Override
+    public boolean claimParkingSpot(ParkingSpot parkingSpot) {
+        ParkingSpotAllocator claimedIn = allocatorFor(parkingSpot.getId());
+        if (claimedIn != null && !claimedIn.claim(parkingSpot.getId(), parkingSpot.getParkingType())) {
+            return false;
+        }
+        int updateCount = claimInDatabase(parkingSpot);
+        // 0 ligne : la place a été prise par ailleurs, elle reste donc occupée dans l'allocateur ;
+        // seule une mise à jour qui n'a pas eu lieu rend la place
+        if (updateCount < 0 && claimedIn != null) {
+            claimedIn.setAvailable(parkingSpot.getId(), parkingSpot.getParkingType(), true);
+        }
+        return (updateCount == 1);
+    }
+
+    /**
+     * Claims the lowest free spot of this type, moving on to the next one when another gate was faster.
+     * Once the allocator is loaded the spot is taken from it atomically, so the gates never compete for the
+     * same one and only a spot the allocator wrongly thought free is skipped.
+     *
+     * @return the claimed spot number, or -1 when the parking is full or on a database error
+     */
+    @Override
+    public int claimNextAvailableSlot(ParkingType parkingType) {
+        ParkingSpotAllocator claimedIn = allocator;
+        if (claimedIn != null) {
+            int parkingNumber;
+            while ((parkingNumber = claimedIn.claim(parkingType)) > 0) {
+                int updateCount = claimInDatabase(new ParkingSpot(facilityId, parkingNumber, parkingType, true));
+                if (updateCount == 1) {
+                    return parkingNumber;
+                }
+                if (updateCount < 0) {
+                    claimedIn.setAvailable(parkingNumber, parkingType, true);
+                    return -1;
+                }
+            }
+            return -1;
+        }
+        while (true) {
+            int parkingNumber = getNextAvailableSlot(parkingType);
+            if (parkingNumber <= 0) {
+                return -1;
+            }
+            int updateCount = claimInDatabase(new ParkingSpot(facilityId, parkingNumber, parkingType, true));
+            if (updateCount != 0) {
+                return updateCount == 1 ? parkingNumber : -1;
+            }
+            // une autre borne a pris la place entre la lecture et la mise à jour : elle a avancé, on recommence
+        }
+    }
+
+    /**
+     * @return the number of rows updated, 0 when the spot was taken by another gate, or -1 when the update
+     * did not execute
+     */
+    private int claimInDatabase(ParkingSpot parkingSpot) {
+        long start = claimParkingSpotTimer.start();
+        Connection con = null;
+        int updateCount = -1;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+            ps.setInt(1, parkingSpot.getId());
+            updateCount = ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            if (updateCount == 1) {
+                spotUpdated(parkingSpot, false);
+            }
+        } catch (Exception ex) {
+            claimParkingSpotTimer.error();
+            logger.error("Error claiming parking spot", ex);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            claimParkingSpotTimer.stop(start);
+        }
+        return updateCount;
+    }
+
+    @Override
     public boolean updateParking(ParkingSpot parkingSpot) {
+        long start = updateParkingTimer.start();
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
@@ -46,12 +276,47 @@ public class ParkingSpotDAO {
             ps.setInt(2, parkingSpot.getId());
             int updateCount = ps.executeUpdate();
             dataBaseConfig.closePreparedStatement(ps);
+            if (updateCount == 1) {
+                ParkingSpotAllocator updated = allocatorFor(parkingSpot.getId());
+                if (updated != null) {
+                    updated.setAvailable(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable());
+                }
+                spotUpdated(parkingSpot, parkingSpot.isAvailable());
+            }
             return (updateCount == 1);
         } catch (Exception ex) {
+            updateParkingTimer.error();
             logger.error("Error updating parking info", ex);
             return false;
         } finally {
             dataBaseConfig.closeConnection(con);
+            updateParkingTimer.stop(start);
+        }
+    }
+
+    /**
+     * @return the allocator, reloaded first when the spot was added after it was loaded, or null when there is
+     * no allocator or the spot is not in the parking table
+     */
+    ParkingSpotAllocator allocatorFor(int parkingNumber) {
+        ParkingSpotAllocator current = allocator;
+        if (current == null || parkingNumber < current.getCapacity()) {
+            return current;
+        }
+        // place ajoutée depuis le chargement, par ensureParkingSpots ou une autre instance : on recharge
+        if (loadAllocator()) {
+            current = allocator;
+            if (parkingNumber < current.getCapacity()) {
+                return current;
+            }
+        }
+        logger.warn("Parking spot " + parkingNumber + " is not tracked by the allocator");
+        return null;
+    }
+
+    void spotUpdated(ParkingSpot parkingSpot, boolean available) {
+        if (occupancyTracker != null) {
+            occupancyTracker.spotUpdated(parkingSpot.getId(), parkingSpot.getParkingType(), available);
         }
     }
 }
@@ -0,0 +1,36 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+/**
+ * Storage of the parking spots, as used by the parking service.
+ */
+public interface ParkingSpotRepository {
+
+    /**
+     * @return the facility whose spots are stored here, null for a single lot without facility configuration
+     */
+    default String getFacilityId() {
+        return null;
+    }
+
+    /**
+     * @return the lowest free spot number of this type, or a value &lt;= 0 when none is free
+     */
+    int getNextAvailableSlot(ParkingType parkingType);
+
+    /**
+     * Marks the spot as taken only if it is still free.
+     *
+     * @return false if another gate claimed it first
+     */
+    boolean claimParkingSpot(ParkingSpot parkingSpot);
+
+    /**
+     * @return the claimed spot number, or a value &lt;= 0 when none is free
+     */
+    int claimNextAvailableSlot(ParkingType parkingType);
+
+    boolean updateParking(ParkingSpot parkingSpot);
+}
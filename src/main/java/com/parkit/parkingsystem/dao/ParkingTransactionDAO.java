@@ -0,0 +1,290 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.OperationMetrics;
+import com.parkit.parkingsystem.util.OperationTimer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Vehicle entry and exit as single transactions on one connection:
+ * claiming the spot and inserting the ticket (or closing the ticket and freeing the spot) either both
+ * happen or none does, and the in-memory state of the other DAOs is only updated after the commit.
+ */
+public class ParkingTransactionDAO {
+
+    private static final Logger logger = LogManager.getLogger(ParkingTransactionDAO.class);
+    private static final OperationTimer enterVehicleTimer = OperationMetrics.timer("ParkingTransactionDAO.enterVehicle");
+    private static final OperationTimer exitVehicleTimer = OperationMetrics.timer("ParkingTransactionDAO.exitVehicle");
+    private static final OperationTimer applyBatchTimer = OperationMetrics.timer("ParkingTransactionDAO.applyBatch");
+
+    public DataBaseConfig dataBaseConfig;
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final TicketDAO ticketDAO;
+
+    /**
+     * Writes to the database of the ticket DAO.
+     */
+    public ParkingTransactionDAO(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        this.dataBaseConfig = ticketDAO.dataBaseConfig;
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+    }
+
+    /**
+     * Claims the ticket's spot and saves the ticket. When another gate took the spot first, the next free
+     * spot of the same type is tried and set on the ticket: taken atomically from the allocator once it is
+     * loaded, read from the database otherwise.
+     *
+     * @return false if the parking is full or the transaction failed
+     */
+    public boolean enterVehicle(Ticket ticket) {
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        ParkingSpotAllocator allocator = parkingSpotDAO.allocatorFor(parkingSpot.getId());
+        boolean preclaimed = false;
+        while (true) {
+            Boolean entered = enterVehicle(ticket, parkingSpot, allocator, preclaimed);
+            if (entered != null) {
+                return entered;
+            }
+            // chaque échec retire une place de l'allocateur ou signifie qu'une autre borne a avancé
+            int parkingNumber = allocator != null
+                    ? allocator.claim(parkingSpot.getParkingType())
+                    : parkingSpotDAO.getNextAvailableSlot(parkingSpot.getParkingType());
+            if (parkingNumber <= 0) {
+                return false;
+            }
+            preclaimed = allocator != null;
+            parkingSpot = new ParkingSpot(parkingSpot.getFacilityId(), parkingNumber, parkingSpot.getParkingType(), true);
+        }
+    }
+
+    /**
+     * @param preclaimed true when the spot was already taken from the allocator
+     * @return null when the spot was taken by another gate, so the caller can try the next one
+     */
+    private Boolean enterVehicle(Ticket ticket, ParkingSpot parkingSpot, ParkingSpotAllocator allocator, boolean preclaimed) {
+        long start = enterVehicleTimer.start();
+        if (allocator != null && !preclaimed && !allocator.claim(parkingSpot.getId(), parkingSpot.getParkingType())) {
+            enterVehicleTimer.stop(start);
+            return null;
+        }
+        Connection con = null;
+        boolean releaseSpot = true;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+
+            PreparedStatement claim = con.prepareStatement(DBConstants.CLAIM_PARKING_SPOT);
+            claim.setInt(1, parkingSpot.getId());
+            int claimed = claim.executeUpdate();
+            dataBaseConfig.closePreparedStatement(claim);
+            if (claimed != 1) {
+                con.rollback();
+                // la place reste marquée prise dans l'allocateur : elle l'est bien en base
+                releaseSpot = false;
+                return null;
+            }
+
+            PreparedStatement insert = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+            insert.setInt(1, parkingSpot.getId());
+            insert.setString(2, ticket.getVehicleRegNumber());
+            insert.setDouble(3, ticket.getPrice());
+            insert.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+            insert.setTimestamp(5, ticket.getOutTime() == null ? null : new Timestamp(ticket.getOutTime().getTime()));
+            insert.executeUpdate();
+            ResultSet keys = insert.getGeneratedKeys();
+            int ticketId = keys.next() ? keys.getInt(1) : 0;
+            dataBaseConfig.closeResultSet(keys);
+            dataBaseConfig.closePreparedStatement(insert);
+
+            con.commit();
+            releaseSpot = false;
+            parkingSpot.setAvailable(false);
+            ticket.setParkingSpot(parkingSpot);
+            ticket.setId(ticketId);
+            parkingSpotDAO.spotUpdated(parkingSpot, false);
+            ticketDAO.ticketSaved(ticket);
+            return true;
+        } catch (Exception ex) {
+            enterVehicleTimer.error();
+            logger.error("Error recording vehicle entry", ex);
+            rollback(con);
+            return false;
+        } finally {
+            if (releaseSpot && allocator != null) {
+                allocator.setAvailable(parkingSpot.getId(), parkingSpot.getParkingType(), true);
+            }
+            dataBaseConfig.closeConnection(con);
+            enterVehicleTimer.stop(start);
+        }
+    }
+
+    /**
+     * Closes the ticket (price and out time must be set) and frees its spot.
+     *
+     * @return false if the ticket is not open any more or the transaction failed; nothing is written then
+     */
+    public boolean exitVehicle(Ticket ticket) {
+        long start = exitVehicleTimer.start();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+
+            PreparedStatement close = con.prepareStatement(DBConstants.UPDATE_TICKET);
+            close.setDouble(1, ticket.getPrice());
+            close.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+            close.setInt(3, ticket.getId());
+            int closed = close.executeUpdate();
+            dataBaseConfig.closePreparedStatement(close);
+            if (closed != 1) {
+                // ticket inconnu ou déjà fermé : sa place a pu être reprise, elle ne doit pas être libérée
+                logger.error("Ticket " + ticket.getId() + " of " + ticket.getVehicleRegNumber() + " is not open, exit not recorded");
+                con.rollback();
+                exitVehicleTimer.error();
+                return false;
+            }
+
+            ParkingSpot parkingSpot = ticket.getParkingSpot();
+            PreparedStatement free = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+            free.setBoolean(1, true);
+            free.setInt(2, parkingSpot.getId());
+            free.executeUpdate();
+            dataBaseConfig.closePreparedStatement(free);
+
+            con.commit();
+            parkingSpot.setAvailable(true);
+            ticketDAO.ticketClosed(ticket);
+            ParkingSpotAllocator allocator = parkingSpotDAO.allocatorFor(parkingSpot.getId());
+            if (allocator != null) {
+                allocator.setAvailable(parkingSpot.getId(), parkingSpot.getParkingType(), true);
+            }
+            parkingSpotDAO.spotUpdated(parkingSpot, true);
+            return true;
+        } catch (Exception ex) {
+            exitVehicleTimer.error();
+            logger.error("Error recording vehicle exit", ex);
+            rollback(con);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            exitVehicleTimer.stop(start);
+        }
+    }
+
+    /**
+     * Writes a micro-batch of gate events in one transaction: the new tickets as one JDBC batch, the closed
+     * tickets as another and the final state of every spot touched as a third. A ticket both opened and closed
+     * in the batch is inserted closed. The caller has already taken and freed the spots in the allocator;
+     * the other in-memory state is updated after the commit.
+     *
+     * @param parkingSpots one spot per number touched, with its state at the end of the batch
+     * @return false if the transaction failed and nothing was written
+     */
+    public boolean applyBatch(List<Ticket> entered, List<Ticket> exited, Collection<ParkingSpot> parkingSpots) {
+        long start = applyBatchTimer.start();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+
+            // les tickets insérés dans ce lot n'ont pas encore d'ID : ils sont écrits fermés par l'insert
+            PreparedStatement close = con.prepareStatement(DBConstants.UPDATE_TICKET);
+            boolean hasUpdates = false;
+            for (Ticket ticket : exited) {
+                if (ticket.getId() != 0) {
+                    close.setDouble(1, ticket.getPrice());
+                    close.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+                    close.setInt(3, ticket.getId());
+                    close.addBatch();
+                    hasUpdates = true;
+                }
+            }
+
+            if (!entered.isEmpty()) {
+                PreparedStatement insert = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+                for (Ticket ticket : entered) {
+                    insert.setInt(1, ticket.getParkingSpot().getId());
+                    insert.setString(2, ticket.getVehicleRegNumber());
+                    insert.setDouble(3, ticket.getPrice());
+                    insert.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+                    insert.setTimestamp(5, ticket.getOutTime() == null ? null : new Timestamp(ticket.getOutTime().getTime()));
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                ResultSet keys = insert.getGeneratedKeys();
+                for (int i = 0; i < entered.size() && keys.next(); i++) {
+                    entered.get(i).setId(keys.getInt(1));
+                }
+                dataBaseConfig.closeResultSet(keys);
+                dataBaseConfig.closePreparedStatement(insert);
+            }
+
+            if (hasUpdates) {
+                for (int closed : close.executeBatch()) {
+                    if (closed == 0) {
+                        throw new SQLException("A ticket closed by the batch is no longer open");
+                    }
+                }
+            }
+            dataBaseConfig.closePreparedStatement(close);
+
+            if (!parkingSpots.isEmpty()) {
+                PreparedStatement spots = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+                for (ParkingSpot parkingSpot : parkingSpots) {
+                    spots.setBoolean(1, parkingSpot.isAvailable());
+                    spots.setInt(2, parkingSpot.getId());
+                    spots.addBatch();
+                }
+                spots.executeBatch();
+                dataBaseConfig.closePreparedStatement(spots);
+            }
+
+            con.commit();
+            for (Ticket ticket : entered) {
+                ticketDAO.ticketSaved(ticket);
+            }
+            for (Ticket ticket : exited) {
+                ticketDAO.ticketClosed(ticket);
+            }
+            for (ParkingSpot parkingSpot : parkingSpots) {
+                parkingSpotDAO.spotUpdated(parkingSpot, parkingSpot.isAvailable());
+            }
+            return true;
+        } catch (Exception ex) {
+            applyBatchTimer.error();
+            logger.error("Error writing a batch of " + entered.size() + " entries and " + exited.size() + " exits", ex);
+            rollback(con);
+            for (Ticket ticket : entered) {
+                ticket.setId(0);
+            }
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            applyBatchTimer.stop(start);
+        }
+    }
+
+    private void rollback(Connection con) {
+        if (con != null) {
+            try {
+                con.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back", e);
+            }
+        }
+    }
+}
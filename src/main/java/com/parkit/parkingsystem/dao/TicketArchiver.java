@@ -0,0 +1,189 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.util.OperationMetrics;
+import com.parkit.parkingsystem.util.OperationTimer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Moves the tickets closed more than retentionMillis ago from ticket to ticket_archive, so that the table the
+ * gates query only holds the open and recent tickets. Each chunk of chunkSize tickets is copied, counted in
+ * vehicle_visit_summary and deleted in one short transaction: the loyalty count of a vehicle (live tickets
+ * plus archived ones) is the same before and after, and the gates never wait long on the archiver's locks.
+ * Closed tickets are never updated: every write to ticket only matches open tickets (OUT_TIME is null, see
+ * UPDATE_TICKET), and the gates refuse the exit of a vehicle whose last ticket is closed. The chunks thus need
+ * no locking read.
+ */
+public class TicketArchiver {
+
+    private static final Logger logger = LogManager.getLogger(TicketArchiver.class);
+    private static final OperationTimer archiveChunkTimer = OperationMetrics.timer("TicketArchiver.archiveChunk");
+    private static final String PREFIX = "parkit.ticket.archive.";
+
+    private final DataBaseConfig dataBaseConfig;
+    private final long retentionMillis;
+    private final int chunkSize;
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder archivedTickets = new LongAdder();
+    private final LongAdder failedChunks = new LongAdder();
+
+    /**
+     * @param intervalMillis period of the background archiving, 0 to only archive when {@link #archive()} is called
+     */
+    public TicketArchiver(DataBaseConfig dataBaseConfig, long retentionMillis, int chunkSize, long intervalMillis) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.retentionMillis = retentionMillis;
+        this.chunkSize = chunkSize;
+        if (intervalMillis > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "ticket-archiver");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::archive, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    public static TicketArchiver fromSystemProperties(DataBaseConfig dataBaseConfig) {
+        return new TicketArchiver(dataBaseConfig,
+                TimeUnit.DAYS.toMillis(Long.getLong(PREFIX + "retentionDays", 90)),
+                Integer.getInteger(PREFIX + "chunkSize", 1_000),
+                TimeUnit.MINUTES.toMillis(Long.getLong(PREFIX + "intervalMinutes", 60)));
+    }
+
+    /**
+     * Archives chunk after chunk every ticket closed before the retention window.
+     *
+     * @return the number of tickets archived, or -1 if a chunk failed; the chunks before it stay archived
+     */
+    public int archive() {
+        Timestamp cutoff = new Timestamp(System.currentTimeMillis() - retentionMillis);
+        int total = 0;
+        int archived;
+        do {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            archived = archiveChunk(cutoff);
+            if (archived < 0) {
+                return -1;
+            }
+            total += archived;
+        } while (archived == chunkSize);
+        if (total > 0) {
+            logger.info("Archived " + total + " tickets closed before " + cutoff);
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of tickets archived, or -1 on error, the chunk being then rolled back
+     */
+    int archiveChunk(Timestamp cutoff) {
+        long start = archiveChunkTimer.start();
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            PreparedStatement select = con.prepareStatement(DBConstants.GET_TICKETS_TO_ARCHIVE);
+            select.setTimestamp(1, cutoff);
+            select.setInt(2, chunkSize);
+            ResultSet rs = select.executeQuery();
+            PreparedStatement insert = con.prepareStatement(DBConstants.ARCHIVE_TICKET);
+            PreparedStatement delete = con.prepareStatement(DBConstants.DELETE_TICKET);
+            Map<String, Integer> visits = new HashMap<>();
+            int count = 0;
+            while (rs.next()) {
+                insert.setInt(1, rs.getInt(1));
+                insert.setInt(2, rs.getInt(2));
+                insert.setString(3, rs.getString(3));
+                insert.setString(4, rs.getString(4));
+                insert.setDouble(5, rs.getDouble(5));
+                insert.setTimestamp(6, rs.getTimestamp(6));
+                insert.setTimestamp(7, rs.getTimestamp(7));
+                insert.addBatch();
+                delete.setInt(1, rs.getInt(1));
+                delete.addBatch();
+                visits.merge(rs.getString(4), 1, Integer::sum);
+                count++;
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(select);
+            if (count > 0) {
+                insert.executeBatch();
+                PreparedStatement summary = con.prepareStatement(DBConstants.ADD_ARCHIVED_VISITS);
+                for (Map.Entry<String, Integer> vehicle : visits.entrySet()) {
+                    summary.setString(1, vehicle.getKey());
+                    summary.setInt(2, vehicle.getValue());
+                    summary.addBatch();
+                }
+                summary.executeBatch();
+                dataBaseConfig.closePreparedStatement(summary);
+                delete.executeBatch();
+            }
+            dataBaseConfig.closePreparedStatement(insert);
+            dataBaseConfig.closePreparedStatement(delete);
+            con.commit();
+            archivedTickets.add(count);
+            return count;
+        } catch (Exception ex) {
+            archiveChunkTimer.error();
+            failedChunks.increment();
+            logger.error("Error archiving tickets", ex);
+            rollback(con);
+            return -1;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+            archiveChunkTimer.stop(start);
+        }
+    }
+
+    private void rollback(Connection con) {
+        if (con != null) {
+            try {
+                con.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back ticket archiving", e);
+            }
+        }
+    }
+
+    /**
+     * Stops the background archiving; the chunk in progress is rolled back or committed, never left half done.
+     */
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            try {
+                scheduler.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public long getArchivedTickets() {
+        return archivedTickets.sum();
+    }
+
+    public long getFailedChunks() {
+        return failedChunks.sum();
+    }
+}
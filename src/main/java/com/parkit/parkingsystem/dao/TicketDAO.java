@@ -1,69 +1,310 @@
 package com.parkit.parkingsystem.dao;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.ReplicaRouter;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.OperationMetrics;
+import com.parkit.parkingsystem.util.OperationTimer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.sql.*;
+import java.util.concurrent.CompletableFuture;
 
-public class TicketDAO {
+public class TicketDAO implements TicketRepository {
 
-    private static final Logger logger = LogManager.getLogger("TicketDAO");
+    private static final Logger logger = LogManager.getLogger(TicketDAO.class);
+    private static final OperationTimer saveTicketTimer = OperationMetrics.timer("TicketDAO.saveTicket");
+    private static final OperationTimer getTicketTimer = OperationMetrics.timer("TicketDAO.getTicket");
+    private static final OperationTimer updateTicketTimer = OperationMetrics.timer("TicketDAO.updateTicket");
+    private static final OperationTimer getNbTicketTimer = OperationMetrics.timer("TicketDAO.getNbTicket");
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+    // lot dont la base est dataBaseConfig, reporté sur les places des tickets lus
+    public String facilityId;
+    public ActiveTicketCache activeTicketCache = new ActiveTicketCache();
+    // null tant que loadVisitCounts() n'a pas été appelé : getNbTicket compte alors en base
+    public VisitCounter visitCounter;
+    // non null : les tickets sont écrits en base en arrière-plan, par lots
+    public TicketWriteBehind writeBehind;
+    // non null : les entrées et sorties sont comptées en mémoire pour les tableaux de bord
+    public OccupancyTracker occupancyTracker;
+    // non null : getTicket et getNbTicket lisent sur les réplicas quand le cache ne suffit pas
+    public ReplicaRouter replicaRouter;
 
+    /**
+     * Fills the open ticket cache from the database, typically once at startup.
+     */
+    public boolean loadActiveTickets() {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_OPEN_TICKETS);
+            ResultSet rs = ps.executeQuery();
+            activeTicketCache.clear();
+            while (rs.next()) {
+                Ticket ticket = readTicket(rs, rs.getString(7));
+                activeTicketCache.put(ticket);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            logger.info("Loaded " + activeTicketCache.size() + " open tickets in memory");
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error loading open tickets", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Counts the tickets of every vehicle in one query so that getNbTicket no longer hits the database.
+     * saveTicket keeps the counts up to date afterwards.
+     */
+    public boolean loadVisitCounts() {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_TICKETS_PER_VEHICLE);
+            ResultSet rs = ps.executeQuery();
+            VisitCounter loaded = new VisitCounter();
+            while (rs.next()) {
+                loaded.add(rs.getString(1), rs.getInt(2));
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            visitCounter = loaded;
+            logger.info("Loaded visit counts of " + loaded.size() + " vehicles in memory");
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error loading visit counts", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Writes again a journaled entry or exit that may not have reached the database, without duplicating it.
+     * An entry is inserted unless the vehicle already has an open ticket or a ticket with this in time, on the
+     * journaled spot or, if an open ticket holds it, on the lowest spot of the type left free. An exit closes the
+     * ticket if it is still open. Meant for {@link GateJournal#recover}, before the caches are loaded.
+     *
+     * @return false on a database error
+     */
+    public boolean replay(GateJournal.Operation operation) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            if (operation.isEntry()) {
+                replayEntry(con, operation);
+            } else {
+                replayExit(con, operation);
+            }
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error replaying the journaled " + operation, ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private void replayEntry(Connection con, GateJournal.Operation operation) throws SQLException {
+        PreparedStatement count = con.prepareStatement(DBConstants.COUNT_JOURNALED_TICKETS);
+        count.setString(1, operation.getVehicleRegNumber());
+        count.setTimestamp(2, new Timestamp(operation.getTimeMillis() - 1000));
+        count.setTimestamp(3, new Timestamp(operation.getTimeMillis() + 1000));
+        ResultSet rs = count.executeQuery();
+        boolean written = rs.next() && rs.getInt(1) > 0;
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(count);
+        if (written) {
+            return;
+        }
+        PreparedStatement spot = con.prepareStatement(DBConstants.GET_REPLAY_PARKING_SPOT);
+        spot.setString(1, operation.getParkingType().toString());
+        spot.setInt(2, operation.getParkingNumber());
+        rs = spot.executeQuery();
+        int parkingNumber = rs.next() ? rs.getInt(1) : 0;
+        dataBaseConfig.closeResultSet(rs);
+        dataBaseConfig.closePreparedStatement(spot);
+        if (parkingNumber <= 0) {
+            logger.error("No free spot left to replay the journaled " + operation);
+            return;
+        }
+        PreparedStatement insert = con.prepareStatement(DBConstants.SAVE_TICKET);
+        insert.setInt(1, parkingNumber);
+        insert.setString(2, operation.getVehicleRegNumber());
+        insert.setDouble(3, 0);
+        insert.setTimestamp(4, new Timestamp(operation.getTimeMillis()));
+        insert.setTimestamp(5, null);
+        insert.executeUpdate();
+        dataBaseConfig.closePreparedStatement(insert);
+        logger.warn("Replayed the journaled " + operation + " on spot " + parkingNumber);
+    }
+
+    private void replayExit(Connection con, GateJournal.Operation operation) throws SQLException {
+        // sans ID, le ticket n'était pas encore écrit par l'écriture différée : c'est le ticket ouvert du véhicule
+        PreparedStatement close = con.prepareStatement(operation.getTicketId() > 0 ? DBConstants.UPDATE_TICKET : DBConstants.CLOSE_OPEN_TICKET);
+        close.setDouble(1, operation.getPrice());
+        close.setTimestamp(2, new Timestamp(operation.getTimeMillis()));
+        if (operation.getTicketId() > 0) {
+            close.setInt(3, operation.getTicketId());
+        } else {
+            close.setString(3, operation.getVehicleRegNumber());
+        }
+        if (close.executeUpdate() > 0) {
+            logger.warn("Replayed the journaled " + operation);
+        }
+        dataBaseConfig.closePreparedStatement(close);
+    }
+
+    @Override
+    public boolean isWriteBehind() {
+        return writeBehind != null;
+    }
+
+    /**
+     * Saves the ticket and returns a handle completed once it is in the database.
+     * In write-behind mode the caller does not wait for MySQL; otherwise the handle is already completed.
+     */
+    @Override
+    public CompletableFuture<Boolean> saveTicketAsync(Ticket ticket) {
+        if (writeBehind == null) {
+            return CompletableFuture.completedFuture(saveTicket(ticket));
+        }
+        CompletableFuture<Boolean> completion = writeBehind.enqueueSave(ticket);
+        if (accepted(completion)) {
+            ticketSaved(ticket);
+            completion.thenAccept(saved -> {
+                if (!saved) {
+                    ticketSaveFailed(ticket);
+                }
+            });
+        }
+        return completion;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> updateTicketAsync(Ticket ticket) {
+        if (writeBehind == null) {
+            return CompletableFuture.completedFuture(updateTicket(ticket));
+        }
+        CompletableFuture<Boolean> completion = writeBehind.enqueueUpdate(ticket);
+        if (accepted(completion)) {
+            ticketClosed(ticket);
+            completion.thenAccept(closed -> {
+                if (!closed) {
+                    ticketCloseFailed(ticket);
+                }
+            });
+        }
+        return completion;
+    }
+
+    @Override
     public boolean saveTicket(Ticket ticket) {
+        long start = saveTicketTimer.start();
+        if (writeBehind != null) {
+            boolean accepted = accepted(saveTicketAsync(ticket));
+            saveTicketTimer.stop(start);
+            return accepted;
+        }
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET);
+            PreparedStatement ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
             ps.setInt(1, ticket.getParkingSpot().getId());
             ps.setString(2, ticket.getVehicleRegNumber());
             ps.setDouble(3, ticket.getPrice());
             ps.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
             ps.setTimestamp(5, ticket.getOutTime() == null ? null : new Timestamp(ticket.getOutTime().getTime()));
             ps.execute();
+            // l'ID est nécessaire pour que updateTicket puisse fermer le ticket retrouvé dans le cache
+            ResultSet keys = ps.getGeneratedKeys();
+            if (keys.next()) {
+                ticket.setId(keys.getInt(1));
+            }
+            dataBaseConfig.closeResultSet(keys);
+            dataBaseConfig.closePreparedStatement(ps);
+            ticketSaved(ticket);
             return true;
         } catch (Exception ex) {
+            saveTicketTimer.error();
             logger.error("Error saving ticket", ex);
         } finally {
             dataBaseConfig.closeConnection(con);
+            saveTicketTimer.stop(start);
         }
         return false;
     }
 
+    @Override
     public Ticket getTicket(String vehicleRegNumber) {
+        long start = getTicketTimer.start();
+        Ticket ticket = activeTicketCache.get(vehicleRegNumber);
+        if (ticket != null) {
+            getTicketTimer.stop(start);
+            return ticket;
+        }
         Connection con = null;
-        Ticket ticket = null;
         try {
-            con = dataBaseConfig.getConnection();
+            con = getReadConnection(vehicleRegNumber);
             PreparedStatement ps = con.prepareStatement(DBConstants.GET_TICKET);
             ps.setString(1, vehicleRegNumber);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
-                ticket = new Ticket();
-                ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(6)), false);
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setId(rs.getInt(2));
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(rs.getDouble(3));
-                ticket.setInTime(rs.getTimestamp(4));
-                ticket.setOutTime(rs.getTimestamp(5));
+                ticket = readTicket(rs, vehicleRegNumber);
+                if (ticket.getOutTime() == null) {
+                    activeTicketCache.put(ticket);
+                }
             }
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
+            if (ticket == null) {
+                // pas de ticket ouvert : on renvoie le dernier ticket du véhicule
+                ps = con.prepareStatement(DBConstants.GET_LAST_TICKET);
+                ps.setString(1, vehicleRegNumber);
+                rs = ps.executeQuery();
+                if (rs.next()) {
+                    ticket = readTicket(rs, vehicleRegNumber);
+                }
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(ps);
+            }
+            if (ticket == null) {
+                // plus rien dans ticket : le dernier passage a pu être archivé
+                ps = con.prepareStatement(DBConstants.GET_LAST_ARCHIVED_TICKET);
+                ps.setString(1, vehicleRegNumber);
+                rs = ps.executeQuery();
+                if (rs.next()) {
+                    ticket = readTicket(rs, vehicleRegNumber);
+                }
+                dataBaseConfig.closeResultSet(rs);
+                dataBaseConfig.closePreparedStatement(ps);
+            }
         } catch (Exception ex) {
+            getTicketTimer.error();
             logger.error("Error fetching ticket", ex);
         } finally {
             dataBaseConfig.closeConnection(con);
+            getTicketTimer.stop(start);
         }
         return ticket;
     }
 
+    @Override
     public boolean updateTicket(Ticket ticket) {
+        long start = updateTicketTimer.start();
+        if (writeBehind != null) {
+            boolean accepted = accepted(updateTicketAsync(ticket));
+            updateTicketTimer.stop(start);
+            return accepted;
+        }
         Connection con = null;
         try {
             con = dataBaseConfig.getConnection();
@@ -71,32 +312,119 @@ public class TicketDAO {
             ps.setDouble(1, ticket.getPrice());
             ps.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
             ps.setInt(3, ticket.getId());
-            ps.execute();
+            int updated = ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            // 0 ligne : une autre borne a déjà fermé le ticket et libéré sa place
+            if (updated != 1) {
+                logger.error("Ticket " + ticket.getId() + " of " + ticket.getVehicleRegNumber() + " is no longer open");
+                return false;
+            }
+            ticketClosed(ticket);
             return true;
         } catch (Exception ex) {
+            updateTicketTimer.error();
             logger.error("Error updating ticket", ex);
         } finally {
             dataBaseConfig.closeConnection(con);
+            updateTicketTimer.stop(start);
         }
         return false;
     }
 
+    @Override
     public int getNbTicket(String vehicleRegNumber) {
+        long start = getNbTicketTimer.start();
+        if (visitCounter != null) {
+            int nbTicket = visitCounter.get(vehicleRegNumber);
+            getNbTicketTimer.stop(start);
+            return nbTicket;
+        }
         Connection con = null;
         int nbTicket = 0;
         try {
-            con = dataBaseConfig.getConnection();
-            PreparedStatement ps = con.prepareStatement("SELECT COUNT(*) FROM ticket WHERE VEHICLE_REG_NUMBER=?");
+            con = getReadConnection(vehicleRegNumber);
+            PreparedStatement ps = con.prepareStatement(DBConstants.COUNT_TICKETS);
             ps.setString(1, vehicleRegNumber);
+            ps.setString(2, vehicleRegNumber);
             ResultSet rs = ps.executeQuery();
             if (rs.next()) nbTicket = rs.getInt(1);
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
         } catch (Exception ex) {
+            getNbTicketTimer.error();
             logger.error("Error counting tickets", ex);
         } finally {
             dataBaseConfig.closeConnection(con);
+            getNbTicketTimer.stop(start);
         }
         return nbTicket;
     }
-}
\ No newline at end of file
+
+    // lecture tolérant le retard des réplicas, sauf pour un véhicule écrit à l'instant
+    private Connection getReadConnection(String vehicleRegNumber) throws ClassNotFoundException, SQLException {
+        return replicaRouter != null ? replicaRouter.getReadConnection(vehicleRegNumber) : dataBaseConfig.getConnection();
+    }
+
+    // en écriture différée, un ticket accepté dans la file compte comme enregistré
+    private static boolean accepted(CompletableFuture<Boolean> completion) {
+        return !completion.isDone() || (!completion.isCompletedExceptionally() && completion.join());
+    }
+
+    void ticketSaved(Ticket ticket) {
+        if (replicaRouter != null) {
+            replicaRouter.written(ticket.getVehicleRegNumber());
+        }
+        if (ticket.getOutTime() == null) {
+            activeTicketCache.put(ticket);
+        }
+        if (visitCounter != null) {
+            visitCounter.increment(ticket.getVehicleRegNumber());
+        }
+        if (occupancyTracker != null && ticket.getParkingSpot() != null) {
+            occupancyTracker.vehicleEntered(ticket.getParkingSpot().getParkingType());
+        }
+    }
+
+    void ticketClosed(Ticket ticket) {
+        if (replicaRouter != null) {
+            replicaRouter.written(ticket.getVehicleRegNumber());
+        }
+        activeTicketCache.remove(ticket);
+        if (occupancyTracker != null && ticket.getParkingSpot() != null) {
+            occupancyTracker.vehicleExited(ticket.getParkingSpot().getParkingType());
+        }
+    }
+
+    // écriture différée refusée par la base : le cache ne doit pas montrer un ticket qui n'existe pas
+    void ticketSaveFailed(Ticket ticket) {
+        if (ticket.getOutTime() == null) {
+            activeTicketCache.remove(ticket);
+        }
+        if (visitCounter != null) {
+            visitCounter.add(ticket.getVehicleRegNumber(), -1);
+        }
+    }
+
+    // fermeture refusée par la base : le ticket est toujours ouvert, sauf si le véhicule est revenu entre-temps
+    void ticketCloseFailed(Ticket ticket) {
+        Ticket open = new Ticket();
+        open.setId(ticket.getId());
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        open.setParkingSpot(new ParkingSpot(parkingSpot.getFacilityId(), parkingSpot.getId(), parkingSpot.getParkingType(), false));
+        open.setVehicleRegNumber(ticket.getVehicleRegNumber());
+        open.setInTime(ticket.getInTime());
+        activeTicketCache.putIfAbsent(open);
+    }
+
+    private Ticket readTicket(ResultSet rs, String vehicleRegNumber) throws SQLException {
+        Ticket ticket = new Ticket();
+        ParkingSpot parkingSpot = new ParkingSpot(facilityId, rs.getInt(1), ParkingType.valueOf(rs.getString(6)), false);
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setId(rs.getInt(2));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(rs.getDouble(3));
+        ticket.setInTime(rs.getTimestamp(4));
+        ticket.setOutTime(rs.getTimestamp(5));
+        return ticket;
+    }
+}
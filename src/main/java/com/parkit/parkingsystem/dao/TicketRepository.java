@@ -0,0 +1,41 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage of the tickets, as used by the parking service.
+ */
+public interface TicketRepository {
+
+    boolean saveTicket(Ticket ticket);
+
+    /**
+     * @return the open ticket of the vehicle, else its last ticket, or null if it has none
+     */
+    Ticket getTicket(String vehicleRegNumber);
+
+    boolean updateTicket(Ticket ticket);
+
+    int getNbTicket(String vehicleRegNumber);
+
+    /**
+     * @return true when saveTicket and updateTicket only queue the write, the async variants then telling
+     * when it is in the database
+     */
+    default boolean isWriteBehind() {
+        return false;
+    }
+
+    /**
+     * @return a handle completed once the ticket is in the database
+     */
+    default CompletableFuture<Boolean> saveTicketAsync(Ticket ticket) {
+        return CompletableFuture.completedFuture(saveTicket(ticket));
+    }
+
+    default CompletableFuture<Boolean> updateTicketAsync(Ticket ticket) {
+        return CompletableFuture.completedFuture(updateTicket(ticket));
+    }
+}
@@ -0,0 +1,377 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind persistence of tickets. Gates only enqueue the insert or update and get a future back;
+ * a background thread writes the queued tickets as JDBC batches with one commit every batchSize tickets
+ * or flushIntervalMillis, whichever comes first. When the queue is full, callers wait up to
+ * offerTimeoutMillis before the write is rejected. A batch that fails is written again ticket by ticket,
+ * so that only the writes that fail on their own complete with false. The update of a ticket another gate
+ * already closed completes exceptionally with an IllegalStateException: there is nothing to undo for it.
+ */
+public class TicketWriteBehind {
+
+    private static final Logger logger = LogManager.getLogger(TicketWriteBehind.class);
+    private static final String PREFIX = "parkit.ticket.writeBehind.";
+
+    private final DataBaseConfig dataBaseConfig;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long offerTimeoutMillis;
+    // tickets inserted through the queue whose ID is needed by a later update, by vehicle and in time:
+    // the update of a vehicle that left and came back in the same batch finds its own insert
+    private final ConcurrentMap<String, Ticket> savedTickets = new ConcurrentHashMap<>();
+    private final Thread flusher;
+    private volatile boolean running = true;
+    // enqueue tient le verrou en lecture du test de running jusqu'à l'offer : une fois close() passé, plus
+    // rien n'entre dans la file et le flusher, qui s'arrête sur une file vide, n'oublie aucune écriture
+    private final ReadWriteLock lifecycleLock = new ReentrantReadWriteLock();
+
+    private final LongAdder flushedBatches = new LongAdder();
+    private final LongAdder flushedWrites = new LongAdder();
+    private final LongAdder failedWrites = new LongAdder();
+    private final LongAdder rejectedWrites = new LongAdder();
+
+    public TicketWriteBehind(DataBaseConfig dataBaseConfig, int capacity, int batchSize,
+                             long flushIntervalMillis, long offerTimeoutMillis) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.flusher = new Thread(this::flushLoop, "ticket-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public static TicketWriteBehind fromSystemProperties(DataBaseConfig dataBaseConfig) {
+        return new TicketWriteBehind(dataBaseConfig,
+                Integer.getInteger(PREFIX + "capacity", 10_000),
+                Integer.getInteger(PREFIX + "batchSize", 100),
+                Long.getLong(PREFIX + "flushIntervalMillis", 20),
+                Long.getLong(PREFIX + "offerTimeoutMillis", 1_000));
+    }
+
+    public CompletableFuture<Boolean> enqueueSave(Ticket ticket) {
+        savedTickets.put(savedTicketKey(ticket), ticket);
+        CompletableFuture<Boolean> completion = enqueue(new PendingWrite(ticket, true));
+        if (completion.isDone() && !completion.join()) {
+            savedTickets.remove(savedTicketKey(ticket), ticket);
+        }
+        return completion;
+    }
+
+    private static String savedTicketKey(Ticket ticket) {
+        return ticket.getVehicleRegNumber() + '@' + ticket.getInTime().getTime();
+    }
+
+    public CompletableFuture<Boolean> enqueueUpdate(Ticket ticket) {
+        return enqueue(new PendingWrite(ticket, false));
+    }
+
+    private CompletableFuture<Boolean> enqueue(PendingWrite write) {
+        lifecycleLock.readLock().lock();
+        try {
+            if (running && queue.offer(write, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return write.completion;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lifecycleLock.readLock().unlock();
+        }
+        rejectedWrites.increment();
+        logger.error("Ticket write rejected, write-behind queue is full or stopped");
+        write.completion.complete(false);
+        return write.completion;
+    }
+
+    private void flushLoop() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                    PendingWrite next;
+                    while (batch.size() < batchSize
+                            && (next = queue.poll(running ? deadline - System.nanoTime() : 0, TimeUnit.NANOSECONDS)) != null) {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // close() interrupts the wait : what is already queued is still flushed
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes all inserts first and then all updates, in a single transaction: an update queued right after
+     * the insert of the same ticket then finds the generated ID. If the transaction fails, every write is
+     * retried on its own.
+     */
+    void flush(List<PendingWrite> batch) {
+        if (flushBatch(batch)) {
+            flushedBatches.increment();
+            for (PendingWrite write : batch) {
+                written(write);
+            }
+            return;
+        }
+        // inserts d'abord, comme dans le lot : une mise à jour peut dépendre d'un insert du même lot
+        for (PendingWrite write : batch) {
+            if (write.insert) {
+                flushOne(write);
+            }
+        }
+        for (PendingWrite write : batch) {
+            if (!write.insert) {
+                flushOne(write);
+            }
+        }
+    }
+
+    private boolean flushBatch(List<PendingWrite> batch) {
+        Connection con = null;
+        List<Ticket> inserted = new ArrayList<>();
+        List<Ticket> resolved = new ArrayList<>();
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            PreparedStatement insert = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+            for (PendingWrite write : batch) {
+                if (write.insert) {
+                    setInsertParameters(insert, write.ticket);
+                    insert.addBatch();
+                    inserted.add(write.ticket);
+                }
+            }
+            if (!inserted.isEmpty()) {
+                insert.executeBatch();
+                ResultSet keys = insert.getGeneratedKeys();
+                for (int i = 0; i < inserted.size() && keys.next(); i++) {
+                    inserted.get(i).setId(keys.getInt(1));
+                }
+                dataBaseConfig.closeResultSet(keys);
+            }
+            dataBaseConfig.closePreparedStatement(insert);
+
+            PreparedStatement update = con.prepareStatement(DBConstants.UPDATE_TICKET);
+            boolean hasUpdates = false;
+            for (PendingWrite write : batch) {
+                if (!write.insert) {
+                    if (write.ticket.getId() == 0) {
+                        resolveId(write.ticket);
+                        resolved.add(write.ticket);
+                    }
+                    setUpdateParameters(update, write.ticket);
+                    update.addBatch();
+                    hasUpdates = true;
+                }
+            }
+            if (hasUpdates) {
+                for (int updated : update.executeBatch()) {
+                    if (updated == 0) {
+                        // le lot est rejoué ticket par ticket : seule la mise à jour fautive échoue
+                        throw new SQLException("A ticket of the batch is no longer open");
+                    }
+                }
+            }
+            dataBaseConfig.closePreparedStatement(update);
+
+            con.commit();
+            return true;
+        } catch (Exception ex) {
+            logger.warn("Error flushing " + batch.size() + " ticket writes, retrying them one by one", ex);
+            rollback(con);
+            // les ID générés ont été annulés avec la transaction
+            for (Ticket ticket : inserted) {
+                ticket.setId(0);
+            }
+            for (Ticket ticket : resolved) {
+                ticket.setId(0);
+            }
+            return false;
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private void flushOne(PendingWrite write) {
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            Ticket ticket = write.ticket;
+            if (write.insert) {
+                PreparedStatement insert = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
+                setInsertParameters(insert, ticket);
+                insert.executeUpdate();
+                ResultSet keys = insert.getGeneratedKeys();
+                if (keys.next()) {
+                    ticket.setId(keys.getInt(1));
+                }
+                dataBaseConfig.closeResultSet(keys);
+                dataBaseConfig.closePreparedStatement(insert);
+            } else {
+                resolveId(ticket);
+                PreparedStatement update = con.prepareStatement(DBConstants.UPDATE_TICKET);
+                setUpdateParameters(update, ticket);
+                int updated = update.executeUpdate();
+                dataBaseConfig.closePreparedStatement(update);
+                if (updated != 1) {
+                    notOpen(write);
+                    return;
+                }
+            }
+            written(write);
+        } catch (Exception ex) {
+            logger.error("Error writing the ticket of " + write.ticket.getVehicleRegNumber(), ex);
+            failedWrites.increment();
+            if (write.insert) {
+                savedTickets.remove(savedTicketKey(write.ticket), write.ticket);
+            }
+            write.completion.complete(false);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private static void setInsertParameters(PreparedStatement insert, Ticket ticket) throws SQLException {
+        insert.setInt(1, ticket.getParkingSpot().getId());
+        insert.setString(2, ticket.getVehicleRegNumber());
+        insert.setDouble(3, ticket.getPrice());
+        insert.setTimestamp(4, new Timestamp(ticket.getInTime().getTime()));
+        insert.setTimestamp(5, ticket.getOutTime() == null ? null : new Timestamp(ticket.getOutTime().getTime()));
+    }
+
+    private static void setUpdateParameters(PreparedStatement update, Ticket ticket) throws SQLException {
+        update.setDouble(1, ticket.getPrice());
+        update.setTimestamp(2, new Timestamp(ticket.getOutTime().getTime()));
+        update.setInt(3, ticket.getId());
+    }
+
+    private void written(PendingWrite write) {
+        flushedWrites.increment();
+        if (!write.insert) {
+            // le ticket est fermé : son ID ne servira plus
+            savedTickets.remove(savedTicketKey(write.ticket));
+        }
+        write.completion.complete(true);
+    }
+
+    private void notOpen(PendingWrite write) {
+        logger.error("Ticket " + write.ticket.getId() + " of " + write.ticket.getVehicleRegNumber() + " is no longer open");
+        failedWrites.increment();
+        savedTickets.remove(savedTicketKey(write.ticket));
+        write.completion.completeExceptionally(new IllegalStateException("Ticket " + write.ticket.getId() + " is no longer open"));
+    }
+
+    /**
+     * A ticket closed before its insert was flushed still carries ID 0 : the ID is taken from the inserted ticket.
+     */
+    private void resolveId(Ticket ticket) throws SQLException {
+        if (ticket.getId() != 0) {
+            return;
+        }
+        Ticket saved = savedTickets.get(savedTicketKey(ticket));
+        if (saved == null || saved.getId() == 0) {
+            throw new SQLException("No ID known for the ticket of " + ticket.getVehicleRegNumber());
+        }
+        ticket.setId(saved.getId());
+    }
+
+    private void rollback(Connection con) {
+        if (con != null) {
+            try {
+                con.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back ticket writes", e);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting writes and waits for the queued ones to be flushed. The writes still queued when the
+     * flusher does not stop in time complete with false, so that no caller waits for them forever.
+     */
+    public void close() {
+        lifecycleLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            lifecycleLock.writeLock().unlock();
+        }
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PendingWrite write;
+        while ((write = queue.poll()) != null) {
+            rejectedWrites.increment();
+            write.completion.complete(false);
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getFlushedBatches() {
+        return flushedBatches.sum();
+    }
+
+    public long getFlushedWrites() {
+        return flushedWrites.sum();
+    }
+
+    public long getFailedWrites() {
+        return failedWrites.sum();
+    }
+
+    public long getRejectedWrites() {
+        return rejectedWrites.sum();
+    }
+
+    static class PendingWrite {
+        private final Ticket ticket;
+        private final boolean insert;
+        private final CompletableFuture<Boolean> completion = new CompletableFuture<>();
+
+        PendingWrite(Ticket ticket, boolean insert) {
+            this.ticket = ticket;
+            this.insert = insert;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.parkit.parkingsystem.dao;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Number of tickets per vehicle registration number, kept in memory for the loyalty discount.
+ * Plates of up to 10 letters, digits, dashes or spaces are packed into a long (6 bits per character
+ * plus the length), so a plate costs 12 bytes in an open addressing table instead of a String and a boxed Integer.
+ * Other plates fall back to a regular map.
+ */
+public class VisitCounter {
+
+    private static final int MAX_PACKED_LENGTH = 10;
+    private static final long EMPTY = 0L;
+
+    private long[] keys;
+    private int[] counts;
+    private int size;
+    private final ConcurrentMap<String, Integer> unpackedPlates = new ConcurrentHashMap<>();
+
+    public VisitCounter() {
+        this(1024);
+    }
+
+    public VisitCounter(int expectedPlates) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedPlates * 2 - 1)) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+    }
+
+    public int get(String vehicleRegNumber) {
+        long key = pack(vehicleRegNumber);
+        if (key == EMPTY) {
+            return unpackedPlates.getOrDefault(vehicleRegNumber, 0);
+        }
+        synchronized (this) {
+            int slot = find(key);
+            return keys[slot] == key ? counts[slot] : 0;
+        }
+    }
+
+    public void increment(String vehicleRegNumber) {
+        add(vehicleRegNumber, 1);
+    }
+
+    public void add(String vehicleRegNumber, int visits) {
+        long key = pack(vehicleRegNumber);
+        if (key == EMPTY) {
+            unpackedPlates.merge(vehicleRegNumber, visits, Integer::sum);
+            return;
+        }
+        synchronized (this) {
+            int slot = find(key);
+            if (keys[slot] != key) {
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot] += visits;
+            if (size * 4 > keys.length * 3) {
+                resize();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size + unpackedPlates.size();
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @return the packed plate, or 0 if it cannot be packed
+     */
+    static long pack(String vehicleRegNumber) {
+        int length = vehicleRegNumber.length();
+        if (length == 0 || length > MAX_PACKED_LENGTH) {
+            return EMPTY;
+        }
+        long packed = (long) length << 60;
+        for (int i = 0; i < length; i++) {
+            int code = code(vehicleRegNumber.charAt(i));
+            if (code < 0) {
+                return EMPTY;
+            }
+            packed |= (long) code << (6 * i);
+        }
+        return packed;
+    }
+
+    private static int code(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 36;
+        }
+        if (c == '-') {
+            return 62;
+        }
+        return c == ' ' ? 63 : -1;
+    }
+}
@@ -0,0 +1,52 @@
+package com.parkit.parkingsystem.model;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * One plate read by a gate camera. Instances are reused from one line of an event file to the next.
+ */
+public class GateEvent {
+
+    private long timeMillis;
+    private boolean entry;
+    private String vehicleRegNumber;
+    private ParkingType parkingType;
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public void setTimeMillis(long timeMillis) {
+        this.timeMillis = timeMillis;
+    }
+
+    /**
+     * @return true for a vehicle entering, false for a vehicle leaving
+     */
+    public boolean isEntry() {
+        return entry;
+    }
+
+    public void setEntry(boolean entry) {
+        this.entry = entry;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public void setVehicleRegNumber(String vehicleRegNumber) {
+        this.vehicleRegNumber = vehicleRegNumber;
+    }
+
+    /**
+     * @return the type of the vehicle, null when the event does not give it (exits)
+     */
+    public ParkingType getParkingType() {
+        return parkingType;
+    }
+
+    public void setParkingType(ParkingType parkingType) {
+        this.parkingType = parkingType;
+    }
+}
@@ -2,7 +2,11 @@ package com.parkit.parkingsystem.model;
 
 import com.parkit.parkingsystem.constants.ParkingType;
 
+import java.util.Objects;
+
 public class ParkingSpot {
+    // lot auquel appartient la place : les numéros ne sont uniques que dans un même lot
+    private String facilityId;
     private int number;
     private ParkingType parkingType;
     private boolean isAvailable;
@@ -13,6 +17,22 @@ public class ParkingSpot {
         this.isAvailable = isAvailable;
     }
 
+    public ParkingSpot(String facilityId, int number, ParkingType parkingType, boolean isAvailable) {
+        this(number, parkingType, isAvailable);
+        this.facilityId = facilityId;
+    }
+
+    /**
+     * Facility of the spot, null when the process serves a single lot without facility configuration.
+     */
+    public String getFacilityId() {
+        return facilityId;
+    }
+
+    public void setFacilityId(String facilityId) {
+        this.facilityId = facilityId;
+    }
+
     public int getId() {
         return number;
     }
@@ -42,11 +62,11 @@ public class ParkingSpot {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ParkingSpot that = (ParkingSpot) o;
-        return number == that.number;
+        return number == that.number && Objects.equals(facilityId, that.facilityId);
     }
 
     @Override
     public int hashCode() {
-        return number;
+        return 31 * Objects.hashCode(facilityId) + number;
     }
 }
@@ -27,6 +27,13 @@ public class Ticket {
         this.parkingSpot = parkingSpot;
     }
 
+    /**
+     * Facility of the ticket, the one of its spot.
+     */
+    public String getFacilityId() {
+        return parkingSpot == null ? null : parkingSpot.getFacilityId();
+    }
+
     public String getVehicleRegNumber() {
         return vehicleRegNumber;
     }
@@ -0,0 +1,209 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.GateEvent;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.util.GateEventParser;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replays the event file of the gate cameras without a console: the events are read as a stream, decided in
+ * memory with the same rules as the gates (lowest free spot, loyalty discount after the first visit, fare of the
+ * current tariff at the time of the event) and written by micro-batches of batchSize events, each in one
+ * transaction through {@link ParkingTransactionDAO#applyBatch}. Memory does not depend on the size of the file.
+ *
+ * <p>The spot allocator, the open tickets and the visit counts must be loaded, and no gate must be running on
+ * the same database during the replay. When a batch fails, its events are counted as failed and the allocator
+ * and open tickets are reloaded from the database before going on.
+ */
+public class BatchIngestionService {
+
+    private static final Logger logger = LogManager.getLogger(BatchIngestionService.class);
+    private static final int MAX_LOGGED_LINES = 10;
+
+    private final ParkingSpotDAO parkingSpotDAO;
+    private final TicketDAO ticketDAO;
+    private final ParkingTransactionDAO parkingTransactionDAO;
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private final GateEventParser parser;
+    private final int batchSize;
+
+    // lot en cours, écrit par flush()
+    private final List<Ticket> entered = new ArrayList<>();
+    private final List<Ticket> exited = new ArrayList<>();
+    private final Map<Integer, ParkingSpot> parkingSpots = new LinkedHashMap<>();
+    private final Map<String, Ticket> openedInBatch = new HashMap<>();
+    private final Set<String> closedInBatch = new HashSet<>();
+    private final Map<String, Integer> visitsInBatch = new HashMap<>();
+
+    /**
+     * Batches of -Dparkit.ingest.batchSize events (1000 by default), times without zone read in the system zone.
+     */
+    public BatchIngestionService(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+        this(parkingSpotDAO, ticketDAO, new ParkingTransactionDAO(parkingSpotDAO, ticketDAO),
+                Integer.getInteger("parkit.ingest.batchSize", 1000), ZoneId.systemDefault());
+    }
+
+    public BatchIngestionService(ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO,
+                                 ParkingTransactionDAO parkingTransactionDAO, int batchSize, ZoneId zone) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.parkingSpotDAO = parkingSpotDAO;
+        this.ticketDAO = ticketDAO;
+        this.parkingTransactionDAO = parkingTransactionDAO;
+        this.batchSize = batchSize;
+        this.parser = new GateEventParser(zone);
+    }
+
+    public IngestionReport ingest(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return ingest(reader);
+        }
+    }
+
+    public IngestionReport ingest(Reader input) throws IOException {
+        if (parkingSpotDAO.allocator == null) {
+            throw new IllegalStateException("The parking spots must be loaded before ingesting events");
+        }
+        BufferedReader reader = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input, 1 << 16);
+        IngestionReport report = new IngestionReport();
+        GateEvent event = new GateEvent();
+        long start = System.nanoTime();
+        int eventsInBatch = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            report.lines++;
+            try {
+                if (!parser.parse(line, event)) {
+                    continue;
+                }
+            } catch (IllegalArgumentException e) {
+                invalidLine(report, e.getMessage());
+                continue;
+            }
+            report.events++;
+            if (event.isEntry()) {
+                enter(event, report);
+            } else {
+                exit(event, report);
+            }
+            if (++eventsInBatch == batchSize) {
+                flush(report);
+                eventsInBatch = 0;
+            }
+        }
+        flush(report);
+        report.durationNanos = System.nanoTime() - start;
+        logger.info("Ingested " + report);
+        return report;
+    }
+
+    private void invalidLine(IngestionReport report, String message) {
+        report.invalidLines++;
+        if (report.invalidLines <= MAX_LOGGED_LINES) {
+            logger.warn("Line " + report.lines + " ignored: " + message);
+        }
+    }
+
+    private void enter(GateEvent event, IngestionReport report) {
+        String vehicleRegNumber = event.getVehicleRegNumber();
+        if (openTicket(vehicleRegNumber) != null) {
+            report.duplicateEntries++;
+            return;
+        }
+        ParkingType parkingType = event.getParkingType();
+        int parkingNumber = parkingSpotDAO.allocator.claim(parkingType);
+        if (parkingNumber <= 0) {
+            report.lotFull++;
+            return;
+        }
+        ParkingSpot parkingSpot = new ParkingSpot(parkingSpotDAO.facilityId, parkingNumber, parkingType, false);
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(0);
+        ticket.setInTime(new Date(event.getTimeMillis()));
+        ticket.setOutTime(null);
+        entered.add(ticket);
+        openedInBatch.put(vehicleRegNumber, ticket);
+        visitsInBatch.merge(vehicleRegNumber, 1, Integer::sum);
+        parkingSpots.put(parkingNumber, parkingSpot);
+    }
+
+    private void exit(GateEvent event, IngestionReport report) {
+        String vehicleRegNumber = event.getVehicleRegNumber();
+        Ticket ticket = openTicket(vehicleRegNumber);
+        if (ticket == null || event.getTimeMillis() < ticket.getInTime().getTime()) {
+            report.unmatchedExits++;
+            return;
+        }
+        if (openedInBatch.remove(vehicleRegNumber) == null) {
+            closedInBatch.add(vehicleRegNumber);
+        }
+        ticket.setOutTime(new Date(event.getTimeMillis()));
+        // même règle que ParkingService : remise à partir de la deuxième visite, ticket en cours compris
+        fareCalculatorService.calculateFare(ticket, visits(vehicleRegNumber) > 1);
+        ParkingSpot parkingSpot = ticket.getParkingSpot();
+        parkingSpot.setAvailable(true);
+        parkingSpotDAO.allocator.setAvailable(parkingSpot.getId(), parkingSpot.getParkingType(), true);
+        parkingSpots.put(parkingSpot.getId(), parkingSpot);
+        exited.add(ticket);
+    }
+
+    private Ticket openTicket(String vehicleRegNumber) {
+        Ticket ticket = openedInBatch.get(vehicleRegNumber);
+        if (ticket != null || closedInBatch.contains(vehicleRegNumber)) {
+            return ticket;
+        }
+        return ticketDAO.activeTicketCache.get(vehicleRegNumber);
+    }
+
+    private int visits(String vehicleRegNumber) {
+        int written = ticketDAO.visitCounter != null
+                ? ticketDAO.visitCounter.get(vehicleRegNumber) : ticketDAO.getNbTicket(vehicleRegNumber);
+        return written + visitsInBatch.getOrDefault(vehicleRegNumber, 0);
+    }
+
+    private void flush(IngestionReport report) {
+        if (!entered.isEmpty() || !exited.isEmpty()) {
+            if (parkingTransactionDAO.applyBatch(entered, exited, parkingSpots.values())) {
+                report.entries += entered.size();
+                report.exits += exited.size();
+                report.batches++;
+            } else {
+                report.failedEvents += entered.size() + exited.size();
+                // l'allocateur et les tickets ouverts ont été modifiés avant l'écriture : on les relit en base
+                parkingSpotDAO.loadAllocator();
+                ticketDAO.loadActiveTickets();
+            }
+        }
+        entered.clear();
+        exited.clear();
+        parkingSpots.clear();
+        openedInBatch.clear();
+        closedInBatch.clear();
+        visitsInBatch.clear();
+    }
+}
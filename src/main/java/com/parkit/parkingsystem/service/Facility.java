@@ -0,0 +1,127 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.ReplicaRouter;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.dao.GateJournal;
+import com.parkit.parkingsystem.dao.OccupancyTracker;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
+import com.parkit.parkingsystem.dao.TicketArchiver;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketWriteBehind;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+
+/**
+ * One parking lot served by the process, on its own database shard (see
+ * {@link com.parkit.parkingsystem.config.ShardRouter}). The spot allocator, open ticket cache, visit counts,
+ * occupancy, write-behind queue and journal all belong to the facility, so the gates of two lots share no
+ * lock and no connection.
+ */
+public class Facility {
+
+    private static final Logger logger = LogManager.getLogger(Facility.class);
+
+    private final String id;
+    private final ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+    private final TicketDAO ticketDAO = new TicketDAO();
+    private GateJournal gateJournal;
+    private TicketArchiver ticketArchiver;
+
+    public Facility(String id, DataBaseConfig dataBaseConfig) {
+        this.id = id;
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.facilityId = id;
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.facilityId = id;
+        OccupancyTracker occupancyTracker = new OccupancyTracker();
+        parkingSpotDAO.occupancyTracker = occupancyTracker;
+        ticketDAO.occupancyTracker = occupancyTracker;
+    }
+
+    /**
+     * Migrates the schema of the shard, reconciles the operations the journal left incomplete, loads the
+     * in-memory state of the DAOs and wires the optional write modes.
+     */
+    public void open() {
+        logger.info("Opening facility " + id);
+        new SchemaMigrator(parkingSpotDAO.dataBaseConfig).migrate();
+        if (System.getProperty("parkit.journal.dir") != null) {
+            openGateJournal();
+        }
+        parkingSpotDAO.loadAllocator();
+        ticketDAO.loadActiveTickets();
+        ticketDAO.loadVisitCounts();
+        if (Boolean.getBoolean("parkit.ticket.writeBehind")) {
+            ticketDAO.writeBehind = TicketWriteBehind.fromSystemProperties(ticketDAO.dataBaseConfig);
+        }
+        ticketDAO.replicaRouter = ReplicaRouter.fromSystemProperties(id, ticketDAO.dataBaseConfig);
+        if (Boolean.getBoolean("parkit.ticket.archive")) {
+            ticketArchiver = TicketArchiver.fromSystemProperties(ticketDAO.dataBaseConfig);
+        }
+    }
+
+    // le journal est rejoué avant le chargement de l'allocateur et des tickets ouverts, qui lisent alors la base rapprochée
+    private void openGateJournal() {
+        try {
+            gateJournal = GateJournal.fromSystemProperties(id);
+        } catch (IOException e) {
+            logger.error("Unable to open the gate journal of " + id + ", gate operations are not journaled", e);
+            return;
+        }
+        if (gateJournal.recover(parkingSpotDAO, ticketDAO) < 0) {
+            logger.error("Unable to reconcile the incomplete gate operations of " + id + ", they will be retried at the next start");
+        }
+    }
+
+    /**
+     * Service of one gate of this facility; all the gates share the DAOs of the facility.
+     */
+    public ParkingService newParkingService(InputReaderUtil inputReaderUtil) {
+        ParkingService parkingService;
+        // l'écriture différée reste prioritaire : les tickets n'y sont pas écrits dans la transaction de la borne
+        if (ticketDAO.writeBehind == null && Boolean.getBoolean("parkit.gate.transactional")) {
+            parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO,
+                    new ParkingTransactionDAO(parkingSpotDAO, ticketDAO));
+        } else {
+            parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        }
+        parkingService.setGateJournal(gateJournal);
+        return parkingService;
+    }
+
+    /**
+     * Flushes the write-behind queue, closes the journal and stops the replica health check and the archiver;
+     * the connection pools are shut down separately.
+     */
+    public void close() {
+        if (ticketArchiver != null) {
+            ticketArchiver.close();
+        }
+        if (ticketDAO.writeBehind != null) {
+            ticketDAO.writeBehind.close();
+        }
+        if (ticketDAO.replicaRouter != null) {
+            ticketDAO.replicaRouter.close();
+        }
+        if (gateJournal != null) {
+            gateJournal.close();
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public ParkingSpotDAO getParkingSpotDAO() {
+        return parkingSpotDAO;
+    }
+
+    public TicketDAO getTicketDAO() {
+        return ticketDAO;
+    }
+}
@@ -7,6 +7,13 @@ import com.parkit.parkingsystem.model.Ticket;
 public class FareCalculatorService {
 
     public void calculateFare(Ticket ticket, boolean discount) {
+        calculateFare(ticket, discount, TariffRegistry.current());
+    }
+
+    /**
+     * Same with the given tariff, null for the Fare constants.
+     */
+    public void calculateFare(Ticket ticket, boolean discount, Tariff tariff) {
         if (ticket.getOutTime() == null || ticket.getOutTime().before(ticket.getInTime())) {
             throw new IllegalArgumentException(
                     "Out time provided is incorrect: " + ticket.getOutTime()
@@ -16,6 +23,12 @@ public class FareCalculatorService {
         long inMillis = ticket.getInTime().getTime();
         long outMillis = ticket.getOutTime().getTime();
 
+        if (tariff != null) {
+            ParkingType parkingType = ticket.getParkingSpot() == null ? null : ticket.getParkingSpot().getParkingType();
+            ticket.setPrice(FixedPointFareEngine.toPrice(tariff.priceCents(parkingType, inMillis, outMillis, discount)));
+            return;
+        }
+
         double duration = (outMillis - inMillis) / (1000.0 * 60 * 60);
 
         // Moins de 30 minutes : gratuit
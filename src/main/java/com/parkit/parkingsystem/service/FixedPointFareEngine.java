@@ -0,0 +1,79 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Same rules as {@link FareCalculatorService} (30 minutes free, hourly rate per type, 5% loyalty discount)
+ * computed on epoch millis and integer cents: no Date, no double and no allocation per stay.
+ *
+ * <p>Rounding policy: the exact price is rounded half up to the cent once, after the discount,
+ * so the result is within half a cent of the price computed in double by FareCalculatorService.
+ */
+public class FixedPointFareEngine {
+
+    private static final long FREE_MILLIS = 30 * 60 * 1000L;
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000L;
+    private static final long FULL_PRICE_PERCENT = 100;
+    private static final long DISCOUNT_PRICE_PERCENT = 95;
+    // millis x cents/heure x pourcentage : ramené au cent en une seule division
+    private static final long DIVISOR = MILLIS_PER_HOUR * FULL_PRICE_PERCENT;
+
+    // indexé par ParkingType.ordinal()
+    private static final long[] RATE_CENTS_PER_HOUR = new long[ParkingType.values().length];
+
+    static {
+        RATE_CENTS_PER_HOUR[ParkingType.CAR.ordinal()] = Math.round(Fare.CAR_RATE_PER_HOUR * 100);
+        RATE_CENTS_PER_HOUR[ParkingType.BIKE.ordinal()] = Math.round(Fare.BIKE_RATE_PER_HOUR * 100);
+    }
+
+    /**
+     * @return the price of the stay in cents
+     */
+    public long priceCents(ParkingType parkingType, long inMillis, long outMillis, boolean discount) {
+        if (parkingType == null) {
+            throw new IllegalArgumentException("Unknown Parking Type");
+        }
+        return priceCents(parkingType.ordinal(), inMillis, outMillis, discount);
+    }
+
+    private static long priceCents(int parkingType, long inMillis, long outMillis, boolean discount) {
+        long duration = outMillis - inMillis;
+        if (duration < 0) {
+            throw new IllegalArgumentException("Out time provided is incorrect: " + outMillis);
+        }
+        if (duration <= FREE_MILLIS) {
+            return 0;
+        }
+        long percent = discount ? DISCOUNT_PRICE_PERCENT : FULL_PRICE_PERCENT;
+        return (duration * RATE_CENTS_PER_HOUR[parkingType] * percent + DIVISOR / 2) / DIVISOR;
+    }
+
+    /**
+     * Prices the stays from index from (inclusive) to to (exclusive): stay i is
+     * (parkingTypes[i], inMillis[i], outMillis[i], discounts[i]) and its price in cents is written to pricesCents[i].
+     *
+     * @return the total of the priced stays, in cents
+     */
+    public long priceCents(ParkingType[] parkingTypes, long[] inMillis, long[] outMillis, boolean[] discounts,
+                           long[] pricesCents, int from, int to) {
+        long total = 0;
+        for (int i = from; i < to; i++) {
+            ParkingType parkingType = parkingTypes[i];
+            if (parkingType == null) {
+                throw new IllegalArgumentException("Unknown Parking Type at index " + i);
+            }
+            long price = priceCents(parkingType.ordinal(), inMillis[i], outMillis[i], discounts[i]);
+            pricesCents[i] = price;
+            total += price;
+        }
+        return total;
+    }
+
+    /**
+     * @return the price in the unit of {@link Fare}, as stored in Ticket.price
+     */
+    public static double toPrice(long cents) {
+        return cents / 100.0;
+    }
+}
@@ -0,0 +1,131 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.PoolSettings;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executors for the gate transactions. On a JDK with virtual threads (21+) each transaction can run on its own
+ * virtual thread; since all of them end up blocking on JDBC, a limiter keeps at most as many transactions
+ * running as the connection pool has connections, so the others wait cheaply instead of timing out in borrow().
+ */
+public class GateExecutors {
+
+    private static final Logger logger = LogManager.getLogger(GateExecutors.class);
+
+    // Le projet compile en Java 8 : la méthode JDK 21 est recherchée par réflexion
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findVirtualThreadFactory();
+
+    private GateExecutors() {
+    }
+
+    private static Method findVirtualThreadFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * -Dparkit.gate.threads=virtual runs each transaction on a virtual thread, limited to
+     * -Dparkit.gate.maxConcurrency running at once (the pool size by default). Otherwise, or when the JDK
+     * has no virtual threads, a fixed pool of -Dparkit.gate.workers platform threads (16 by default) is used.
+     */
+    public static ExecutorService fromSystemProperties() {
+        if ("virtual".equalsIgnoreCase(System.getProperty("parkit.gate.threads"))) {
+            int maxConcurrency = Integer.getInteger("parkit.gate.maxConcurrency",
+                    PoolSettings.fromSystemProperties().getMaxSize());
+            ExecutorService virtualThreads = newVirtualThreadExecutor();
+            if (virtualThreads != null) {
+                logger.info("Gate transactions run on virtual threads, " + maxConcurrency + " at once");
+                return limit(virtualThreads, maxConcurrency);
+            }
+            logger.warn("Virtual threads need JDK 21 or later, falling back to platform threads");
+        }
+        return Executors.newFixedThreadPool(Integer.getInteger("parkit.gate.workers", 16));
+    }
+
+    /**
+     * @return a new thread-per-task executor on virtual threads, or null if the JDK has none
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.error("Unable to create the virtual thread executor", e);
+            return null;
+        }
+    }
+
+    /**
+     * Wraps the executor so that at most maxConcurrency tasks run at the same time. Tasks over the limit
+     * are started but wait on a semaphore, which only parks the thread when it is virtual.
+     */
+    public static ExecutorService limit(ExecutorService delegate, int maxConcurrency) {
+        return new LimitedExecutorService(delegate, maxConcurrency);
+    }
+
+    private static class LimitedExecutorService extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        private LimitedExecutorService(ExecutorService delegate, int maxConcurrency) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(maxConcurrency, true);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(() -> {
+                permits.acquireUninterruptibly();
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
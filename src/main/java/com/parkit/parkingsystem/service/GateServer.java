@@ -0,0 +1,317 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.ShardRouter;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * TCP server for the gate terminals. One selector thread multiplexes every gate connection and the commands,
+ * which hit the database, run on a worker pool against the {@link ParkingService} of the gate's facility.
+ *
+ * <p>Line protocol, one command per line, one response line per command in the order of the commands:
+ * <pre>
+ * FACILITY id            OK id            | ERROR unknown facility
+ * ENTER CAR|BIKE plate   OK spot ticketId | FULL
+ * EXIT plate             OK price         | NOT_FOUND
+ * QUOTE plate            OK price         | NOT_FOUND
+ * anything else          ERROR message
+ * </pre>
+ * A gate sends FACILITY once after connecting; it can be left out when the server has a single facility.
+ */
+public class GateServer implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(GateServer.class);
+    private static final int MAX_LINE_LENGTH = 256;
+
+    private final Map<String, ParkingService> parkingServices;
+    private final ExecutorService workers;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    // changements d'intérêt demandés par les workers, appliqués par le thread du selector
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private final Thread selectorThread;
+    private volatile boolean running = true;
+
+    public GateServer(ParkingService parkingService, InetSocketAddress address, ExecutorService workers) throws IOException {
+        this(Collections.singletonMap(ShardRouter.DEFAULT_FACILITY, parkingService), address, workers);
+    }
+
+    /**
+     * @param parkingServices service of each facility, by facility ID
+     */
+    public GateServer(Map<String, ParkingService> parkingServices, InetSocketAddress address, ExecutorService workers)
+            throws IOException {
+        this.parkingServices = Collections.unmodifiableMap(new LinkedHashMap<>(parkingServices));
+        this.workers = workers;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        this.selectorThread = new Thread(this::selectLoop, "gate-server");
+    }
+
+    /**
+     * Listens on -Dparkit.gate.port (4000 by default), workers as configured in {@link GateExecutors#fromSystemProperties()}.
+     */
+    public static GateServer fromSystemProperties(Map<String, ParkingService> parkingServices) throws IOException {
+        return new GateServer(parkingServices,
+                new InetSocketAddress(Integer.getInteger("parkit.gate.port", 4000)),
+                GateExecutors.fromSystemProperties());
+    }
+
+    public void start() {
+        selectorThread.start();
+        logger.info("Gate server listening on port " + getPort());
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    private void selectLoop() {
+        while (running) {
+            try {
+                selector.select();
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        }
+                    } catch (IOException e) {
+                        logger.debug("Gate connection closed", e);
+                        closeConnection(key);
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Error in gate server selector", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        GateConnection connection = new GateConnection(channel);
+        if (parkingServices.size() == 1) {
+            connection.parkingService = parkingServices.values().iterator().next();
+        }
+        key.attach(connection);
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        GateConnection connection = (GateConnection) key.attachment();
+        ByteBuffer input = connection.input;
+        if (connection.channel.read(input) < 0) {
+            closeConnection(key);
+            return;
+        }
+        int start = 0;
+        for (int i = 0; i < input.position(); i++) {
+            if (input.get(i) == '\n') {
+                if (connection.discarding) {
+                    // fin de la ligne trop longue : rien de ce qu'elle contient n'est exécuté
+                    connection.discarding = false;
+                } else {
+                    String line = new String(input.array(), start, i - start, StandardCharsets.UTF_8).trim();
+                    if (!line.isEmpty()) {
+                        dispatch(key, connection, line, () -> execute(connection, line));
+                    }
+                }
+                start = i + 1;
+            }
+        }
+        input.flip();
+        input.position(start);
+        input.compact();
+        if (!input.hasRemaining()) {
+            // la suite de la ligne est ignorée jusqu'au prochain retour à la ligne
+            input.clear();
+            if (!connection.discarding) {
+                connection.discarding = true;
+                dispatch(key, connection, "line too long", () -> "ERROR line too long");
+            }
+        }
+    }
+
+    // les commandes d'une même borne s'exécutent l'une après l'autre pour que les réponses restent dans l'ordre
+    private void dispatch(SelectionKey key, GateConnection connection, String line, Supplier<String> command) {
+        connection.lastCommand = connection.lastCommand
+                .thenRunAsync(() -> respond(key, connection, command.get()), workers)
+                .exceptionally(e -> {
+                    logger.error("Unable to run gate command " + line, e);
+                    return null;
+                });
+    }
+
+    private String execute(GateConnection connection, String line) {
+        try {
+            String[] command = line.split("\\s+", 2);
+            String name = command[0].toUpperCase(Locale.ROOT);
+            if ("FACILITY".equals(name)) {
+                if (command.length < 2) {
+                    return "ERROR usage: FACILITY id";
+                }
+                ParkingService parkingService = parkingServices.get(command[1]);
+                if (parkingService == null) {
+                    return "ERROR unknown facility " + command[1];
+                }
+                connection.parkingService = parkingService;
+                return "OK " + command[1];
+            }
+            ParkingService parkingService = connection.parkingService;
+            if (parkingService == null) {
+                return "ERROR no facility selected, send FACILITY id first";
+            }
+            switch (name) {
+                case "ENTER": {
+                    String[] arguments = command.length > 1 ? command[1].split("\\s+", 2) : new String[0];
+                    if (arguments.length < 2) {
+                        return "ERROR usage: ENTER CAR|BIKE plate";
+                    }
+                    Ticket ticket = parkingService.enterVehicle(
+                            ParkingType.valueOf(arguments[0].toUpperCase(Locale.ROOT)), arguments[1]);
+                    return ticket == null ? "FULL" : "OK " + ticket.getParkingSpot().getId() + " " + ticket.getId();
+                }
+                case "EXIT":
+                case "QUOTE": {
+                    if (command.length < 2) {
+                        return "ERROR usage: " + command[0].toUpperCase(Locale.ROOT) + " plate";
+                    }
+                    Ticket ticket = "EXIT".equalsIgnoreCase(command[0])
+                            ? parkingService.exitVehicle(command[1])
+                            : parkingService.quote(command[1]);
+                    return ticket == null ? "NOT_FOUND" : "OK " + String.format(Locale.ROOT, "%.2f", ticket.getPrice());
+                }
+                default:
+                    return "ERROR unknown command " + command[0];
+            }
+        } catch (IllegalArgumentException e) {
+            return "ERROR " + e.getMessage();
+        } catch (Exception e) {
+            logger.error("Unable to run gate command " + line, e);
+            return "ERROR internal error";
+        }
+    }
+
+    private void respond(SelectionKey key, GateConnection connection, String response) {
+        connection.output.add(ByteBuffer.wrap((response + "\n").getBytes(StandardCharsets.UTF_8)));
+        selectorTasks.add(() -> {
+            if (key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        });
+        selector.wakeup();
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        GateConnection connection = (GateConnection) key.attachment();
+        ByteBuffer buffer;
+        while ((buffer = connection.output.peek()) != null) {
+            connection.channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                return;
+            }
+            connection.output.poll();
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    private void closeConnection(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            logger.error("Error while closing gate connection", e);
+        }
+    }
+
+    /**
+     * Stops accepting commands, lets the running ones finish and closes every gate connection.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SelectionKey key : selector.keys()) {
+            closeConnection(key);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.error("Error while closing gate server selector", e);
+        }
+    }
+
+    private static class GateConnection {
+        private final SocketChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(MAX_LINE_LENGTH);
+        private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+        // n'est lu et modifié que par le thread du selector
+        private CompletableFuture<Void> lastCommand = CompletableFuture.completedFuture(null);
+        // vrai tant que le reste d'une ligne trop longue n'a pas été lu
+        private boolean discarding;
+        // lot de la borne ; les commandes d'une borne s'enchaînent, la suivante voit donc la valeur écrite par FACILITY
+        private ParkingService parkingService;
+
+        private GateConnection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.parkit.parkingsystem.service;
+
+import java.util.Locale;
+
+/**
+ * Outcome of replaying an event file with {@link BatchIngestionService}.
+ */
+public class IngestionReport {
+
+    long lines;
+    long events;
+    long entries;
+    long exits;
+    long lotFull;
+    long duplicateEntries;
+    long unmatchedExits;
+    long invalidLines;
+    long failedEvents;
+    long batches;
+    long durationNanos;
+
+    public long getLines() {
+        return lines;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * Entries written, each with a new ticket.
+     */
+    public long getEntries() {
+        return entries;
+    }
+
+    /**
+     * Exits written, each closing a ticket with its price.
+     */
+    public long getExits() {
+        return exits;
+    }
+
+    public long getLotFull() {
+        return lotFull;
+    }
+
+    /**
+     * Entries of a vehicle that already had an open ticket, e.g. a plate read twice by the camera; ignored.
+     */
+    public long getDuplicateEntries() {
+        return duplicateEntries;
+    }
+
+    /**
+     * Exits of a vehicle without an open ticket, or leaving before it entered; ignored.
+     */
+    public long getUnmatchedExits() {
+        return unmatchedExits;
+    }
+
+    public long getInvalidLines() {
+        return invalidLines;
+    }
+
+    /**
+     * Entries and exits of the batches whose transaction failed, which were not written.
+     */
+    public long getFailedEvents() {
+        return failedEvents;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    public double getEventsPerSecond() {
+        return durationNanos > 0 ? events * 1e9 / durationNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d events in %.1f s (%.0f events/s, %d batches): %d entries, %d exits, "
+                        + "%d lot full, %d duplicate entries, %d unmatched exits, %d invalid lines, %d failed",
+                events, durationNanos / 1e9, getEventsPerSecond(), batches, entries, exits, lotFull, duplicateEntries,
+                unmatchedExits, invalidLines, failedEvents);
+    }
+}
@@ -1,26 +1,161 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.config.ShardRouter;
+import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 public class InteractiveShell {
 
-    private static final Logger logger = LogManager.getLogger("InteractiveShell");
+    private static final Logger logger = LogManager.getLogger(InteractiveShell.class);
 
     public static void loadInterface() {
         logger.info("App initialized!!!");
         System.out.println("Welcome to Parking System!");
 
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
-        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
-        TicketDAO ticketDAO = new TicketDAO();
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        Facility facility = openSelectedFacility();
+        ParkingService parkingService = facility.newParkingService(inputReaderUtil);
 
         // Boucle principale extraite dans une méthode dédiée
         runMainLoop(inputReaderUtil, parkingService);
+        shutdown(facility);
+    }
+
+    /**
+     * Opens the facility the console and the batch commands work on, see {@link ShardRouter#getSelectedFacilityId()}.
+     */
+    private static Facility openSelectedFacility() {
+        ShardRouter shardRouter = ShardRouter.fromSystemProperties();
+        String facilityId = shardRouter.getSelectedFacilityId();
+        Facility facility = new Facility(facilityId, shardRouter.route(facilityId));
+        loadTariff();
+        facility.open();
+        return facility;
+    }
+
+    private static void loadTariff() {
+        try {
+            TariffRegistry.fromSystemProperties();
+        } catch (IOException e) {
+            logger.error("Unable to load the tariff file, using the default rates", e);
+        }
+    }
+
+    static void shutdown(Facility... facilities) {
+        for (Facility facility : facilities) {
+            facility.close();
+        }
+        DataBaseConfig.shutdownPools();
+    }
+
+    /**
+     * Settles the tickets closed from the first day to the last day included and writes the report file.
+     *
+     * @return false if the tickets could not be read
+     */
+    public static boolean loadSettlement(LocalDate firstDay, LocalDate lastDay, Path reportFile) throws IOException {
+        ShardRouter shardRouter = ShardRouter.fromSystemProperties();
+        String facilityId = shardRouter.getSelectedFacilityId();
+        logger.info("Settlement of " + facilityId + " from " + firstDay + " to " + lastDay);
+        DataBaseConfig dataBaseConfig = shardRouter.route(facilityId);
+        try {
+            new SchemaMigrator(dataBaseConfig).migrate();
+            ZoneId zone = ZoneId.systemDefault();
+            SettlementReport report = new SettlementService(dataBaseConfig).settle(
+                    Date.from(firstDay.atStartOfDay(zone).toInstant()),
+                    Date.from(lastDay.plusDays(1).atStartOfDay(zone).toInstant()));
+            if (report == null) {
+                return false;
+            }
+            report.writeTo(reportFile);
+            System.out.println("Settlement report written to " + reportFile);
+            return true;
+        } finally {
+            DataBaseConfig.shutdownPools();
+        }
+    }
+
+    /**
+     * Replays an event file of the gate cameras through {@link BatchIngestionService}.
+     *
+     * @return false if events were invalid or could not be written
+     */
+    public static boolean loadIngestion(Path eventFile) throws IOException {
+        logger.info("Ingesting gate events from " + eventFile);
+        Facility facility = openSelectedFacility();
+        try {
+            IngestionReport report = new BatchIngestionService(facility.getParkingSpotDAO(), facility.getTicketDAO())
+                    .ingest(eventFile);
+            System.out.println(report);
+            return report.getInvalidLines() == 0 && report.getFailedEvents() == 0;
+        } finally {
+            shutdown(facility);
+        }
+    }
+
+    /**
+     * Runs the synthetic traffic of {@link LoadProfile#fromSystemProperties()} against the configured database
+     * and prints the report.
+     */
+    public static void loadTrafficGenerator() throws IOException, InterruptedException {
+        LoadProfile profile = LoadProfile.fromSystemProperties();
+        logger.info("Load test: " + profile);
+        ShardRouter shardRouter = ShardRouter.fromSystemProperties();
+        String facilityId = shardRouter.getSelectedFacilityId();
+        Facility facility = new Facility(facilityId, shardRouter.route(facilityId));
+        try {
+            // les places ajoutées doivent exister avant le chargement de l'allocateur
+            ParkingSpotDAO parkingSpotDAO = facility.getParkingSpotDAO();
+            new SchemaMigrator(parkingSpotDAO.dataBaseConfig).migrate();
+            parkingSpotDAO.ensureParkingSpots(ParkingType.CAR, profile.getCarSpots());
+            parkingSpotDAO.ensureParkingSpots(ParkingType.BIKE, profile.getBikeSpots());
+            loadTariff();
+            facility.open();
+            LoadReport report = new LoadGenerator(profile, facility::newParkingService, facility.getTicketDAO()).run();
+            report.writeTo(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        } finally {
+            shutdown(facility);
+        }
+    }
+
+    /**
+     * Serves the gate terminals of every facility over TCP instead of the console, until the JVM is stopped.
+     */
+    public static void loadGateServer() throws IOException {
+        logger.info("Gate server initialized");
+        ShardRouter shardRouter = ShardRouter.fromSystemProperties();
+        loadTariff();
+        List<Facility> facilities = new ArrayList<>();
+        Map<String, ParkingService> parkingServices = new LinkedHashMap<>();
+        for (String facilityId : shardRouter.getFacilityIds()) {
+            Facility facility = new Facility(facilityId, shardRouter.route(facilityId));
+            facility.open();
+            facilities.add(facility);
+            parkingServices.put(facilityId, facility.newParkingService(null));
+        }
+        GateServer gateServer = GateServer.fromSystemProperties(parkingServices);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            gateServer.close();
+            shutdown(facilities.toArray(new Facility[0]));
+        }, "gate-server-shutdown"));
+        gateServer.start();
     }
 
     /**
@@ -0,0 +1,196 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.PoolStats;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import com.parkit.parkingsystem.util.OperationMetrics;
+import com.parkit.parkingsystem.util.OperationTimer;
+import com.parkit.parkingsystem.util.ScriptedInputReader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Synthetic traffic for load tests: each gate is a thread with its own {@link ParkingService}, driven through the
+ * console flows by a {@link ScriptedInputReader}. Vehicles arrive on the schedule of the {@link LoadProfile}, park
+ * for a dwell time, then leave by the same gate; a share of arrivals reuses a plate that already left, which takes
+ * the loyalty path. The run ends when every vehicle has arrived and every parked vehicle has left.
+ *
+ * <p>The console messages of ParkingService are discarded during the run.
+ */
+public class LoadGenerator {
+
+    private static final Logger logger = LogManager.getLogger(LoadGenerator.class);
+
+    private static final int CAR = 1;
+    private static final int BIKE = 2;
+
+    private final LoadProfile profile;
+    private final Function<InputReaderUtil, ParkingService> gateFactory;
+    private final TicketDAO ticketDAO;
+
+    /**
+     * @param gateFactory creates the ParkingService of one gate around its input reader, on DAOs shared by all gates
+     * @param ticketDAO   the DAO of the gates, whose open tickets tell whether an entry or exit went through
+     */
+    public LoadGenerator(LoadProfile profile, Function<InputReaderUtil, ParkingService> gateFactory, TicketDAO ticketDAO) {
+        this.profile = profile;
+        this.gateFactory = gateFactory;
+        this.ticketDAO = ticketDAO;
+    }
+
+    public LoadReport run() throws InterruptedException {
+        LoadReport.Gate[] gates = new LoadReport.Gate[profile.getGates()];
+        Thread[] threads = new Thread[gates.length];
+        // les plaques d'un run ne doivent pas retrouver les tickets des runs précédents
+        String runTag = Integer.toString(36 * 36 + new Random().nextInt(36 * 36), 36).substring(1).toUpperCase(Locale.ROOT);
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        try {
+            // les statistiques des opérations ne couvrent que le run
+            for (OperationTimer timer : OperationMetrics.timers()) {
+                timer.refresh();
+            }
+            PoolStats before = ticketDAO.dataBaseConfig.getPoolStats();
+            long start = System.nanoTime();
+            for (int i = 0; i < gates.length; i++) {
+                int gate = i;
+                int vehicles = profile.getVehicles() / gates.length + (i < profile.getVehicles() % gates.length ? 1 : 0);
+                gates[i] = new LoadReport.Gate();
+                threads[i] = new Thread(() -> runGate(gate, runTag, start, vehicles, gates[gate]), "load-gate-" + i);
+                threads[i].start();
+            }
+            try {
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException e) {
+                for (Thread thread : threads) {
+                    thread.interrupt();
+                }
+                throw e;
+            }
+            long duration = System.nanoTime() - start;
+            for (OperationTimer timer : OperationMetrics.timers()) {
+                timer.refresh();
+            }
+            PoolStats after = ticketDAO.dataBaseConfig.getPoolStats();
+            return new LoadReport(profile.toString(), duration, gates, before, after, OperationMetrics.timers());
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    private void runGate(int gate, String runTag, long start, int vehicles, LoadReport.Gate counters) {
+        ScriptedInputReader input = new ScriptedInputReader();
+        ParkingService parkingService = gateFactory.apply(input);
+        Random random = new Random(profile.getSeed() * 31 + gate);
+        PriorityQueue<Departure> departures = new PriorityQueue<>();
+        List<String> leftVehicles = new ArrayList<>();
+        // fixed:0 : le véhicule suivant arrive dès la fin de l'opération précédente
+        boolean closedLoop = profile.getArrivals().mean() == 0;
+        long nextArrival = start + nanos(profile.getArrivals().sample(random));
+        int newVehicles = 0;
+        int remaining = vehicles;
+        try {
+            while (remaining > 0 || !departures.isEmpty()) {
+                boolean arrival = remaining > 0 && (departures.isEmpty() || nextArrival <= departures.peek().due);
+                long due = arrival ? nextArrival : departures.peek().due;
+                if (!waitUntil(due)) {
+                    return;
+                }
+                if (arrival) {
+                    remaining--;
+                    counters.arrivals++;
+                    boolean returning = !leftVehicles.isEmpty() && random.nextDouble() < profile.getReuseRatio();
+                    String plate = returning
+                            ? leftVehicles.remove(random.nextInt(leftVehicles.size()))
+                            : plate(runTag, gate, newVehicles++);
+                    input.script(random.nextDouble() < profile.getBikeRatio() ? BIKE : CAR, plate);
+                    parkingService.processIncomingVehicle();
+                    long end = System.nanoTime();
+                    counters.entryLatency.recordValue(end - due);
+                    if (input.isVehicleRegNumberRead() && ticketDAO.activeTicketCache.get(plate) != null) {
+                        counters.entries++;
+                        if (returning) {
+                            counters.loyalEntries++;
+                        }
+                        departures.add(new Departure(end + nanos(profile.getDwell().sample(random)), plate));
+                    } else {
+                        counters.rejections++;
+                        if (returning) {
+                            leftVehicles.add(plate);
+                        }
+                    }
+                    nextArrival = (closedLoop ? end : due) + nanos(profile.getArrivals().sample(random));
+                } else {
+                    Departure departure = departures.poll();
+                    input.script(0, departure.plate);
+                    parkingService.processExitingVehicle();
+                    counters.exitLatency.recordValue(System.nanoTime() - due);
+                    if (ticketDAO.activeTicketCache.get(departure.plate) == null) {
+                        counters.exits++;
+                        leftVehicles.add(departure.plate);
+                    } else {
+                        counters.failedExits++;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.error("Load gate " + gate + " stopped", e);
+        }
+    }
+
+    // 10 caractères au plus : run sur 2, borne sur 1, numéro du véhicule en base 36
+    static String plate(String runTag, int gate, int vehicle) {
+        return runTag + Character.toUpperCase(Character.forDigit(gate, 36)) + Integer.toString(vehicle, 36).toUpperCase(Locale.ROOT);
+    }
+
+    private static long nanos(double millis) {
+        return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static boolean waitUntil(long due) {
+        long delay;
+        while ((delay = due - System.nanoTime()) > 0) {
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            LockSupport.parkNanos(delay);
+        }
+        return !Thread.currentThread().isInterrupted();
+    }
+
+    private static class Departure implements Comparable<Departure> {
+        final long due;
+        final String plate;
+
+        Departure(long due, String plate) {
+            this.due = due;
+            this.plate = plate;
+        }
+
+        @Override
+        public int compareTo(Departure other) {
+            return Long.compare(due, other.due);
+        }
+    }
+}
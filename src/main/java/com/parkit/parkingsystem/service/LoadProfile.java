@@ -0,0 +1,155 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.util.Distribution;
+
+/**
+ * Traffic simulated by the {@link LoadGenerator}. Durations are {@link Distribution}s in milliseconds of real time.
+ * Defaults can be overridden with system properties, e.g. {@code -Dparkit.load.gates=8}.
+ */
+public class LoadProfile {
+
+    private static final String PREFIX = "parkit.load.";
+
+    // les plaques portent le numéro de borne sur un chiffre en base 36
+    static final int MAX_GATES = 36;
+
+    private int gates = 4;
+    private int vehicles = 10_000;
+    private Distribution arrivals = Distribution.parse("exp:5");
+    private Distribution dwell = Distribution.parse("lognormal:200,1.0");
+    private double reuseRatio = 0.3;
+    private double bikeRatio = 0.2;
+    private int carSpots;
+    private int bikeSpots;
+    private long seed = 42;
+
+    public static LoadProfile fromSystemProperties() {
+        LoadProfile profile = new LoadProfile();
+        profile.setGates(Integer.getInteger(PREFIX + "gates", profile.gates));
+        profile.setVehicles(Integer.getInteger(PREFIX + "vehicles", profile.vehicles));
+        profile.setArrivals(Distribution.parse(System.getProperty(PREFIX + "arrivals", profile.arrivals.toString())));
+        profile.setDwell(Distribution.parse(System.getProperty(PREFIX + "dwell", profile.dwell.toString())));
+        profile.setReuseRatio(Double.parseDouble(System.getProperty(PREFIX + "reuseRatio", String.valueOf(profile.reuseRatio))));
+        profile.setBikeRatio(Double.parseDouble(System.getProperty(PREFIX + "bikeRatio", String.valueOf(profile.bikeRatio))));
+        profile.setCarSpots(Integer.getInteger(PREFIX + "carSpots", profile.carSpots));
+        profile.setBikeSpots(Integer.getInteger(PREFIX + "bikeSpots", profile.bikeSpots));
+        profile.setSeed(Long.getLong(PREFIX + "seed", profile.seed));
+        return profile;
+    }
+
+    public int getGates() {
+        return gates;
+    }
+
+    public LoadProfile setGates(int gates) {
+        if (gates < 1 || gates > MAX_GATES) {
+            throw new IllegalArgumentException("Number of gates must be between 1 and " + MAX_GATES);
+        }
+        this.gates = gates;
+        return this;
+    }
+
+    public int getVehicles() {
+        return vehicles;
+    }
+
+    /**
+     * Number of arrivals over the whole run, spread over the gates.
+     */
+    public LoadProfile setVehicles(int vehicles) {
+        if (vehicles < 0) {
+            throw new IllegalArgumentException("Number of vehicles must not be negative");
+        }
+        this.vehicles = vehicles;
+        return this;
+    }
+
+    public Distribution getArrivals() {
+        return arrivals;
+    }
+
+    /**
+     * Time between two arrivals at one gate; fixed:0 makes each gate send the next vehicle as soon as
+     * the previous operation ends (closed loop).
+     */
+    public LoadProfile setArrivals(Distribution arrivals) {
+        this.arrivals = arrivals;
+        return this;
+    }
+
+    public Distribution getDwell() {
+        return dwell;
+    }
+
+    /**
+     * Time between the entry of a vehicle and its exit.
+     */
+    public LoadProfile setDwell(Distribution dwell) {
+        this.dwell = dwell;
+        return this;
+    }
+
+    public double getReuseRatio() {
+        return reuseRatio;
+    }
+
+    /**
+     * Share of arrivals made by a vehicle that already parked during the run, which takes the loyalty discount path.
+     */
+    public LoadProfile setReuseRatio(double reuseRatio) {
+        this.reuseRatio = ratio(reuseRatio, "Reuse ratio");
+        return this;
+    }
+
+    public double getBikeRatio() {
+        return bikeRatio;
+    }
+
+    public LoadProfile setBikeRatio(double bikeRatio) {
+        this.bikeRatio = ratio(bikeRatio, "Bike ratio");
+        return this;
+    }
+
+    public int getCarSpots() {
+        return carSpots;
+    }
+
+    /**
+     * Spots added before the run so that the lot has at least this many car spots; 0 keeps the lot as it is.
+     */
+    public LoadProfile setCarSpots(int carSpots) {
+        this.carSpots = carSpots;
+        return this;
+    }
+
+    public int getBikeSpots() {
+        return bikeSpots;
+    }
+
+    public LoadProfile setBikeSpots(int bikeSpots) {
+        this.bikeSpots = bikeSpots;
+        return this;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public LoadProfile setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    private static double ratio(double value, String name) {
+        if (value < 0 || value > 1) {
+            throw new IllegalArgumentException(name + " must be between 0 and 1");
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "gates=" + gates + ", vehicles=" + vehicles + ", arrivals=" + arrivals + ", dwell=" + dwell
+                + ", reuseRatio=" + reuseRatio + ", bikeRatio=" + bikeRatio + ", seed=" + seed;
+    }
+}
@@ -0,0 +1,177 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.PoolStats;
+import com.parkit.parkingsystem.util.OperationTimer;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Result of a {@link LoadGenerator} run. Latencies are measured from the time the vehicle was due at the gate,
+ * so a gate falling behind its arrival schedule shows up in the percentiles instead of being hidden.
+ */
+public class LoadReport {
+
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    private final String profile;
+    private final long durationNanos;
+    private final long arrivals;
+    private final long entries;
+    private final long loyalEntries;
+    private final long rejections;
+    private final long exits;
+    private final long failedExits;
+    private final Histogram entryLatency;
+    private final Histogram exitLatency;
+    private final long connectionBorrows;
+    private final long statements;
+    private final List<String> operations = new ArrayList<>();
+
+    LoadReport(String profile, long durationNanos, Gate[] gates, PoolStats before, PoolStats after,
+               Collection<OperationTimer> timers) {
+        this.profile = profile;
+        this.durationNanos = durationNanos;
+        long arrivals = 0, entries = 0, loyalEntries = 0, rejections = 0, exits = 0, failedExits = 0;
+        entryLatency = new Histogram(3);
+        exitLatency = new Histogram(3);
+        for (Gate gate : gates) {
+            arrivals += gate.arrivals;
+            entries += gate.entries;
+            loyalEntries += gate.loyalEntries;
+            rejections += gate.rejections;
+            exits += gate.exits;
+            failedExits += gate.failedExits;
+            entryLatency.add(gate.entryLatency);
+            exitLatency.add(gate.exitLatency);
+        }
+        this.arrivals = arrivals;
+        this.entries = entries;
+        this.loyalEntries = loyalEntries;
+        this.rejections = rejections;
+        this.exits = exits;
+        this.failedExits = failedExits;
+        this.connectionBorrows = after.getBorrowCount() - before.getBorrowCount();
+        this.statements = after.getStatementCacheHits() + after.getStatementCacheMisses()
+                - before.getStatementCacheHits() - before.getStatementCacheMisses();
+        List<OperationTimer> used = new ArrayList<>();
+        for (OperationTimer timer : timers) {
+            if (timer.getIntervalCount() > 0) {
+                used.add(timer);
+            }
+        }
+        used.sort(Comparator.comparing(OperationTimer::getName));
+        for (OperationTimer timer : used) {
+            operations.add(String.format(Locale.ROOT, "%-40s %10d %10.1f %10.1f %10.1f %10.1f", timer.getName(),
+                    timer.getIntervalCount(), timer.getP50Micros(), timer.getP99Micros(), timer.getP999Micros(),
+                    timer.getMaxMicros()));
+        }
+    }
+
+    public long getArrivals() {
+        return arrivals;
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    /**
+     * Entries of a vehicle that had already parked during the run.
+     */
+    public long getLoyalEntries() {
+        return loyalEntries;
+    }
+
+    /**
+     * Arrivals turned away: no spot of their type was free, or their ticket could not be saved.
+     */
+    public long getRejections() {
+        return rejections;
+    }
+
+    public long getExits() {
+        return exits;
+    }
+
+    /**
+     * Exits after which the ticket was still open.
+     */
+    public long getFailedExits() {
+        return failedExits;
+    }
+
+    public long getOperations() {
+        return arrivals + exits;
+    }
+
+    public double getThroughputPerSecond() {
+        return durationNanos > 0 ? getOperations() * 1e9 / durationNanos : 0;
+    }
+
+    public Histogram getEntryLatency() {
+        return entryLatency;
+    }
+
+    public Histogram getExitLatency() {
+        return exitLatency;
+    }
+
+    public long getConnectionBorrows() {
+        return connectionBorrows;
+    }
+
+    /**
+     * Statements prepared on pooled connections, one per query or update sent to the database.
+     * Only counted when the statement cache of the pool is enabled.
+     */
+    public long getStatements() {
+        return statements;
+    }
+
+    public void writeTo(Writer writer) throws IOException {
+        long operations = getOperations();
+        writer.write("# " + profile + "\n");
+        writer.write(String.format(Locale.ROOT, "duration %.1f s, %d operations, %.1f operations/s%n",
+                durationNanos / 1e9, operations, getThroughputPerSecond()));
+        writer.write("arrivals " + arrivals + ", entries " + entries + " (" + loyalEntries + " returning vehicles), lot full "
+                + rejections + ", exits " + exits + ", failed exits " + failedExits + "\n");
+        writer.write(String.format(Locale.ROOT, "database round trips per operation: %.2f connections, %.2f statements%n",
+                operations == 0 ? 0 : (double) connectionBorrows / operations,
+                operations == 0 ? 0 : (double) statements / operations));
+        writer.write(String.format(Locale.ROOT, "%-40s %10s %10s %10s %10s %10s%n", "latency (us)", "count", "p50", "p99",
+                "p99.9", "max"));
+        writeLatency(writer, "gate entry", entryLatency);
+        writeLatency(writer, "gate exit", exitLatency);
+        for (String operation : this.operations) {
+            writer.write(operation + "\n");
+        }
+        writer.flush();
+    }
+
+    private static void writeLatency(Writer writer, String name, Histogram histogram) throws IOException {
+        writer.write(String.format(Locale.ROOT, "%-40s %10d %10.1f %10.1f %10.1f %10.1f%n", name, histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / NANOS_PER_MICRO, histogram.getValueAtPercentile(99) / NANOS_PER_MICRO,
+                histogram.getValueAtPercentile(99.9) / NANOS_PER_MICRO, histogram.getMaxValue() / NANOS_PER_MICRO));
+    }
+
+    /**
+     * Counters of one gate, written by its thread only.
+     */
+    static class Gate {
+        final Histogram entryLatency = new Histogram(3);
+        final Histogram exitLatency = new Histogram(3);
+        long arrivals;
+        long entries;
+        long loyalEntries;
+        long rejections;
+        long exits;
+        long failedExits;
+    }
+}
@@ -1,31 +1,58 @@
 package com.parkit.parkingsystem.service;
 
 import com.parkit.parkingsystem.constants.ParkingType;
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.GateJournal;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
+import com.parkit.parkingsystem.dao.TicketRepository;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.util.InputReaderUtil;
+import com.parkit.parkingsystem.util.OperationMetrics;
+import com.parkit.parkingsystem.util.OperationTimer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
 
 public class ParkingService {
 
-    private static final Logger logger = LogManager.getLogger("ParkingService");
-    private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private static final Logger logger = LogManager.getLogger(ParkingService.class);
+    // la saisie au clavier n'est pas chronométrée : seules l'entrée, la sortie et le devis le sont
+    private static final OperationTimer parkVehicleTimer = OperationMetrics.timer("ParkingService.parkVehicle");
+    private static final OperationTimer checkoutTimer = OperationMetrics.timer("ParkingService.checkout");
+    private static final OperationTimer quoteTimer = OperationMetrics.timer("ParkingService.quote");
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
 
     private InputReaderUtil inputReaderUtil;
-    private ParkingSpotDAO parkingSpotDAO;
-    private TicketDAO ticketDAO;
+    private ParkingSpotRepository parkingSpotDAO;
+    private TicketRepository ticketDAO;
+    private ParkingTransactionDAO parkingTransactionDAO;
+    private GateJournal gateJournal;
 
-    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO) {
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO) {
         this.inputReaderUtil = inputReaderUtil;
         this.parkingSpotDAO = parkingSpotDAO;
         this.ticketDAO = ticketDAO;
     }
 
+    /**
+     * With a {@link ParkingTransactionDAO}, entry and exit each run as one transaction on one connection.
+     */
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO,
+                          ParkingTransactionDAO parkingTransactionDAO) {
+        this(inputReaderUtil, parkingSpotDAO, ticketDAO);
+        this.parkingTransactionDAO = parkingTransactionDAO;
+    }
+
+    /**
+     * With a {@link GateJournal}, every entry and exit is journaled before it is written to the database.
+     */
+    public void setGateJournal(GateJournal gateJournal) {
+        this.gateJournal = gateJournal;
+    }
+
     public void processIncomingVehicle() {
         try {
             ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
@@ -38,27 +65,168 @@ public class ParkingService {
                     System.out.println("Heureux de vous revoir ! En tant qu’utilisateur régulier de notre parking, vous allez obtenir une remise de 5 %.");
                 }
 
-                parkingSpot.setAvailable(false);
-                parkingSpotDAO.updateParking(parkingSpot);
-
-                Date inTime = new Date();
-                Ticket ticket = new Ticket();
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(0);
-                ticket.setInTime(inTime);
-                ticket.setOutTime(null);
-                ticketDAO.saveTicket(ticket);
+                Ticket ticket = newTicket(parkingSpot, vehicleRegNumber);
+                if (!parkVehicle(ticket)) {
+                    System.out.println("Sorry, the parking is full");
+                    return;
+                }
 
                 System.out.println("Generated Ticket and saved in DB");
-                System.out.println("Please park your vehicle in spot number: " + parkingSpot.getId());
-                System.out.println("Recorded in-time for vehicle number: " + vehicleRegNumber + " is: " + inTime);
+                System.out.println("Please park your vehicle in spot number: " + ticket.getParkingSpot().getId());
+                System.out.println("Recorded in-time for vehicle number: " + vehicleRegNumber + " is: " + ticket.getInTime());
             }
         } catch (Exception e) {
             logger.error("Unable to process incoming vehicle", e);
         }
     }
 
+    /**
+     * Non-interactive entry, used by the gate server.
+     *
+     * @return the saved ticket, or null if the parking is full for this type
+     */
+    public Ticket enterVehicle(ParkingType parkingType, String vehicleRegNumber) {
+        int parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
+        if (parkingNumber <= 0) {
+            return null;
+        }
+        Ticket ticket = newTicket(new ParkingSpot(parkingSpotDAO.getFacilityId(), parkingNumber, parkingType, true), vehicleRegNumber);
+        return parkVehicle(ticket) ? ticket : null;
+    }
+
+    /**
+     * Non-interactive exit, used by the gate server.
+     *
+     * @return the closed ticket with its price, or null if the vehicle has no open ticket or the update failed
+     */
+    public Ticket exitVehicle(String vehicleRegNumber) {
+        Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
+        if (ticket == null || ticket.getOutTime() != null) {
+            return null;
+        }
+        return checkout(ticket, new Date()) ? ticket : null;
+    }
+
+    /**
+     * Price the vehicle would pay if it left now; nothing is written.
+     *
+     * @return a copy of the open ticket with out time and price set, or null if the vehicle has no open ticket
+     */
+    public Ticket quote(String vehicleRegNumber) {
+        long start = quoteTimer.start();
+        try {
+            Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
+            if (ticket == null || ticket.getOutTime() != null) {
+                return null;
+            }
+            Ticket quote = new Ticket();
+            quote.setId(ticket.getId());
+            quote.setParkingSpot(ticket.getParkingSpot());
+            quote.setVehicleRegNumber(ticket.getVehicleRegNumber());
+            quote.setInTime(ticket.getInTime());
+            quote.setOutTime(new Date());
+            fareCalculatorService.calculateFare(quote, ticketDAO.getNbTicket(vehicleRegNumber) > 1);
+            return quote;
+        } catch (RuntimeException e) {
+            quoteTimer.error();
+            throw e;
+        } finally {
+            quoteTimer.stop(start);
+        }
+    }
+
+    private static Ticket newTicket(ParkingSpot parkingSpot, String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(parkingSpot);
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(0);
+        ticket.setInTime(new Date());
+        ticket.setOutTime(null);
+        return ticket;
+    }
+
+    private boolean parkVehicle(Ticket ticket) {
+        long start = parkVehicleTimer.start();
+        try {
+            long journalSequence = gateJournal != null ? gateJournal.entering(ticket) : 0;
+            // pas de marque de fin si une exception est levée : l'entrée sera rapprochée au prochain démarrage
+            return finish(journalSequence, writeEntry(ticket));
+        } catch (RuntimeException e) {
+            parkVehicleTimer.error();
+            throw e;
+        } finally {
+            parkVehicleTimer.stop(start);
+        }
+    }
+
+    private CompletableFuture<Boolean> writeEntry(Ticket ticket) {
+        if (parkingTransactionDAO != null) {
+            return CompletableFuture.completedFuture(parkingTransactionDAO.enterVehicle(ticket));
+        }
+        // Une autre borne a pu prendre la place entre-temps : on passe alors à la suivante
+        ParkingSpot parkingSpot = claimParkingSpot(ticket.getParkingSpot());
+        if (parkingSpot == null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        ticket.setParkingSpot(parkingSpot);
+        CompletableFuture<Boolean> saved = ticketDAO.isWriteBehind()
+                ? ticketDAO.saveTicketAsync(ticket)
+                : CompletableFuture.completedFuture(ticketDAO.saveTicket(ticket));
+        if (failed(saved)) {
+            // aucun ticket n'occupe la place : elle est rendue, en base comme dans l'allocateur
+            parkingSpot.setAvailable(true);
+            if (!parkingSpotDAO.updateParking(parkingSpot)) {
+                logger.error("Unable to release spot " + parkingSpot.getId() + " after the ticket of "
+                        + ticket.getVehicleRegNumber() + " failed to be saved");
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Marks the journaled operation done once its write is in the database, or aborted when the write failed
+     * at once. A batched write failing later stays open in the journal and is replayed at the next start,
+     * since the gate has already let the vehicle through, unless its ticket turned out to be closed already.
+     *
+     * @return false if the write failed at once
+     */
+    private boolean finish(long journalSequence, CompletableFuture<Boolean> written) {
+        if (failed(written)) {
+            if (gateJournal != null) {
+                gateJournal.aborted(journalSequence);
+            }
+            return false;
+        }
+        if (gateJournal != null) {
+            written.whenComplete((durable, notOpen) -> {
+                if (notOpen != null) {
+                    // une autre borne a fermé le ticket : rien n'est à rejouer
+                    gateJournal.aborted(journalSequence);
+                } else if (durable) {
+                    gateJournal.done(journalSequence);
+                }
+            });
+        }
+        return true;
+    }
+
+    private static boolean failed(CompletableFuture<Boolean> written) {
+        return written.isDone() && (written.isCompletedExceptionally() || !written.join());
+    }
+
+    private ParkingSpot claimParkingSpot(ParkingSpot parkingSpot) {
+        ParkingSpot claimed = parkingSpot;
+        if (!parkingSpotDAO.claimParkingSpot(parkingSpot)) {
+            int parkingNumber = parkingSpotDAO.claimNextAvailableSlot(parkingSpot.getParkingType());
+            if (parkingNumber <= 0) {
+                return null;
+            }
+            claimed = new ParkingSpot(parkingSpot.getFacilityId(), parkingNumber, parkingSpot.getParkingType(), true);
+        }
+        claimed.setAvailable(false);
+        return claimed;
+    }
+
     private String getVehichleRegNumber() throws Exception {
         System.out.println("Please type the vehicle registration number and press enter key");
         return inputReaderUtil.readVehicleRegistrationNumber();
@@ -71,7 +239,7 @@ public class ParkingService {
             ParkingType parkingType = getVehichleType();
             parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
             if (parkingNumber > 0) {
-                parkingSpot = new ParkingSpot(parkingNumber, parkingType, true);
+                parkingSpot = new ParkingSpot(parkingSpotDAO.getFacilityId(), parkingNumber, parkingType, true);
             } else {
                 throw new Exception("Parking slots might be full");
             }
@@ -103,26 +271,62 @@ public class ParkingService {
         try {
             String vehicleRegNumber = getVehichleRegNumber();
             Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
+            // getTicket rend aussi le dernier ticket fermé : il ne doit pas être refacturé
+            if (ticket == null || ticket.getOutTime() != null) {
+                System.out.println("No vehicle with registration number " + vehicleRegNumber + " is parked here");
+                return;
+            }
             Date outTime = new Date();
+            if (checkout(ticket, outTime)) {
+                System.out.println("Please pay the parking fare: " + ticket.getPrice());
+                System.out.println("Recorded out-time for vehicle number: " + ticket.getVehicleRegNumber() + " is: " + outTime);
+            } else {
+                System.out.println("Unable to update ticket information. Error occurred");
+            }
+        } catch (Exception e) {
+            logger.error("Unable to process exiting vehicle", e);
+        }
+    }
+
+    private boolean checkout(Ticket ticket, Date outTime) {
+        long start = checkoutTimer.start();
+        try {
             ticket.setOutTime(outTime);
 
             // Vérifie la fidélité
-            boolean discount = ticketDAO.getNbTicket(vehicleRegNumber) > 1;
+            boolean discount = ticketDAO.getNbTicket(ticket.getVehicleRegNumber()) > 1;
 
             fareCalculatorService.calculateFare(ticket, discount);
+            long journalSequence = gateJournal != null ? gateJournal.exiting(ticket) : 0;
+            if (!finish(journalSequence, closeTicket(ticket))) {
+                checkoutTimer.error();
+                return false;
+            }
+            return true;
+        } catch (RuntimeException e) {
+            checkoutTimer.error();
+            throw e;
+        } finally {
+            checkoutTimer.stop(start);
+        }
+    }
 
-            if (ticketDAO.updateTicket(ticket)) {
+    private CompletableFuture<Boolean> closeTicket(Ticket ticket) {
+        if (parkingTransactionDAO != null) {
+            return CompletableFuture.completedFuture(parkingTransactionDAO.exitVehicle(ticket));
+        }
+        CompletableFuture<Boolean> closed = ticketDAO.isWriteBehind()
+                ? ticketDAO.updateTicketAsync(ticket)
+                : CompletableFuture.completedFuture(ticketDAO.updateTicket(ticket));
+        // la place n'est libérée qu'une fois le ticket fermé en base : avant, elle pourrait être donnée à un
+        // autre véhicule alors que la sortie est encore perdue au moindre arrêt
+        closed.thenAccept(written -> {
+            if (written) {
                 ParkingSpot parkingSpot = ticket.getParkingSpot();
                 parkingSpot.setAvailable(true);
                 parkingSpotDAO.updateParking(parkingSpot);
-
-                System.out.println("Please pay the parking fare: " + ticket.getPrice());
-                System.out.println("Recorded out-time for vehicle number: " + ticket.getVehicleRegNumber() + " is: " + outTime);
-            } else {
-                System.out.println("Unable to update ticket information. Error occurred");
             }
-        } catch (Exception e) {
-            logger.error("Unable to process exiting vehicle", e);
-        }
+        });
+        return closed;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Revenue of the closed tickets by parking type, hour of exit and discount, in cents.
+ * A fixed number of counters whatever the number of tickets; partial reports are merged with {@link #merge}.
+ */
+public class SettlementReport {
+
+    static final int HOURS = 24;
+    static final int MAX_MISMATCHED_IDS = 100;
+
+    private final long[] tickets = new long[ParkingType.values().length * HOURS * 2];
+    private final long[] revenueCents = new long[tickets.length];
+    private long mismatches;
+    private long mismatchCents;
+    private final List<Integer> mismatchedIds = new ArrayList<>();
+
+    private static int index(ParkingType parkingType, int hour, boolean discount) {
+        return (parkingType.ordinal() * HOURS + hour) * 2 + (discount ? 1 : 0);
+    }
+
+    void add(ParkingType parkingType, int hour, boolean discount, long priceCents) {
+        int i = index(parkingType, hour, discount);
+        tickets[i]++;
+        revenueCents[i] += priceCents;
+    }
+
+    /**
+     * Records a ticket whose stored price differs from the recomputed one; deltaCents is stored minus expected.
+     */
+    void mismatch(int ticketId, long deltaCents) {
+        mismatches++;
+        mismatchCents += deltaCents;
+        if (mismatchedIds.size() < MAX_MISMATCHED_IDS) {
+            mismatchedIds.add(ticketId);
+        }
+    }
+
+    void merge(SettlementReport other) {
+        for (int i = 0; i < tickets.length; i++) {
+            tickets[i] += other.tickets[i];
+            revenueCents[i] += other.revenueCents[i];
+        }
+        mismatches += other.mismatches;
+        mismatchCents += other.mismatchCents;
+        for (Integer id : other.mismatchedIds) {
+            if (mismatchedIds.size() >= MAX_MISMATCHED_IDS) {
+                break;
+            }
+            mismatchedIds.add(id);
+        }
+    }
+
+    public long getTickets(ParkingType parkingType, int hour, boolean discount) {
+        return tickets[index(parkingType, hour, discount)];
+    }
+
+    public long getRevenueCents(ParkingType parkingType, int hour, boolean discount) {
+        return revenueCents[index(parkingType, hour, discount)];
+    }
+
+    public long getTotalTickets() {
+        long total = 0;
+        for (long count : tickets) {
+            total += count;
+        }
+        return total;
+    }
+
+    public long getTotalRevenueCents() {
+        long total = 0;
+        for (long cents : revenueCents) {
+            total += cents;
+        }
+        return total;
+    }
+
+    public long getMismatches() {
+        return mismatches;
+    }
+
+    public long getMismatchCents() {
+        return mismatchCents;
+    }
+
+    /**
+     * @return the ids of the first mismatched tickets, at most MAX_MISMATCHED_IDS
+     */
+    public List<Integer> getMismatchedIds() {
+        return Collections.unmodifiableList(mismatchedIds);
+    }
+
+    /**
+     * Writes one line per non-empty bucket, "type,hour,discount,tickets,revenue", after a summary header.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        writer.write("# tickets=" + getTotalTickets() + " revenue=" + FixedPointFareEngine.toPrice(getTotalRevenueCents())
+                + " mismatches=" + mismatches + " mismatchAmount=" + FixedPointFareEngine.toPrice(mismatchCents) + "\n");
+        if (!mismatchedIds.isEmpty()) {
+            writer.write("# mismatchedIds=" + mismatchedIds + "\n");
+        }
+        writer.write("type,hour,discount,tickets,revenue\n");
+        for (ParkingType parkingType : ParkingType.values()) {
+            for (int hour = 0; hour < HOURS; hour++) {
+                for (boolean discount : new boolean[]{false, true}) {
+                    int i = index(parkingType, hour, discount);
+                    if (tickets[i] > 0) {
+                        writer.write(parkingType + "," + hour + "," + discount + "," + tickets[i] + ","
+                                + FixedPointFareEngine.toPrice(revenueCents[i]) + "\n");
+                    }
+                }
+            }
+        }
+    }
+
+    public void writeTo(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writeTo(writer);
+        }
+    }
+}
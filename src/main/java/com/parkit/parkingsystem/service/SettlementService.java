@@ -0,0 +1,206 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * End-of-day settlement: streams the tickets closed in a period, checks every stored price against
+ * {@link FareCalculatorService} and aggregates the revenue into a {@link SettlementReport}.
+ *
+ * <p>A price is checked with the tariff in force at the out time of the ticket, see {@link TariffRegistry},
+ * within one cent: the times are read back rounded to the second from DATETIME columns while the price was
+ * computed from the milliseconds, which can move a fare across a cent boundary.
+ *
+ * <p>The rows are read with a forward-only cursor into a fixed set of reusable chunks; a chunk is verified
+ * and aggregated on a fork-join pool while the next ones are read, and the reader waits for a free chunk.
+ * Memory is the same for a thousand tickets or tens of millions.
+ */
+public class SettlementService {
+
+    private static final Logger logger = LogManager.getLogger(SettlementService.class);
+
+    static final int CHUNK_SIZE = 4096;
+    static final long PRICE_TOLERANCE_CENTS = 1;
+
+    public DataBaseConfig dataBaseConfig;
+    private final FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private final int fetchSize;
+    private final int parallelism;
+    private final ZoneId zone;
+
+    /**
+     * Fetch size given by -Dparkit.settlement.fetchSize (1000 by default), one worker per processor.
+     */
+    public SettlementService(DataBaseConfig dataBaseConfig) {
+        this(dataBaseConfig, Integer.getInteger("parkit.settlement.fetchSize", 1000),
+                Runtime.getRuntime().availableProcessors(), ZoneId.systemDefault());
+    }
+
+    /**
+     * @param zone the zone of the hours of the report
+     */
+    public SettlementService(DataBaseConfig dataBaseConfig, int fetchSize, int parallelism, ZoneId zone) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.fetchSize = fetchSize;
+        this.parallelism = parallelism;
+        this.zone = zone;
+    }
+
+    /**
+     * Settles the tickets closed from from (inclusive) to to (exclusive).
+     *
+     * @return the report, or null if the tickets could not be read
+     */
+    public SettlementReport settle(Date from, Date to) {
+        int chunkCount = parallelism * 2;
+        BlockingQueue<Chunk> freeChunks = new ArrayBlockingQueue<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            freeChunks.add(new Chunk());
+        }
+        SettlementReport report = new SettlementReport();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        NavigableMap<Long, Tariff> tariffs = TariffRegistry.history();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Connection con = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            PreparedStatement ps = con.prepareStatement(DBConstants.GET_CLOSED_TICKETS,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(streamingFetchSize(con));
+            ps.setTimestamp(1, new Timestamp(from.getTime()));
+            ps.setTimestamp(2, new Timestamp(to.getTime()));
+            ps.setTimestamp(3, new Timestamp(from.getTime()));
+            ps.setTimestamp(4, new Timestamp(to.getTime()));
+            ResultSet rs = ps.executeQuery();
+            Chunk chunk = freeChunks.take();
+            while (rs.next()) {
+                chunk.add(rs.getInt(1), rs.getDouble(2), rs.getTimestamp(3).getTime(), rs.getTimestamp(4).getTime(),
+                        ParkingType.valueOf(rs.getString(5)));
+                if (chunk.size == CHUNK_SIZE) {
+                    submit(pool, chunk, tariffs, report, freeChunks, failure);
+                    chunk = freeChunks.take();
+                }
+            }
+            submit(pool, chunk, tariffs, report, freeChunks, failure);
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            // tous les lots rendus : l'agrégation est terminée
+            for (int i = 0; i < chunkCount; i++) {
+                freeChunks.take();
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            logger.info("Settled " + report.getTotalTickets() + " tickets, " + report.getMismatches() + " price mismatches");
+            return report;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            logger.error("Settlement interrupted", ex);
+        } catch (Exception ex) {
+            logger.error("Error settling tickets", ex);
+        } finally {
+            pool.shutdownNow();
+            dataBaseConfig.closeConnection(con);
+        }
+        return null;
+    }
+
+    // MySQL ne diffuse les lignes une à une qu'avec Integer.MIN_VALUE ; les autres pilotes suivent la taille demandée
+    private int streamingFetchSize(Connection con) throws SQLException {
+        return "MySQL".equals(con.getMetaData().getDatabaseProductName()) ? Integer.MIN_VALUE : fetchSize;
+    }
+
+    private void submit(ForkJoinPool pool, Chunk chunk, NavigableMap<Long, Tariff> tariffs, SettlementReport report,
+                        BlockingQueue<Chunk> freeChunks, AtomicReference<RuntimeException> failure) {
+        pool.execute(() -> {
+            try {
+                SettlementReport partial = aggregate(chunk, tariffs);
+                synchronized (report) {
+                    report.merge(partial);
+                }
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                chunk.size = 0;
+                freeChunks.add(chunk);
+            }
+        });
+    }
+
+    /**
+     * @param tariffs tariffs by installation time, as given by {@link TariffRegistry#history()}
+     */
+    SettlementReport aggregate(Chunk chunk, NavigableMap<Long, Tariff> tariffs) {
+        SettlementReport partial = new SettlementReport();
+        ParkingSpot[] parkingSpots = new ParkingSpot[ParkingType.values().length];
+        for (ParkingType parkingType : ParkingType.values()) {
+            parkingSpots[parkingType.ordinal()] = new ParkingSpot(0, parkingType, false);
+        }
+        Ticket ticket = new Ticket();
+        for (int i = 0; i < chunk.size; i++) {
+            ParkingType parkingType = chunk.parkingTypes[i];
+            long storedCents = Math.round(chunk.prices[i] * 100);
+            boolean discount = false;
+            try {
+                ticket.setParkingSpot(parkingSpots[parkingType.ordinal()]);
+                ticket.setInTime(new Date(chunk.inMillis[i]));
+                ticket.setOutTime(new Date(chunk.outMillis[i]));
+                Map.Entry<Long, Tariff> inForce = tariffs.floorEntry(chunk.outMillis[i]);
+                Tariff tariff = inForce == null ? null : inForce.getValue();
+                fareCalculatorService.calculateFare(ticket, false, tariff);
+                long fullCents = Math.round(ticket.getPrice() * 100);
+                if (Math.abs(storedCents - fullCents) > PRICE_TOLERANCE_CENTS) {
+                    fareCalculatorService.calculateFare(ticket, true, tariff);
+                    discount = Math.abs(storedCents - Math.round(ticket.getPrice() * 100)) <= PRICE_TOLERANCE_CENTS;
+                    if (!discount) {
+                        partial.mismatch(chunk.ids[i], storedCents - fullCents);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                // horaires incohérents en base : le prix ne peut pas être vérifié
+                partial.mismatch(chunk.ids[i], storedCents);
+            }
+            int hour = Instant.ofEpochMilli(chunk.outMillis[i]).atZone(zone).getHour();
+            partial.add(parkingType, hour, discount, storedCents);
+        }
+        return partial;
+    }
+
+    static class Chunk {
+        final int[] ids = new int[CHUNK_SIZE];
+        final double[] prices = new double[CHUNK_SIZE];
+        final long[] inMillis = new long[CHUNK_SIZE];
+        final long[] outMillis = new long[CHUNK_SIZE];
+        final ParkingType[] parkingTypes = new ParkingType[CHUNK_SIZE];
+        int size;
+
+        void add(int id, double price, long in, long out, ParkingType parkingType) {
+            ids[size] = id;
+            prices[size] = price;
+            inMillis[size] = in;
+            outMillis[size] = out;
+            parkingTypes[size] = parkingType;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * A tariff compiled into one cumulative cost table per {@link ParkingType}: entry m is the cost of the day
+ * from midnight to minute m, so any part of a day is priced with two lookups and a stay of any length
+ * with at most three parts (first day, full days, last day).
+ *
+ * <p>Properties format, rates in the unit of {@link Fare} per hour:
+ * <pre>
+ * tariff.zone=Europe/Paris                      time zone of the bands, UTC by default
+ * tariff.graceMinutes=30                        stays up to this length are free
+ * tariff.discountPercent=5                      loyalty discount
+ * tariff.CAR.rate=1.5                           rate outside the bands
+ * tariff.CAR.bands=08:00-19:00@2.0,22:00-06:00@0.5
+ * tariff.CAR.dailyCap=20                        maximum per calendar day, none by default
+ * </pre>
+ * Without properties, the tariff is the one of {@link FareCalculatorService}.
+ *
+ * <p>Costs are kept in cents x millis per hour, so partial minutes are charged to the milli and rounding
+ * to the cent happens once, half up, after the discount. Days are wall-clock days of the zone: on a DST
+ * change the repeated hour is not charged twice and the skipped hour is not charged.
+ */
+public class Tariff {
+
+    private static final String PREFIX = "tariff.";
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final long MILLIS_PER_DAY = MINUTES_PER_DAY * MILLIS_PER_MINUTE;
+
+    private final ZoneId zone;
+    private final long graceMillis;
+    private final int discountPercent;
+    // indexés par ParkingType.ordinal()
+    private final long[][] minuteRates;
+    private final long[][] cumulativeCosts;
+    private final long[] dailyCaps;
+
+    private Tariff(ZoneId zone, long graceMillis, int discountPercent, long[][] minuteRates, long[] dailyCaps) {
+        this.zone = zone;
+        this.graceMillis = graceMillis;
+        this.discountPercent = discountPercent;
+        this.minuteRates = minuteRates;
+        this.dailyCaps = dailyCaps;
+        this.cumulativeCosts = new long[minuteRates.length][];
+        for (int type = 0; type < minuteRates.length; type++) {
+            long[] cumulative = new long[MINUTES_PER_DAY + 1];
+            for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+                cumulative[minute + 1] = cumulative[minute] + minuteRates[type][minute] * MILLIS_PER_MINUTE;
+            }
+            cumulativeCosts[type] = cumulative;
+        }
+    }
+
+    /**
+     * @return the price of the stay in cents
+     */
+    public long priceCents(ParkingType parkingType, long inMillis, long outMillis, boolean discount) {
+        if (outMillis < inMillis) {
+            throw new IllegalArgumentException("Out time provided is incorrect: " + outMillis);
+        }
+        // comme le calcul de base : un séjour dans le délai de grâce est gratuit, type connu ou non
+        if (outMillis - inMillis <= graceMillis) {
+            return 0;
+        }
+        if (parkingType == null) {
+            throw new IllegalArgumentException("Unknown Parking Type");
+        }
+        int type = parkingType.ordinal();
+        LocalDateTime in = LocalDateTime.ofInstant(Instant.ofEpochMilli(inMillis), zone);
+        LocalDateTime out = LocalDateTime.ofInstant(Instant.ofEpochMilli(outMillis), zone);
+        long inOfDay = millisOfDay(in.toLocalTime());
+        long outOfDay = millisOfDay(out.toLocalTime());
+        long days = ChronoUnit.DAYS.between(in.toLocalDate(), out.toLocalDate());
+
+        long cost;
+        if (days == 0) {
+            cost = dayCost(type, inOfDay, outOfDay);
+        } else {
+            cost = dayCost(type, inOfDay, MILLIS_PER_DAY)
+                    + (days - 1) * dayCost(type, 0, MILLIS_PER_DAY)
+                    + dayCost(type, 0, outOfDay);
+        }
+        long percent = discount ? 100 - discountPercent : 100;
+        long divisor = MILLIS_PER_HOUR * 100;
+        return (cost * percent + divisor / 2) / divisor;
+    }
+
+    private long dayCost(int type, long fromMillisOfDay, long toMillisOfDay) {
+        long cost = Math.max(0, costUntil(type, toMillisOfDay) - costUntil(type, fromMillisOfDay));
+        return Math.min(cost, dailyCaps[type]);
+    }
+
+    private long costUntil(int type, long millisOfDay) {
+        if (millisOfDay >= MILLIS_PER_DAY) {
+            return cumulativeCosts[type][MINUTES_PER_DAY];
+        }
+        int minute = (int) (millisOfDay / MILLIS_PER_MINUTE);
+        return cumulativeCosts[type][minute] + minuteRates[type][minute] * (millisOfDay - minute * MILLIS_PER_MINUTE);
+    }
+
+    private static long millisOfDay(LocalTime time) {
+        return time.toNanoOfDay() / 1_000_000;
+    }
+
+    /**
+     * The rules of {@link FareCalculatorService}: {@link Fare} rates all day, 30 minutes free, 5% discount.
+     */
+    public static Tariff defaults() {
+        return load(new Properties());
+    }
+
+    public static Tariff load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        return load(properties);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a value cannot be parsed
+     */
+    public static Tariff load(Properties properties) {
+        ZoneId zone = properties.containsKey(PREFIX + "zone")
+                ? ZoneId.of(properties.getProperty(PREFIX + "zone").trim()) : ZoneOffset.UTC;
+        long graceMillis = Long.parseLong(properties.getProperty(PREFIX + "graceMinutes", "30").trim()) * MILLIS_PER_MINUTE;
+        int discountPercent = Integer.parseInt(properties.getProperty(PREFIX + "discountPercent", "5").trim());
+        if (discountPercent < 0 || discountPercent > 100) {
+            throw new IllegalArgumentException("Invalid discount percent: " + discountPercent);
+        }
+
+        ParkingType[] parkingTypes = ParkingType.values();
+        long[][] minuteRates = new long[parkingTypes.length][MINUTES_PER_DAY];
+        long[] dailyCaps = new long[parkingTypes.length];
+        for (ParkingType parkingType : parkingTypes) {
+            String typePrefix = PREFIX + parkingType.name() + ".";
+            String rate = properties.getProperty(typePrefix + "rate");
+            long[] rates = minuteRates[parkingType.ordinal()];
+            Arrays.fill(rates, rate != null ? toCents(rate) : defaultRateCents(parkingType));
+            String bands = properties.getProperty(typePrefix + "bands", "").trim();
+            if (!bands.isEmpty()) {
+                for (String band : bands.split(",")) {
+                    applyBand(rates, band.trim());
+                }
+            }
+            String dailyCap = properties.getProperty(typePrefix + "dailyCap");
+            dailyCaps[parkingType.ordinal()] = dailyCap != null ? toCents(dailyCap) * MILLIS_PER_HOUR : Long.MAX_VALUE;
+        }
+        return new Tariff(zone, graceMillis, discountPercent, minuteRates, dailyCaps);
+    }
+
+    // HH:mm-HH:mm@taux ; une fin avant le début passe minuit
+    private static void applyBand(long[] rates, String band) {
+        int at = band.indexOf('@');
+        int dash = band.indexOf('-');
+        if (at < 0 || dash < 0 || dash > at) {
+            throw new IllegalArgumentException("Invalid tariff band: " + band);
+        }
+        int start = minuteOfDay(band.substring(0, dash));
+        int end = minuteOfDay(band.substring(dash + 1, at));
+        long rate = toCents(band.substring(at + 1));
+        int minute = start;
+        do {
+            rates[minute] = rate;
+            minute = (minute + 1) % MINUTES_PER_DAY;
+        } while (minute != end);
+    }
+
+    private static int minuteOfDay(String time) {
+        String trimmed = time.trim();
+        if ("24:00".equals(trimmed)) {
+            return 0;
+        }
+        LocalTime localTime = LocalTime.parse(trimmed);
+        return localTime.getHour() * 60 + localTime.getMinute();
+    }
+
+    private static long toCents(String amount) {
+        return Math.round(Double.parseDouble(amount.trim()) * 100);
+    }
+
+    private static long defaultRateCents(ParkingType parkingType) {
+        switch (parkingType) {
+            case CAR:
+                return Math.round(Fare.CAR_RATE_PER_HOUR * 100);
+            case BIKE:
+                return Math.round(Fare.BIKE_RATE_PER_HOUR * 100);
+            default:
+                throw new IllegalArgumentException("No rate configured for " + parkingType);
+        }
+    }
+}
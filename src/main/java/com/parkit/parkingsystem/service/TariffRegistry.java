@@ -0,0 +1,109 @@
+package com.parkit.parkingsystem.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The tariff in force, shared by every {@link FareCalculatorService}. A new tariff is compiled aside and
+ * swapped in with a single reference write: a fare being computed keeps the tariff it started with and the
+ * next one sees the new tariff, so the gates never stop. When no tariff is installed the fares are computed
+ * with the Fare constants.
+ *
+ * <p>Every installation is remembered with its time, so that the settlement checks a ticket against the tariff
+ * in force when it was closed. The first tariff installed is taken to have been in force before, the registry
+ * not knowing what a previous run used.
+ */
+public class TariffRegistry {
+
+    private static final Logger logger = LogManager.getLogger(TariffRegistry.class);
+
+    private static final AtomicReference<Tariff> current = new AtomicReference<>();
+    // tarif en vigueur à partir de chaque installation, null pour les constantes de Fare
+    private static final TreeMap<Long, Tariff> history = new TreeMap<>();
+
+    private TariffRegistry() {
+    }
+
+    /**
+     * @return the tariff in force, or null if none was installed
+     */
+    public static Tariff current() {
+        return current.get();
+    }
+
+    public static synchronized void install(Tariff tariff) {
+        current.set(tariff);
+        history.put(history.isEmpty() ? Long.MIN_VALUE : System.currentTimeMillis(), tariff);
+    }
+
+    /**
+     * Removes the tariff and its history: the Fare constants are then taken to have always been in force.
+     */
+    public static synchronized void clear() {
+        current.set(null);
+        history.clear();
+    }
+
+    /**
+     * @return a copy of the tariffs by installation time, to look up with floorEntry; empty when none was installed
+     */
+    public static synchronized NavigableMap<Long, Tariff> history() {
+        return new TreeMap<>(history);
+    }
+
+    /**
+     * Installs the tariff of the file given by -Dparkit.tariff.file and reloads it when the file changes,
+     * checked every -Dparkit.tariff.reloadSeconds (10 by default, 0 to disable).
+     *
+     * @return the reload task, or null if no tariff file is configured or reload is disabled
+     */
+    public static ScheduledExecutorService fromSystemProperties() throws IOException {
+        String file = System.getProperty("parkit.tariff.file");
+        if (file == null) {
+            return null;
+        }
+        Path path = Paths.get(file);
+        install(Tariff.load(path));
+        logger.info("Tariff loaded from " + path);
+        long reloadSeconds = Long.getLong("parkit.tariff.reloadSeconds", 10);
+        return reloadSeconds > 0 ? watch(path, reloadSeconds, TimeUnit.SECONDS) : null;
+    }
+
+    /**
+     * Checks the modification time of the file every period and installs the tariff again when it changed.
+     * A file that cannot be loaded is logged and the tariff in force is kept.
+     */
+    public static ScheduledExecutorService watch(Path file, long period, TimeUnit unit) throws IOException {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tariff-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long[] lastModified = {Files.getLastModifiedTime(file).toMillis()};
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                long modified = Files.getLastModifiedTime(file).toMillis();
+                if (modified != lastModified[0]) {
+                    // une version invalide n'est signalée qu'une fois
+                    lastModified[0] = modified;
+                    install(Tariff.load(file));
+                    logger.info("Tariff reloaded from " + file);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("Unable to reload the tariff from " + file + ", keeping the current one", e);
+            }
+        }, period, period, unit);
+        return scheduler;
+    }
+}
@@ -0,0 +1,107 @@
+package com.parkit.parkingsystem.util;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Random durations in milliseconds, written as text so they can be given on the command line:
+ * <pre>
+ * fixed:500             always 500
+ * uniform:100,900       uniform between 100 and 900
+ * exp:200               exponential of mean 200 (Poisson arrivals)
+ * lognormal:200,1.0     log-normal of mean 200 and shape sigma 1.0 (long tail of parking stays)
+ * </pre>
+ */
+public class Distribution {
+
+    private enum Kind { FIXED, UNIFORM, EXP, LOGNORMAL }
+
+    private final Kind kind;
+    private final double a;
+    private final double b;
+    private final String spec;
+
+    private Distribution(Kind kind, double a, double b, String spec) {
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+        this.spec = spec;
+    }
+
+    public static Distribution parse(String spec) {
+        int colon = spec.indexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("Invalid distribution " + spec + ", expected kind:parameters");
+        }
+        String[] parameters = spec.substring(colon + 1).split(",");
+        double[] values = new double[parameters.length];
+        try {
+            for (int i = 0; i < parameters.length; i++) {
+                values[i] = Double.parseDouble(parameters[i].trim());
+                if (values[i] < 0) {
+                    throw new IllegalArgumentException("Negative parameter in distribution " + spec);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid distribution " + spec, e);
+        }
+        switch (spec.substring(0, colon).trim().toLowerCase(Locale.ROOT)) {
+            case "fixed":
+                check(spec, values, 1);
+                return new Distribution(Kind.FIXED, values[0], 0, spec);
+            case "uniform":
+                check(spec, values, 2);
+                if (values[1] < values[0]) {
+                    throw new IllegalArgumentException("Invalid distribution " + spec + ", max is below min");
+                }
+                return new Distribution(Kind.UNIFORM, values[0], values[1], spec);
+            case "exp":
+                check(spec, values, 1);
+                return new Distribution(Kind.EXP, values[0], 0, spec);
+            case "lognormal":
+                check(spec, values, 2);
+                if (values[0] == 0) {
+                    throw new IllegalArgumentException("Invalid distribution " + spec + ", mean must be positive");
+                }
+                // mu choisi pour que la moyenne soit a : E = exp(mu + sigma² / 2)
+                return new Distribution(Kind.LOGNORMAL, Math.log(values[0]) - values[1] * values[1] / 2, values[1], spec);
+            default:
+                throw new IllegalArgumentException("Unknown distribution " + spec);
+        }
+    }
+
+    private static void check(String spec, double[] values, int expected) {
+        if (values.length != expected) {
+            throw new IllegalArgumentException("Invalid distribution " + spec + ", expected " + expected + " parameter(s)");
+        }
+    }
+
+    public double mean() {
+        switch (kind) {
+            case UNIFORM:
+                return (a + b) / 2;
+            case LOGNORMAL:
+                return Math.exp(a + b * b / 2);
+            default:
+                return a;
+        }
+    }
+
+    public double sample(Random random) {
+        switch (kind) {
+            case UNIFORM:
+                return a + (b - a) * random.nextDouble();
+            case EXP:
+                return -a * Math.log(1 - random.nextDouble());
+            case LOGNORMAL:
+                return Math.exp(a + b * random.nextGaussian());
+            default:
+                return a;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,254 @@
+package com.parkit.parkingsystem.util;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.GateEvent;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * Parses the event logs of the plate-recognition cameras, one event per line, in either format:
+ * <pre>
+ * time,event,plate,type
+ * 2024-03-04T08:15:30,ENTER,AB123CD,CAR
+ * {"time":"2024-03-04T08:15:30","event":"EXIT","plate":"AB123CD"}
+ * </pre>
+ * The time is an ISO local date-time (seconds and fraction optional, Z or +HH:MM accepted) or epoch milliseconds;
+ * the event is ENTER or EXIT; the type, CAR or BIKE, is required for entries only.
+ *
+ * <p>Fields are cut by scanning characters, with no regular expression, split() or JSON tree, so that a line
+ * costs its plate String and little else.
+ */
+public class GateEventParser {
+
+    static final int MAX_PLATE_LENGTH = 10;
+
+    private final ZoneRules zoneRules;
+
+    public GateEventParser(ZoneId zone) {
+        this.zoneRules = zone.getRules();
+    }
+
+    /**
+     * @return false for a blank line, a # comment or a CSV header, which carry no event
+     * @throws IllegalArgumentException if the line is not a valid event
+     */
+    public boolean parse(String line, GateEvent event) {
+        int start = skipSpaces(line, 0, line.length());
+        if (start == line.length() || line.charAt(start) == '#') {
+            return false;
+        }
+        if (line.charAt(start) == '{') {
+            parseJson(line, start, event);
+            return true;
+        }
+        return parseCsv(line, start, event);
+    }
+
+    private boolean parseCsv(String line, int start, GateEvent event) {
+        int end = line.length();
+        int comma1 = line.indexOf(',', start);
+        if (comma1 < 0) {
+            throw new IllegalArgumentException("Expected time,event,plate[,type]: " + line);
+        }
+        if (line.regionMatches(true, start, "time", 0, 4) && trimEnd(line, start, comma1) == start + 4) {
+            return false;
+        }
+        int comma2 = line.indexOf(',', comma1 + 1);
+        if (comma2 < 0) {
+            throw new IllegalArgumentException("Expected time,event,plate[,type]: " + line);
+        }
+        int comma3 = line.indexOf(',', comma2 + 1);
+        int plateEnd = comma3 < 0 ? end : comma3;
+        event.setTimeMillis(parseTime(line, start, comma1));
+        event.setEntry(parseEntry(line, comma1 + 1, comma2));
+        event.setVehicleRegNumber(parsePlate(line, comma2 + 1, plateEnd));
+        event.setParkingType(comma3 < 0 ? null : parseType(line, comma3 + 1, end));
+        checkType(event, line);
+        return true;
+    }
+
+    private void parseJson(String line, int start, GateEvent event) {
+        int end = line.lastIndexOf('}');
+        if (end < start) {
+            throw new IllegalArgumentException("Unterminated JSON object: " + line);
+        }
+        int[] value = new int[2];
+        if (!jsonValue(line, start, end, "\"time\"", value)) {
+            throw new IllegalArgumentException("Missing time: " + line);
+        }
+        event.setTimeMillis(parseTime(line, value[0], value[1]));
+        if (!jsonValue(line, start, end, "\"event\"", value)) {
+            throw new IllegalArgumentException("Missing event: " + line);
+        }
+        event.setEntry(parseEntry(line, value[0], value[1]));
+        if (!jsonValue(line, start, end, "\"plate\"", value)) {
+            throw new IllegalArgumentException("Missing plate: " + line);
+        }
+        event.setVehicleRegNumber(parsePlate(line, value[0], value[1]));
+        event.setParkingType(jsonValue(line, start, end, "\"type\"", value) ? parseType(line, value[0], value[1]) : null);
+        checkType(event, line);
+    }
+
+    /**
+     * Finds the value of the key and stores its bounds, quotes excluded, in bounds.
+     */
+    private static boolean jsonValue(String line, int start, int end, String key, int[] bounds) {
+        int i = line.indexOf(key, start);
+        if (i < 0 || i >= end) {
+            return false;
+        }
+        i = skipSpaces(line, i + key.length(), end);
+        if (i == end || line.charAt(i) != ':') {
+            throw new IllegalArgumentException("Expected : after " + key + ": " + line);
+        }
+        i = skipSpaces(line, i + 1, end);
+        if (i < end && line.charAt(i) == '"') {
+            int close = line.indexOf('"', i + 1);
+            if (close < 0 || close > end || line.lastIndexOf('\\', close) > i) {
+                throw new IllegalArgumentException("Invalid string for " + key + ": " + line);
+            }
+            bounds[0] = i + 1;
+            bounds[1] = close;
+            return true;
+        }
+        int valueEnd = i;
+        while (valueEnd < end && line.charAt(valueEnd) != ',') {
+            valueEnd++;
+        }
+        bounds[0] = i;
+        bounds[1] = valueEnd;
+        return true;
+    }
+
+    private static void checkType(GateEvent event, String line) {
+        if (event.isEntry() && event.getParkingType() == null) {
+            throw new IllegalArgumentException("Missing vehicle type for an entry: " + line);
+        }
+    }
+
+    private static boolean parseEntry(String line, int start, int end) {
+        start = skipSpaces(line, start, end);
+        end = trimEnd(line, start, end);
+        if (end - start == 5 && line.regionMatches(true, start, "ENTER", 0, 5)) {
+            return true;
+        }
+        if (end - start == 4 && line.regionMatches(true, start, "EXIT", 0, 4)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unknown event " + line.substring(start, end));
+    }
+
+    private static String parsePlate(String line, int start, int end) {
+        start = skipSpaces(line, start, end);
+        end = trimEnd(line, start, end);
+        if (end == start || end - start > MAX_PLATE_LENGTH) {
+            throw new IllegalArgumentException("Invalid registration number: " + line);
+        }
+        return line.substring(start, end);
+    }
+
+    private static ParkingType parseType(String line, int start, int end) {
+        start = skipSpaces(line, start, end);
+        end = trimEnd(line, start, end);
+        for (ParkingType parkingType : ParkingType.values()) {
+            String name = parkingType.name();
+            if (end - start == name.length() && line.regionMatches(true, start, name, 0, name.length())) {
+                return parkingType;
+            }
+        }
+        throw new IllegalArgumentException("Unknown vehicle type " + line.substring(start, end));
+    }
+
+    private long parseTime(String line, int start, int end) {
+        start = skipSpaces(line, start, end);
+        end = trimEnd(line, start, end);
+        if (end - start < 16 || line.charAt(start + 4) != '-') {
+            return number(line, start, end);
+        }
+        // AAAA-MM-JJTHH:MM[:SS[.fff]][Z|±HH:MM]
+        int year = digits(line, start, start + 4);
+        int month = digits(line, start + 5, start + 7);
+        int day = digits(line, start + 8, start + 10);
+        char separator = line.charAt(start + 10);
+        if (line.charAt(start + 7) != '-' || (separator != 'T' && separator != ' ') || line.charAt(start + 13) != ':') {
+            throw new IllegalArgumentException("Invalid time " + line.substring(start, end));
+        }
+        int hour = digits(line, start + 11, start + 13);
+        int minute = digits(line, start + 14, start + 16);
+        int second = 0;
+        int millis = 0;
+        int i = start + 16;
+        if (i < end && line.charAt(i) == ':') {
+            second = digits(line, i + 1, i + 3);
+            i += 3;
+            if (i < end && line.charAt(i) == '.') {
+                int fractionEnd = i + 1;
+                while (fractionEnd < end && Character.isDigit(line.charAt(fractionEnd))) {
+                    fractionEnd++;
+                }
+                // millisecondes : trois premiers chiffres de la fraction
+                for (int digit = 0; digit < 3; digit++) {
+                    millis = millis * 10 + (i + 1 + digit < fractionEnd ? line.charAt(i + 1 + digit) - '0' : 0);
+                }
+                i = fractionEnd;
+            }
+        }
+        LocalDateTime dateTime;
+        try {
+            dateTime = LocalDateTime.of(year, month, day, hour, minute, second);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid time " + line.substring(start, end), e);
+        }
+        ZoneOffset offset;
+        if (i == end) {
+            offset = zoneRules.getOffset(dateTime);
+        } else if (line.charAt(i) == 'Z' && i + 1 == end) {
+            offset = ZoneOffset.UTC;
+        } else if ((line.charAt(i) == '+' || line.charAt(i) == '-') && end - i == 6 && line.charAt(i + 3) == ':') {
+            int seconds = digits(line, i + 1, i + 3) * 3600 + digits(line, i + 4, i + 6) * 60;
+            offset = ZoneOffset.ofTotalSeconds(line.charAt(i) == '-' ? -seconds : seconds);
+        } else {
+            throw new IllegalArgumentException("Invalid time " + line.substring(start, end));
+        }
+        return dateTime.toEpochSecond(offset) * 1000 + millis;
+    }
+
+    private static int digits(String line, int start, int end) {
+        if (end - start > 9) {
+            throw new IllegalArgumentException("Invalid number in " + line);
+        }
+        return (int) number(line, start, end);
+    }
+
+    private static long number(String line, int start, int end) {
+        if (end > line.length() || end <= start || end - start > 18) {
+            throw new IllegalArgumentException("Invalid number in " + line);
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Invalid number in " + line);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int skipSpaces(String line, int start, int end) {
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(String line, int start, int end) {
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+}
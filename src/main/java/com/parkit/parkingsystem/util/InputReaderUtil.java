@@ -3,12 +3,23 @@ package com.parkit.parkingsystem.util;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.InputStream;
 import java.util.Scanner;
 
 public class InputReaderUtil {
 
-    private static Scanner scan = new Scanner(System.in);
-    private static final Logger logger = LogManager.getLogger("InputReaderUtil");
+    private static final Logger logger = LogManager.getLogger(InputReaderUtil.class);
+
+    // Un Scanner n'est pas thread-safe : chaque lecteur a le sien
+    private final Scanner scan;
+
+    public InputReaderUtil() {
+        this(System.in);
+    }
+
+    public InputReaderUtil(InputStream input) {
+        this.scan = new Scanner(input);
+    }
 
     public int readSelection() {
         try {
@@ -0,0 +1,59 @@
+package com.parkit.parkingsystem.util;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link OperationTimer} per DAO and service operation, named "Class.method" and published as the MBean
+ * com.parkit.parkingsystem:type=Operation,name=Class.method unless -Dparkit.metrics.jmx=false.
+ * The statistics cover intervals of -Dparkit.metrics.intervalSeconds (10 by default).
+ */
+public class OperationMetrics {
+
+    private static final Logger logger = LogManager.getLogger(OperationMetrics.class);
+
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("parkit.metrics.intervalSeconds", 10));
+    private static final boolean JMX = !"false".equalsIgnoreCase(System.getProperty("parkit.metrics.jmx"));
+
+    private static final ConcurrentMap<String, OperationTimer> timers = new ConcurrentHashMap<>();
+
+    private OperationMetrics() {
+    }
+
+    /**
+     * @return the timer of this operation, created and registered on first use
+     */
+    public static OperationTimer timer(String name) {
+        return timers.computeIfAbsent(name, OperationMetrics::register);
+    }
+
+    public static Collection<OperationTimer> timers() {
+        return Collections.unmodifiableCollection(timers.values());
+    }
+
+    private static OperationTimer register(String name) {
+        OperationTimer timer = new OperationTimer(name, INTERVAL_NANOS);
+        if (JMX) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = new ObjectName("com.parkit.parkingsystem:type=Operation,name=" + name);
+                if (!server.isRegistered(objectName)) {
+                    server.registerMBean(timer, objectName);
+                }
+            } catch (JMException e) {
+                logger.error("Unable to publish the metrics of " + name, e);
+            }
+        }
+        return timer;
+    }
+}
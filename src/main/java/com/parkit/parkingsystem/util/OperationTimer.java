@@ -0,0 +1,122 @@
+package com.parkit.parkingsystem.util;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and error count of one operation. Recording goes to an HdrHistogram {@link Recorder}:
+ * a wait-free write into the active histogram, with no lock and no allocation, so timing costs two
+ * System.nanoTime() calls and a few tens of nanoseconds. Readers swap the active histogram for an empty one
+ * at most once per interval and compute the statistics, the total count included, on the histogram they took out.
+ */
+public class OperationTimer implements OperationTimerMBean {
+
+    private static final double NANOS_PER_MICRO = 1000.0;
+
+    private final String name;
+    private final long intervalNanos;
+    private final Recorder recorder = new Recorder(3);
+    private final LongAdder errors = new LongAdder();
+
+    // intervalle terminé, lu par JMX
+    private Histogram interval;
+    private long intervalStart = System.nanoTime();
+    private double throughputPerSecond;
+    // opérations des intervalles terminés
+    private long count;
+
+    public OperationTimer(String name, long intervalNanos) {
+        this.name = name;
+        this.intervalNanos = intervalNanos;
+        this.interval = recorder.getIntervalHistogram();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the latency of an operation started at startNanos, as returned by {@link #start()}.
+     */
+    public void stop(long startNanos) {
+        recorder.recordValue(Math.max(0, System.nanoTime() - startNanos));
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    private synchronized Histogram snapshot() {
+        if (System.nanoTime() - intervalStart >= intervalNanos) {
+            refresh();
+        }
+        return interval;
+    }
+
+    @Override
+    public synchronized void refresh() {
+        long now = System.nanoTime();
+        long elapsed = now - intervalStart;
+        interval = recorder.getIntervalHistogram(interval);
+        count += interval.getTotalCount();
+        throughputPerSecond = elapsed > 0 ? interval.getTotalCount() * 1e9 / elapsed : 0;
+        intervalStart = now;
+    }
+
+    @Override
+    public synchronized long getCount() {
+        snapshot();
+        return count;
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public synchronized long getIntervalCount() {
+        return snapshot().getTotalCount();
+    }
+
+    @Override
+    public synchronized double getThroughputPerSecond() {
+        snapshot();
+        return throughputPerSecond;
+    }
+
+    @Override
+    public synchronized double getMeanMicros() {
+        return snapshot().getMean() / NANOS_PER_MICRO;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentileMicros(50);
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentileMicros(99);
+    }
+
+    @Override
+    public double getP999Micros() {
+        return percentileMicros(99.9);
+    }
+
+    @Override
+    public synchronized double getMaxMicros() {
+        return snapshot().getMaxValue() / NANOS_PER_MICRO;
+    }
+
+    private synchronized double percentileMicros(double percentile) {
+        return snapshot().getValueAtPercentile(percentile) / NANOS_PER_MICRO;
+    }
+}
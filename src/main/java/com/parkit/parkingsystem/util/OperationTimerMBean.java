@@ -0,0 +1,32 @@
+package com.parkit.parkingsystem.util;
+
+/**
+ * JMX view of an {@link OperationTimer}. Percentiles, mean, max and throughput describe the last completed
+ * interval, see {@link OperationMetrics}; counts are since startup, up to the end of that interval for Count.
+ * Latencies are in microseconds.
+ */
+public interface OperationTimerMBean {
+
+    long getCount();
+
+    long getErrors();
+
+    long getIntervalCount();
+
+    double getThroughputPerSecond();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    /**
+     * Ends the current interval now instead of waiting for its end.
+     */
+    void refresh();
+}
@@ -0,0 +1,47 @@
+package com.parkit.parkingsystem.util;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * Console input given by a program instead of a keyboard, to drive the interactive flows of ParkingService
+ * without a terminal. Each call to {@link #script} sets the answers of the next flow: the menu selection and
+ * the registration number. Like {@link InputReaderUtil}, one reader serves one gate.
+ */
+public class ScriptedInputReader extends InputReaderUtil {
+
+    private int selection;
+    private String vehicleRegNumber;
+    private boolean vehicleRegNumberRead;
+
+    public ScriptedInputReader() {
+        super(new ByteArrayInputStream(new byte[0]));
+    }
+
+    public void script(int selection, String vehicleRegNumber) {
+        this.selection = selection;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.vehicleRegNumberRead = false;
+    }
+
+    /**
+     * @return true if the flow asked for the registration number since the last {@link #script};
+     * the entry flow does not ask for it when no spot is available
+     */
+    public boolean isVehicleRegNumberRead() {
+        return vehicleRegNumberRead;
+    }
+
+    @Override
+    public int readSelection() {
+        return selection;
+    }
+
+    @Override
+    public String readVehicleRegistrationNumber() {
+        if (vehicleRegNumber == null || vehicleRegNumber.trim().isEmpty()) {
+            throw new IllegalArgumentException("Invalid input provided");
+        }
+        vehicleRegNumberRead = true;
+        return vehicleRegNumber;
+    }
+}
@@ -0,0 +1,6 @@
+-- Ticket ouvert d'un véhicule (GET_TICKET) et nombre de tickets par véhicule (COUNT_TICKETS) :
+-- l'index couvre toutes les colonnes lues dans ticket, l'ID étant porté par la clé primaire
+create index IDX_TICKET_VEHICLE_OPEN on ticket(VEHICLE_REG_NUMBER, OUT_TIME, IN_TIME, PARKING_NUMBER, PRICE);
+
+-- Plus petite place libre d'un type (GET_NEXT_PARKING_SPOT)
+create index IDX_PARKING_FREE on parking(TYPE, AVAILABLE, PARKING_NUMBER);
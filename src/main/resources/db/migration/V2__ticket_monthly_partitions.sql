@@ -0,0 +1,7 @@
+-- MySQL uniquement, appliquée avec -Dparkit.db.partitionTickets=true.
+-- Une table partitionnée ne peut pas avoir de clé étrangère et la colonne de partitionnement
+-- doit faire partie de la clé primaire.
+alter table ticket drop foreign key ticket_ibfk_1;
+alter table ticket drop primary key, add primary key (ID, IN_TIME);
+-- Les partitions mensuelles sont ensuite découpées dans P_FUTURE par SchemaMigrator.addMonthlyPartitions
+alter table ticket partition by range columns(IN_TIME) (partition P_FUTURE values less than (MAXVALUE));
@@ -0,0 +1,3 @@
+-- Tickets fermés sur une période (GET_CLOSED_TICKETS, règlement de fin de journée) :
+-- parcours de l'index dans l'ordre de sortie, sans lire la table pour le prix et les horaires
+create index IDX_TICKET_OUT_TIME on ticket(OUT_TIME, IN_TIME, PRICE, PARKING_NUMBER);
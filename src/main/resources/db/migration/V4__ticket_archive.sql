@@ -0,0 +1,8 @@
+-- Tickets fermés depuis plus longtemps que la rétention, déplacés par TicketArchiver.
+-- Le type de place est recopié : l'archive se lit sans jointure, même si la place a disparu depuis.
+create table if not exists ticket_archive(ID int PRIMARY KEY, PARKING_NUMBER int NOT NULL, TYPE varchar(10) NOT NULL, VEHICLE_REG_NUMBER varchar(10) NOT NULL, PRICE double, IN_TIME DATETIME NOT NULL, OUT_TIME DATETIME NOT NULL);
+-- Dernier ticket archivé d'un véhicule (GET_LAST_ARCHIVED_TICKET) et règlement d'une période archivée
+create index IDX_TICKET_ARCHIVE_VEHICLE on ticket_archive(VEHICLE_REG_NUMBER, OUT_TIME);
+create index IDX_TICKET_ARCHIVE_OUT_TIME on ticket_archive(OUT_TIME, IN_TIME, PRICE, TYPE);
+-- Nombre de tickets archivés par véhicule : COUNT_TICKETS y ajoute les tickets encore dans ticket
+create table if not exists vehicle_visit_summary(VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY, ARCHIVED_TICKETS int NOT NULL);
@@ -0,0 +1,162 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.BatchIngestionService;
+import com.parkit.parkingsystem.service.IngestionReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class BatchIngestionServiceTest {
+
+    private DataBaseConfig dataBaseConfig;
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        dataBaseConfig = new EmbeddedDataBaseConfig("jdbc:h2:mem:ingestion;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        assertTrue(new SchemaMigrator(dataBaseConfig, false).migrate());
+        execute("delete from ticket");
+        execute("update parking set AVAILABLE = true");
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        assertTrue(parkingSpotDAO.loadAllocator());
+        assertTrue(ticketDAO.loadActiveTickets());
+        assertTrue(ticketDAO.loadVisitCounts());
+    }
+
+    private void execute(String sql) throws Exception {
+        Connection con = dataBaseConfig.getConnection();
+        Statement statement = con.createStatement();
+        statement.execute(sql);
+        statement.close();
+        con.close();
+    }
+
+    private String query(String sql) throws Exception {
+        Connection con = dataBaseConfig.getConnection();
+        Statement statement = con.createStatement();
+        ResultSet rs = statement.executeQuery(sql);
+        StringBuilder result = new StringBuilder();
+        while (rs.next()) {
+            for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+                result.append(i > 1 ? "," : "").append(rs.getString(i));
+            }
+            result.append(';');
+        }
+        statement.close();
+        con.close();
+        return result.toString();
+    }
+
+    private BatchIngestionService service(int batchSize) {
+        return new BatchIngestionService(parkingSpotDAO, ticketDAO, new ParkingTransactionDAO(parkingSpotDAO, ticketDAO),
+                batchSize, ZoneId.systemDefault());
+    }
+
+    @Test
+    public void replaysEntriesAndExitsAcrossBatches() throws Exception {
+        String events = String.join("\n",
+                "time,event,plate,type",
+                "2024-03-04T08:00:00,ENTER,CAR1,CAR",
+                "2024-03-04T08:05:00,ENTER,BIKE1,BIKE",
+                "2024-03-04T08:10:00,ENTER,CAR1,CAR",
+                "2024-03-04T09:00:00,EXIT,CAR1",
+                "2024-03-04T09:05:00,EXIT,GHOST",
+                "2024-03-04T09:10:00,ENTER,CAR1,CAR",
+                "not an event",
+                "{\"time\":\"2024-03-04T10:10:00\",\"event\":\"EXIT\",\"plate\":\"CAR1\"}",
+                "2024-03-04T10:05:00,EXIT,BIKE1");
+
+        // lots de 3 événements : les sorties de CAR1 et BIKE1 ferment des tickets insérés dans un lot précédent
+        IngestionReport report = service(3).ingest(new StringReader(events));
+
+        assertEquals(10, report.getLines());
+        assertEquals(8, report.getEvents());
+        assertEquals(3, report.getEntries());
+        assertEquals(3, report.getExits());
+        assertEquals(1, report.getDuplicateEntries());
+        assertEquals(1, report.getUnmatchedExits());
+        assertEquals(1, report.getInvalidLines());
+        assertEquals(0, report.getFailedEvents());
+        // deuxième visite de CAR1 : remise de 5 %
+        assertEquals("CAR1,150,2024-03-04 08:00:00,2024-03-04 09:00:00;"
+                        + "BIKE1,200,2024-03-04 08:05:00,2024-03-04 10:05:00;"
+                        + "CAR1,142,2024-03-04 09:10:00,2024-03-04 10:10:00;",
+                query("select VEHICLE_REG_NUMBER, cast(round(PRICE * 100) as int), FORMATDATETIME(IN_TIME, 'yyyy-MM-dd HH:mm:ss'), "
+                        + "FORMATDATETIME(OUT_TIME, 'yyyy-MM-dd HH:mm:ss') from ticket order by ID"));
+        assertEquals("0;", query("select count(*) from parking where AVAILABLE = false"));
+        assertEquals(0, ticketDAO.activeTicketCache.size());
+        assertEquals(2, ticketDAO.visitCounter.get("CAR1"));
+        assertEquals(3, parkingSpotDAO.allocator.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void entryAndExitInTheSameBatchAreWrittenAsOneClosedTicket() throws Exception {
+        String events = String.join("\n",
+                "2024-03-04T08:00:00,ENTER,A,CAR",
+                "2024-03-04T08:01:00,ENTER,B,CAR",
+                "2024-03-04T08:02:00,ENTER,C,CAR",
+                "2024-03-04T08:03:00,ENTER,D,CAR",
+                "2024-03-04T08:20:00,EXIT,A",
+                "2024-03-04T08:21:00,ENTER,D,CAR");
+
+        IngestionReport report = service(1000).ingest(new StringReader(events));
+
+        assertEquals(1, report.getBatches());
+        assertEquals(1, report.getLotFull());
+        assertEquals(4, report.getEntries());
+        // D prend la place libérée par A dans le même lot
+        assertEquals("A,1,0.0,TRUE;B,2,0.0,FALSE;C,3,0.0,FALSE;D,1,0.0,FALSE;",
+                query("select VEHICLE_REG_NUMBER, PARKING_NUMBER, PRICE, OUT_TIME is not null from ticket order by ID"));
+        assertEquals("1,FALSE;2,FALSE;3,FALSE;", query("select PARKING_NUMBER, AVAILABLE from parking where TYPE = 'CAR' order by 1"));
+        assertEquals(3, ticketDAO.activeTicketCache.size());
+        assertNotEquals(0, ticketDAO.getTicket("D").getId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void failedBatchIsCountedAndMemoryReloaded() throws Exception {
+        ParkingTransactionDAO failing = spy(new ParkingTransactionDAO(parkingSpotDAO, ticketDAO));
+        doReturn(false).doCallRealMethod().when(failing)
+                .applyBatch(any(List.class), any(List.class), any(Collection.class));
+        BatchIngestionService service = new BatchIngestionService(parkingSpotDAO, ticketDAO, failing, 2, ZoneId.systemDefault());
+        String events = String.join("\n",
+                "2024-03-04T08:00:00,ENTER,A,CAR",
+                "2024-03-04T08:01:00,ENTER,B,CAR",
+                "2024-03-04T08:02:00,ENTER,C,CAR");
+
+        IngestionReport report = service.ingest(new StringReader(events));
+
+        assertEquals(2, report.getFailedEvents());
+        assertEquals(1, report.getEntries());
+        // les places de A et B, prises en mémoire par le lot en échec, sont de nouveau libres
+        assertEquals("C,1;", query("select VEHICLE_REG_NUMBER, PARKING_NUMBER from ticket"));
+        assertEquals(2, parkingSpotDAO.allocator.countAvailable(ParkingType.CAR));
+        assertNull(ticketDAO.activeTicketCache.get("A"));
+        assertFalse(parkingSpotDAO.allocator.isAvailable(1, ParkingType.CAR));
+        Ticket ticket = ticketDAO.getTicket("C");
+        assertNotEquals(0, ticket.getId());
+    }
+}
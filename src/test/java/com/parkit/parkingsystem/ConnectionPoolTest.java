@@ -0,0 +1,229 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.PoolSettings;
+import com.parkit.parkingsystem.config.PoolStats;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConnectionPoolTest {
+
+    private final List<Connection> opened = new ArrayList<>();
+    private final List<PreparedStatement> prepared = new ArrayList<>();
+    private ConnectionPool pool;
+
+    private ConnectionPool newPool(PoolSettings settings) {
+        pool = new ConnectionPool("test", () -> {
+            Connection connection = mock(Connection.class);
+            opened.add(connection);
+            when(connection.getAutoCommit()).thenReturn(true);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            when(connection.prepareStatement(anyString())).thenAnswer(invocation -> {
+                PreparedStatement ps = mock(PreparedStatement.class);
+                prepared.add(ps);
+                return ps;
+            });
+            return connection;
+        }, settings);
+        return pool;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void closedConnectionIsReusedInsteadOfReopened() throws Exception {
+        newPool(new PoolSettings().setMaxSize(2));
+
+        pool.borrow().close();
+        pool.borrow().close();
+
+        assertEquals(1, opened.size());
+        PoolStats stats = pool.getStats();
+        assertEquals(0, stats.getActive());
+        assertEquals(1, stats.getIdle());
+        assertEquals(2, stats.getBorrowCount());
+    }
+
+    @Test
+    public void borrowTimesOutWhenPoolIsExhausted() throws Exception {
+        newPool(new PoolSettings().setMaxSize(1).setBorrowTimeoutMillis(50));
+
+        Connection held = pool.borrow();
+
+        assertThrows(SQLTimeoutException.class, () -> pool.borrow());
+        assertEquals(1, pool.getStats().getTimeoutCount());
+        held.close();
+        assertNotNull(pool.borrow());
+    }
+
+    @Test
+    public void waiterGetsConnectionReturnedByAnotherThread() throws Exception {
+        newPool(new PoolSettings().setMaxSize(1).setBorrowTimeoutMillis(2_000));
+        Connection held = pool.borrow();
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+                held.close();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        releaser.start();
+
+        Connection connection = pool.borrow();
+        releaser.join();
+
+        assertNotNull(connection);
+        assertEquals(1, opened.size());
+        assertTrue(pool.getStats().getMaxWaitNanos() > 0);
+    }
+
+    @Test
+    public void returnedHandleCannotBeUsedAnymore() throws Exception {
+        newPool(new PoolSettings());
+        Connection connection = pool.borrow();
+        connection.close();
+
+        assertTrue(connection.isClosed());
+        assertThrows(SQLException.class, () -> connection.prepareStatement("select 1"));
+    }
+
+    @Test
+    public void statementLeftOpenIsClosedAndCountedOnRelease() throws Exception {
+        newPool(new PoolSettings());
+        Connection connection = pool.borrow();
+        PreparedStatement ps = connection.prepareStatement("select 1");
+
+        connection.close();
+
+        assertTrue(ps.isClosed());
+        assertEquals(1, pool.getStats().getLeakedStatements());
+    }
+
+    @Test
+    public void preparedStatementIsReusedAcrossBorrows() throws Exception {
+        newPool(new PoolSettings().setMaxSize(1));
+
+        Connection connection = pool.borrow();
+        PreparedStatement first = connection.prepareStatement(DBConstants.COUNT_TICKETS);
+        first.setString(1, "ABCDEF");
+        first.close();
+        connection.close();
+        connection = pool.borrow();
+        connection.prepareStatement(DBConstants.COUNT_TICKETS).close();
+        connection.close();
+
+        verify(opened.get(0), times(1)).prepareStatement(DBConstants.COUNT_TICKETS);
+        assertEquals(1, pool.getStats().getStatementCacheHits());
+        assertEquals(1, pool.getStats().getStatementCacheMisses());
+        assertEquals(0, pool.getStats().getLeakedStatements());
+    }
+
+    @Test
+    public void settingsOfABorrowerAreRestoredBeforeTheNextOne() throws Exception {
+        newPool(new PoolSettings().setMaxSize(1));
+
+        Connection connection = pool.borrow();
+        PreparedStatement first = connection.prepareStatement(DBConstants.GET_CLOSED_TICKETS);
+        first.setFetchSize(500);
+        first.setQueryTimeout(30);
+        first.close();
+        connection.close();
+        connection = pool.borrow();
+        connection.prepareStatement(DBConstants.GET_CLOSED_TICKETS).close();
+        connection.close();
+
+        verify(opened.get(0), times(1)).prepareStatement(DBConstants.GET_CLOSED_TICKETS);
+        PreparedStatement raw = prepared.get(0);
+        // les mocks renvoient 0 : c'est la valeur d'origine remise en place
+        verify(raw).setFetchSize(0);
+        verify(raw).setQueryTimeout(0);
+        verify(raw, never()).close();
+    }
+
+    @Test
+    public void statementWithAChangedCursorNameIsNotKept() throws Exception {
+        newPool(new PoolSettings().setMaxSize(1));
+
+        Connection connection = pool.borrow();
+        PreparedStatement first = connection.prepareStatement(DBConstants.GET_TICKET);
+        first.setCursorName("GATE");
+        first.close();
+        connection.prepareStatement(DBConstants.GET_TICKET).close();
+        connection.close();
+
+        verify(opened.get(0), times(2)).prepareStatement(DBConstants.GET_TICKET);
+    }
+
+    @Test
+    public void statementAlreadyInUseIsPreparedAgain() throws Exception {
+        newPool(new PoolSettings());
+
+        Connection connection = pool.borrow();
+        PreparedStatement first = connection.prepareStatement(DBConstants.GET_TICKET);
+        PreparedStatement second = connection.prepareStatement(DBConstants.GET_TICKET);
+        first.close();
+        second.close();
+        connection.close();
+
+        assertNotSame(first, second);
+        verify(opened.get(0), times(2)).prepareStatement(DBConstants.GET_TICKET);
+        assertEquals(2, pool.getStats().getStatementCacheMisses());
+    }
+
+    @Test
+    public void statementCacheCanBeDisabled() throws Exception {
+        newPool(new PoolSettings().setStatementCacheSize(0));
+
+        for (int i = 0; i < 2; i++) {
+            Connection connection = pool.borrow();
+            connection.prepareStatement(DBConstants.GET_TICKET).close();
+            connection.close();
+        }
+
+        verify(opened.get(0), times(2)).prepareStatement(DBConstants.GET_TICKET);
+        assertEquals(0, pool.getStats().getStatementCacheHits());
+    }
+
+    @Test
+    public void invalidIdleConnectionIsReplaced() throws Exception {
+        newPool(new PoolSettings().setValidationIntervalMillis(0));
+        pool.borrow().close();
+        Connection raw = opened.get(0);
+        when(raw.isValid(anyInt())).thenReturn(false);
+
+        pool.borrow();
+
+        assertEquals(2, opened.size());
+        verify(raw, times(1)).close();
+    }
+
+    @Test
+    public void connectionHeldTooLongIsReportedAsLeak() throws Exception {
+        newPool(new PoolSettings().setLeakDetectionThresholdMillis(1).setHousekeepingIntervalMillis(20));
+        Connection connection = pool.borrow();
+
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (pool.getStats().getLeakedConnections() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, pool.getStats().getLeakedConnections());
+        connection.close();
+    }
+}
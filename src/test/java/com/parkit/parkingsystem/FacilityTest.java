@@ -0,0 +1,56 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.Facility;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FacilityTest {
+
+    private static Facility open(String facilityId) throws Exception {
+        Facility facility = new Facility(facilityId, new EmbeddedDataBaseConfig(
+                "jdbc:h2:mem:facility-" + facilityId + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"));
+        try (Connection con = facility.getTicketDAO().dataBaseConfig.getConnection();
+             Statement statement = con.createStatement()) {
+            statement.execute("delete from ticket");
+            statement.execute("update parking set AVAILABLE = true");
+        }
+        facility.open();
+        return facility;
+    }
+
+    @Test
+    public void facilitiesHaveTheirOwnSpotsAndTickets() throws Exception {
+        Facility north = open("north");
+        Facility south = open("south");
+        ParkingService northGate = north.newParkingService(null);
+        ParkingService southGate = south.newParkingService(null);
+
+        Ticket northTicket = northGate.enterVehicle(ParkingType.CAR, "AB-123");
+        Ticket southTicket = southGate.enterVehicle(ParkingType.CAR, "CD-456");
+
+        // les numéros de place sont propres à chaque lot
+        assertEquals(1, northTicket.getParkingSpot().getId());
+        assertEquals(1, southTicket.getParkingSpot().getId());
+        assertEquals("north", northTicket.getFacilityId());
+        assertEquals("south", southTicket.getFacilityId());
+        assertNotEquals(northTicket.getParkingSpot(), southTicket.getParkingSpot());
+        assertEquals("north", north.getTicketDAO().getTicket("AB-123").getFacilityId());
+        assertNull(south.getTicketDAO().getTicket("AB-123"));
+        assertEquals(2, north.getParkingSpotDAO().allocator.countAvailable(ParkingType.CAR));
+        assertEquals(2, south.getParkingSpotDAO().allocator.countAvailable(ParkingType.CAR));
+
+        assertNotNull(southGate.exitVehicle("CD-456"));
+        assertEquals(3, south.getParkingSpotDAO().allocator.countAvailable(ParkingType.CAR));
+        assertEquals(2, north.getParkingSpotDAO().allocator.countAvailable(ParkingType.CAR));
+        north.close();
+        south.close();
+    }
+}
@@ -5,6 +5,7 @@ import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.Tariff;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -192,4 +193,19 @@ public class FareCalculatorServiceTest {
 
         assertEquals(Fare.BIKE_RATE_PER_HOUR * 0.95, ticket.getPrice());
     }
+
+    @Test
+    public void calculateFareWithTariffForShortStayWithoutParkingType() {
+        Date inTime = new Date();
+        inTime.setTime(System.currentTimeMillis() - (20 * 60 * 1000)); // 20 min
+        ticket.setInTime(inTime);
+        ticket.setOutTime(new Date());
+
+        fareCalculatorService.calculateFare(ticket, false, Tariff.defaults());
+        assertEquals(0, ticket.getPrice());
+
+        // au-delà du délai de grâce, le type est nécessaire
+        inTime.setTime(System.currentTimeMillis() - (60 * 60 * 1000));
+        assertThrows(IllegalArgumentException.class, () -> fareCalculatorService.calculateFare(ticket, false, Tariff.defaults()));
+    }
 }
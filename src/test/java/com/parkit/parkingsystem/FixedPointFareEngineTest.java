@@ -0,0 +1,90 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.FixedPointFareEngine;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FixedPointFareEngineTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private final FixedPointFareEngine fareEngine = new FixedPointFareEngine();
+
+    @Test
+    public void priceCentsFollowsFareRules() {
+        long now = System.currentTimeMillis();
+
+        assertEquals(150, fareEngine.priceCents(ParkingType.CAR, now - HOUR, now, false));
+        assertEquals(100, fareEngine.priceCents(ParkingType.BIKE, now - HOUR, now, false));
+        // 1,425 arrondi au cent supérieur
+        assertEquals(143, fareEngine.priceCents(ParkingType.CAR, now - HOUR, now, true));
+        assertEquals(95, fareEngine.priceCents(ParkingType.BIKE, now - HOUR, now, true));
+        assertEquals(0, fareEngine.priceCents(ParkingType.CAR, now - HOUR / 2, now, false));
+        assertEquals(75, fareEngine.priceCents(ParkingType.CAR, now - HOUR / 2 - 1, now, false));
+        assertEquals(3600, fareEngine.priceCents(ParkingType.CAR, now - 24 * HOUR, now, false));
+    }
+
+    @Test
+    public void priceCentsRejectsInvalidStays() {
+        long now = System.currentTimeMillis();
+
+        assertThrows(IllegalArgumentException.class, () -> fareEngine.priceCents(ParkingType.CAR, now, now - 1, false));
+        assertThrows(IllegalArgumentException.class, () -> fareEngine.priceCents(null, now - HOUR, now, false));
+    }
+
+    @Test
+    public void priceCentsMatchesFareCalculatorServiceWithinHalfACent() {
+        FareCalculatorService fareCalculatorService = new FareCalculatorService();
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 100_000; i++) {
+            ParkingType parkingType = random.nextBoolean() ? ParkingType.CAR : ParkingType.BIKE;
+            boolean discount = random.nextBoolean();
+            long inMillis = now - (long) (random.nextDouble() * 30 * 24 * HOUR);
+
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+            ticket.setInTime(new Date(inMillis));
+            ticket.setOutTime(new Date(now));
+            fareCalculatorService.calculateFare(ticket, discount);
+
+            long cents = fareEngine.priceCents(parkingType, inMillis, now, discount);
+            assertEquals(ticket.getPrice(), FixedPointFareEngine.toPrice(cents), 0.005 + 1e-9);
+        }
+    }
+
+    @Test
+    public void bulkPricingMatchesSingleStays() {
+        int size = 1_000;
+        ParkingType[] parkingTypes = new ParkingType[size];
+        long[] inMillis = new long[size];
+        long[] outMillis = new long[size];
+        boolean[] discounts = new boolean[size];
+        long[] prices = new long[size];
+        Random random = new Random(7);
+        for (int i = 0; i < size; i++) {
+            parkingTypes[i] = ParkingType.values()[random.nextInt(ParkingType.values().length)];
+            outMillis[i] = 1_700_000_000_000L + random.nextInt(1_000_000);
+            inMillis[i] = outMillis[i] - random.nextInt((int) (10 * HOUR));
+            discounts[i] = random.nextBoolean();
+        }
+
+        long total = fareEngine.priceCents(parkingTypes, inMillis, outMillis, discounts, prices, 0, size);
+
+        long expectedTotal = 0;
+        for (int i = 0; i < size; i++) {
+            long expected = fareEngine.priceCents(parkingTypes[i], inMillis[i], outMillis[i], discounts[i]);
+            assertEquals(expected, prices[i]);
+            expectedTotal += expected;
+        }
+        assertEquals(expectedTotal, total);
+    }
+}
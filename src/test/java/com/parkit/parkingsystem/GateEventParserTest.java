@@ -0,0 +1,88 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.GateEvent;
+import com.parkit.parkingsystem.util.GateEventParser;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GateEventParserTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Paris");
+
+    private final GateEventParser parser = new GateEventParser(ZONE);
+    private final GateEvent event = new GateEvent();
+
+    private static long millis(LocalDateTime dateTime, ZoneId zone) {
+        return dateTime.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void parsesCsvLines() {
+        assertTrue(parser.parse("2024-03-04T08:15:30,ENTER,AB123CD,CAR", event));
+
+        assertEquals(millis(LocalDateTime.of(2024, 3, 4, 8, 15, 30), ZONE), event.getTimeMillis());
+        assertTrue(event.isEntry());
+        assertEquals("AB123CD", event.getVehicleRegNumber());
+        assertEquals(ParkingType.CAR, event.getParkingType());
+
+        assertTrue(parser.parse(" 2024-07-01 18:00:00.25 , exit , XY-987 ", event));
+
+        // heure d'été : le décalage de la zone est celui de la date de l'événement
+        assertEquals(millis(LocalDateTime.of(2024, 7, 1, 18, 0, 0, 250_000_000), ZONE), event.getTimeMillis());
+        assertFalse(event.isEntry());
+        assertEquals("XY-987", event.getVehicleRegNumber());
+        assertNull(event.getParkingType());
+    }
+
+    @Test
+    public void parsesJsonLines() {
+        assertTrue(parser.parse("{\"time\": \"2024-03-04T08:15Z\", \"event\": \"ENTER\", \"plate\": \"AB123CD\", \"type\": \"bike\"}", event));
+
+        assertEquals(millis(LocalDateTime.of(2024, 3, 4, 8, 15), ZoneOffset.UTC), event.getTimeMillis());
+        assertTrue(event.isEntry());
+        assertEquals(ParkingType.BIKE, event.getParkingType());
+
+        assertTrue(parser.parse("{\"plate\":\"AB123CD\",\"time\":1709540130000,\"event\":\"EXIT\"}", event));
+
+        assertEquals(1709540130000L, event.getTimeMillis());
+        assertFalse(event.isEntry());
+        assertEquals("AB123CD", event.getVehicleRegNumber());
+
+        assertTrue(parser.parse("{\"time\":\"2024-03-04T08:15:30+05:30\",\"event\":\"EXIT\",\"plate\":\"A\"}", event));
+
+        assertEquals(millis(LocalDateTime.of(2024, 3, 4, 8, 15, 30), ZoneOffset.ofHoursMinutes(5, 30)), event.getTimeMillis());
+    }
+
+    @Test
+    public void skipsBlankLinesCommentsAndHeader() {
+        assertFalse(parser.parse("", event));
+        assertFalse(parser.parse("   ", event));
+        assertFalse(parser.parse("# export du 4 mars", event));
+        assertFalse(parser.parse("time,event,plate,type", event));
+    }
+
+    @Test
+    public void rejectsInvalidLines() {
+        String[] lines = {
+                "2024-03-04T08:15:30,ENTER,AB123CD",
+                "2024-03-04T08:15:30,PARK,AB123CD,CAR",
+                "2024-03-04T08:15:30,ENTER,AB123CD,TRUCK",
+                "2024-03-04T08:15:30,ENTER,ABCDEFGHIJK,CAR",
+                "2024-03-04T08:15:30,EXIT,",
+                "2024-02-30T08:15:30,EXIT,AB123CD",
+                "yesterday,EXIT,AB123CD",
+                "2024-03-04T08:15:30",
+                "{\"time\":\"2024-03-04T08:15:30\",\"plate\":\"AB123CD\"}",
+                "{\"time\":\"2024-03-04T08:15:30\",\"event\":\"EXIT\",\"plate\":\"AB\\\"1\"}"
+        };
+        for (String line : lines) {
+            assertThrows(IllegalArgumentException.class, () -> parser.parse(line, event), line);
+        }
+    }
+}
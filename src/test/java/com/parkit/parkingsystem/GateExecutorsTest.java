@@ -0,0 +1,59 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.service.GateExecutors;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GateExecutorsTest {
+
+    @Test
+    public void limitNeverRunsMoreTasksThanAllowed() throws Exception {
+        ExecutorService executor = GateExecutors.limit(Executors.newFixedThreadPool(32), 4);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(200);
+        for (int i = 0; i < 200; i++) {
+            executor.execute(() -> {
+                int now = running.incrementAndGet();
+                maxRunning.accumulateAndGet(now, Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(maxRunning.get() <= 4, "max running " + maxRunning.get());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void virtualThreadExecutorMatchesJdkSupport() throws Exception {
+        ExecutorService executor = GateExecutors.newVirtualThreadExecutor();
+        if (!GateExecutors.isVirtualThreadSupported()) {
+            assertNull(executor);
+            return;
+        }
+        assertEquals(Integer.valueOf(42), executor.submit(() -> 42).get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void platformThreadsAreTheDefault() throws Exception {
+        ExecutorService executor = GateExecutors.fromSystemProperties();
+        assertEquals("ok", executor.submit(() -> "ok").get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,211 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.GateJournal;
+import com.parkit.parkingsystem.dao.GateJournal.FsyncPolicy;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GateJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private static Ticket ticket(String vehicleRegNumber, int parkingNumber, ParkingType parkingType) {
+        Ticket ticket = new Ticket();
+        ticket.setId(7);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(1_709_539_200_000L));
+        ticket.setOutTime(new Date(1_709_542_800_000L));
+        ticket.setPrice(1.5);
+        return ticket;
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void operationsWithoutDoneRecordAreFoundAtTheNextStart() throws Exception {
+        GateJournal journal = new GateJournal(directory, 4096, FsyncPolicy.ALWAYS, 0);
+        journal.done(journal.entering(ticket("DONE", 1, ParkingType.CAR)));
+        journal.aborted(journal.entering(ticket("FULL", 3, ParkingType.CAR)));
+        journal.entering(ticket("ENTERING", 2, ParkingType.CAR));
+        long exit = journal.exiting(ticket("EXITING", 4, ParkingType.BIKE));
+        journal.close();
+
+        journal = new GateJournal(directory, 4096, FsyncPolicy.NONE, 0);
+        List<GateJournal.Operation> incomplete = journal.getIncompleteOperations();
+
+        assertEquals(2, incomplete.size());
+        assertTrue(incomplete.get(0).isEntry());
+        assertEquals("ENTERING", incomplete.get(0).getVehicleRegNumber());
+        assertEquals(2, incomplete.get(0).getParkingNumber());
+        assertEquals(1_709_539_200_000L, incomplete.get(0).getTimeMillis());
+        GateJournal.Operation exiting = incomplete.get(1);
+        assertFalse(exiting.isEntry());
+        assertEquals(exit, exiting.getSequence());
+        assertEquals(7, exiting.getTicketId());
+        assertEquals(ParkingType.BIKE, exiting.getParkingType());
+        assertEquals(1_709_542_800_000L, exiting.getTimeMillis());
+        assertEquals(1.5, exiting.getPrice());
+        // la numérotation reprend après le dernier enregistrement
+        assertEquals(exit + 1, journal.entering(ticket("NEXT", 1, ParkingType.CAR)));
+        journal.close();
+    }
+
+    @Test
+    public void tornRecordEndsTheScan() throws Exception {
+        GateJournal journal = new GateJournal(directory, 4096, FsyncPolicy.NONE, 0);
+        journal.entering(ticket("FIRST", 1, ParkingType.CAR));
+        journal.entering(ticket("SECOND", 2, ParkingType.CAR));
+        journal.close();
+        try (Stream<Path> files = Files.list(directory);
+             RandomAccessFile file = new RandomAccessFile(files.findFirst().get().toFile(), "rw")) {
+            // premier enregistrement : 8 octets d'en-tête et 9 + 14 + 5 octets de corps
+            file.seek(36 + 20);
+            file.write(0x7F);
+        }
+
+        journal = new GateJournal(directory, 4096, FsyncPolicy.NONE, 0);
+
+        assertEquals(1, journal.getIncompleteOperations().size());
+        assertEquals("FIRST", journal.getIncompleteOperations().get(0).getVehicleRegNumber());
+        journal.close();
+    }
+
+    @Test
+    public void completedSegmentsAreDeleted() throws Exception {
+        GateJournal journal = new GateJournal(directory, 4096, FsyncPolicy.NONE, 0);
+        long pending = journal.entering(ticket("PENDING", 1, ParkingType.CAR));
+        for (int i = 0; i < 500; i++) {
+            journal.done(journal.entering(ticket("CAR" + i, 2, ParkingType.CAR)));
+        }
+        // l'opération en cours retient son segment et tous les suivants
+        assertTrue(segmentCount() > 5);
+
+        journal.done(pending);
+        journal.done(journal.entering(ticket("LAST", 2, ParkingType.CAR)));
+
+        assertEquals(1, segmentCount());
+        journal.close();
+    }
+
+    private DataBaseConfig dataBase(String name) throws Exception {
+        DataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        assertTrue(new SchemaMigrator(dataBaseConfig, false).migrate());
+        try (Connection con = dataBaseConfig.getConnection(); Statement statement = con.createStatement()) {
+            statement.execute("delete from ticket");
+            statement.execute("update parking set AVAILABLE = true");
+        }
+        return dataBaseConfig;
+    }
+
+    private static String query(DataBaseConfig dataBaseConfig, String sql) throws Exception {
+        StringBuilder rows = new StringBuilder();
+        try (Connection con = dataBaseConfig.getConnection(); Statement statement = con.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            while (rs.next()) {
+                for (int column = 1; column <= rs.getMetaData().getColumnCount(); column++) {
+                    rows.append(column > 1 ? " " : rows.length() > 0 ? ";" : "").append(rs.getString(column));
+                }
+            }
+        }
+        return rows.toString();
+    }
+
+    @Test
+    public void recoveryReplaysOperationsAndReconcilesSpots() throws Exception {
+        DataBaseConfig dataBaseConfig = dataBase("journal");
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        try (Connection con = dataBaseConfig.getConnection(); Statement statement = con.createStatement()) {
+            // place 1 prise sans ticket, place 2 occupée par un ticket ouvert, place 4 encore prise après une sortie
+            statement.execute("update parking set AVAILABLE = false where PARKING_NUMBER in (1, 2, 4)");
+            statement.execute("insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME) values(2, 'PARKED', 0, now())");
+            statement.execute("insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(4, 'EXITING', 1, now(), now())");
+        }
+        GateJournal journal = new GateJournal(directory, 4096, FsyncPolicy.NONE, 0);
+        journal.entering(ticket("ENTERING", 1, ParkingType.CAR));
+        journal.exiting(ticket("EXITING", 4, ParkingType.BIKE));
+        journal.close();
+
+        journal = new GateJournal(directory, 4096, FsyncPolicy.NONE, 0);
+
+        assertEquals(2, journal.recover(parkingSpotDAO, ticketDAO));
+        assertTrue(journal.getIncompleteOperations().isEmpty());
+        journal.close();
+        // l'entrée interrompue a son ticket et garde sa place, la sortie déjà écrite n'est pas refermée
+        assertEquals("1;2", query(dataBaseConfig, "select PARKING_NUMBER from parking where AVAILABLE = false order by PARKING_NUMBER"));
+        assertEquals("ENTERING 1", query(dataBaseConfig, "select VEHICLE_REG_NUMBER, PARKING_NUMBER from ticket where OUT_TIME is null and PARKING_NUMBER = 1"));
+        assertEquals("1.0", query(dataBaseConfig, "select PRICE from ticket where VEHICLE_REG_NUMBER = 'EXITING'"));
+        journal = new GateJournal(directory, 4096, FsyncPolicy.NONE, 0);
+        assertTrue(journal.getIncompleteOperations().isEmpty());
+        journal.close();
+    }
+
+    @Test
+    public void crashBetweenSpotClaimAndTicketInsertIsReplayedOnce() throws Exception {
+        DataBaseConfig dataBaseConfig = dataBase("crash");
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        Ticket crashed = ticket("CRASHED", 3, ParkingType.CAR);
+        crashed.setOutTime(null);
+        Ticket leaving = ticket("LEAVING", 2, ParkingType.CAR);
+        leaving.setId(0);
+        try (Connection con = dataBaseConfig.getConnection(); Statement statement = con.createStatement()) {
+            // la borne a pris la place 3 puis la JVM est morte avant l'insertion du ticket
+            statement.execute("update parking set AVAILABLE = false where PARKING_NUMBER in (2, 3)");
+            // sortie journalisée avant que l'écriture différée n'ait donné son ID au ticket
+            statement.execute("insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME) values(2, 'LEAVING', 0, '2024-03-04 08:00:00')");
+        }
+        GateJournal journal = new GateJournal(directory, 4096, FsyncPolicy.ALWAYS, 0);
+        journal.entering(crashed);
+        journal.exiting(leaving);
+        journal.close();
+
+        journal = new GateJournal(directory, 4096, FsyncPolicy.NONE, 0);
+        List<GateJournal.Operation> incomplete = journal.getIncompleteOperations();
+        GateJournal.Operation entry = incomplete.get(0);
+        GateJournal.Operation exit = incomplete.get(1);
+
+        assertEquals(2, journal.recover(parkingSpotDAO, ticketDAO));
+        journal.close();
+        assertEquals("CRASHED 3", query(dataBaseConfig, "select VEHICLE_REG_NUMBER, PARKING_NUMBER from ticket where OUT_TIME is null"));
+        assertEquals(1_709_539_200_000L, ticketDAO.getTicket("CRASHED").getInTime().getTime());
+        assertEquals("1.5", query(dataBaseConfig, "select PRICE from ticket where VEHICLE_REG_NUMBER = 'LEAVING'"));
+        assertEquals("3", query(dataBaseConfig, "select PARKING_NUMBER from parking where AVAILABLE = false"));
+
+        // un nouveau crash pendant la reprise rejoue les mêmes opérations : rien n'est écrit deux fois
+        assertTrue(ticketDAO.replay(entry));
+        assertTrue(ticketDAO.replay(exit));
+        assertEquals("2", query(dataBaseConfig, "select count(*) from ticket"));
+        assertEquals("1", query(dataBaseConfig, "select count(*) from ticket where OUT_TIME is null"));
+    }
+}
@@ -0,0 +1,205 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.GateServer;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class GateServerTest {
+
+    private ParkingService parkingService;
+    private GateServer gateServer;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        parkingService = mock(ParkingService.class);
+        gateServer = new GateServer(parkingService, new InetSocketAddress("localhost", 0), Executors.newFixedThreadPool(4));
+        gateServer.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        gateServer.close();
+    }
+
+    private Socket connect() throws Exception {
+        Socket socket = new Socket("localhost", gateServer.getPort());
+        socket.setSoTimeout(5_000);
+        return socket;
+    }
+
+    private static Ticket ticket(int id, int parkingNumber, double price) {
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, ParkingType.CAR, false));
+        ticket.setPrice(price);
+        return ticket;
+    }
+
+    @Test
+    public void commandsAreAnsweredInOrder() throws Exception {
+        when(parkingService.enterVehicle(ParkingType.CAR, "AB-123")).thenReturn(ticket(7, 2, 0));
+        when(parkingService.quote("AB-123")).thenReturn(ticket(7, 2, 1.5));
+        when(parkingService.exitVehicle("AB-123")).thenReturn(ticket(7, 2, 1.425));
+        when(parkingService.exitVehicle("UNKNOWN")).thenReturn(null);
+
+        try (Socket socket = connect()) {
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            // toutes les commandes envoyées d'un coup : les réponses doivent revenir dans le même ordre
+            out.print("ENTER car AB-123\nQUOTE AB-123\r\nEXIT AB-123\nEXIT UNKNOWN\nHELLO\nENTER TRUCK XY\n");
+            out.flush();
+
+            assertEquals("OK 2 7", in.readLine());
+            assertEquals("OK 1.50", in.readLine());
+            assertEquals("OK 1.43", in.readLine());
+            assertEquals("NOT_FOUND", in.readLine());
+            assertEquals("ERROR unknown command HELLO", in.readLine());
+            assertTrue(in.readLine().startsWith("ERROR No enum constant"));
+        }
+    }
+
+    @Test
+    public void commandSplitAcrossPacketsIsReassembled() throws Exception {
+        when(parkingService.enterVehicle(ParkingType.BIKE, "AB-123")).thenReturn(null);
+
+        try (Socket socket = connect()) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write("ENTER BI".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            Thread.sleep(50);
+            out.write("KE AB-123\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            assertEquals("FULL", in.readLine());
+        }
+    }
+
+    @Test
+    public void tooLongLineIsRejected() throws Exception {
+        char[] line = new char[300];
+        Arrays.fill(line, 'A');
+
+        try (Socket socket = connect()) {
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.println(new String(line));
+
+            assertEquals("ERROR line too long", in.readLine());
+        }
+    }
+
+    @Test
+    public void tailOfATooLongLineIsNotRunAsACommand() throws Exception {
+        when(parkingService.quote("AB-123")).thenReturn(ticket(7, 2, 1.5));
+        // la ligne remplit exactement le tampon de la borne : sa fin est une commande valide qui doit être ignorée
+        char[] padding = new char[256];
+        Arrays.fill(padding, 'A');
+
+        try (Socket socket = connect()) {
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.print("QUOTE AB-123\n" + new String(padding) + "ENTER CAR TAIL\nQUOTE AB-123\n");
+            out.flush();
+
+            assertEquals("OK 1.50", in.readLine());
+            assertEquals("ERROR line too long", in.readLine());
+            assertEquals("OK 1.50", in.readLine());
+        }
+        verify(parkingService, never()).enterVehicle(any(ParkingType.class), anyString());
+    }
+
+    @Test
+    public void manyGatesAreServedConcurrently() throws Exception {
+        when(parkingService.quote(anyString())).thenAnswer(invocation -> {
+            Thread.sleep(5);
+            return ticket(1, 1, 3.0);
+        });
+        int gates = 100;
+        ExecutorService clients = Executors.newFixedThreadPool(20);
+        try {
+            List<Future<Integer>> answers = new ArrayList<>();
+            for (int gate = 0; gate < gates; gate++) {
+                String plate = "GATE" + gate;
+                answers.add(clients.submit((Callable<Integer>) () -> {
+                    try (Socket socket = connect()) {
+                        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+                        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                        int ok = 0;
+                        for (int i = 0; i < 5; i++) {
+                            out.println("QUOTE " + plate);
+                            if ("OK 3.00".equals(in.readLine())) {
+                                ok++;
+                            }
+                        }
+                        return ok;
+                    }
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> answer : answers) {
+                total += answer.get();
+            }
+            assertEquals(gates * 5, total);
+            verify(parkingService, times(gates * 5)).quote(anyString());
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    public void gatesSelectTheirFacility() throws Exception {
+        ParkingService north = mock(ParkingService.class);
+        ParkingService south = mock(ParkingService.class);
+        when(north.enterVehicle(ParkingType.CAR, "AB-123")).thenReturn(ticket(7, 1, 0));
+        when(south.enterVehicle(ParkingType.CAR, "AB-123")).thenReturn(ticket(3, 1, 0));
+        Map<String, ParkingService> parkingServices = new LinkedHashMap<>();
+        parkingServices.put("north", north);
+        parkingServices.put("south", south);
+        GateServer facilities = new GateServer(parkingServices, new InetSocketAddress("localhost", 0), Executors.newFixedThreadPool(2));
+        facilities.start();
+
+        try (Socket socket = new Socket("localhost", facilities.getPort())) {
+            socket.setSoTimeout(5_000);
+            PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.print("ENTER CAR AB-123\nFACILITY east\nFACILITY south\nENTER CAR AB-123\n");
+            out.flush();
+
+            assertEquals("ERROR no facility selected, send FACILITY id first", in.readLine());
+            assertEquals("ERROR unknown facility east", in.readLine());
+            assertEquals("OK south", in.readLine());
+            assertEquals("OK 1 3", in.readLine());
+        } finally {
+            facilities.close();
+        }
+        verifyNoInteractions(north);
+    }
+}
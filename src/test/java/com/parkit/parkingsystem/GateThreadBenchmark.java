@@ -0,0 +1,149 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.GateExecutors;
+import com.parkit.parkingsystem.service.ParkingService;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares a fixed platform thread pool with virtual threads behind the concurrency limiter, for 1k and 10k
+ * gates arriving at once. Each gate does an entry and an exit against DAOs whose calls hold one of
+ * DB_CONNECTIONS simulated connections for DB_LATENCY_MICROS.
+ *
+ * Run the main method from the test classpath; virtual threads are only measured on JDK 21 or later.
+ */
+public class GateThreadBenchmark {
+
+    private static final int DB_CONNECTIONS = 10;
+    private static final long DB_LATENCY_MICROS = 500;
+    private static final int PLATFORM_THREADS = 200;
+
+    public static void main(String[] args) throws Exception {
+        for (int gates : new int[]{1_000, 10_000}) {
+            run("platform x" + PLATFORM_THREADS, Executors.newFixedThreadPool(PLATFORM_THREADS), gates);
+            ExecutorService virtualThreads = GateExecutors.newVirtualThreadExecutor();
+            if (virtualThreads != null) {
+                run("virtual, limit " + DB_CONNECTIONS, GateExecutors.limit(virtualThreads, DB_CONNECTIONS), gates);
+            } else {
+                System.out.println("virtual threads not available on Java " + System.getProperty("java.version"));
+            }
+        }
+    }
+
+    private static void run(String mode, ExecutorService executor, int gates) throws InterruptedException {
+        SimulatedDataBase dataBase = new SimulatedDataBase();
+        ParkingService parkingService = new ParkingService(null, dataBase.parkingSpotDAO(), dataBase.ticketDAO());
+        long[] latencies = new long[gates];
+        CountDownLatch done = new CountDownLatch(gates);
+        long start = System.nanoTime();
+        for (int gate = 0; gate < gates; gate++) {
+            int index = gate;
+            long submitted = System.nanoTime();
+            executor.execute(() -> {
+                String plate = "GATE" + index;
+                parkingService.enterVehicle(ParkingType.CAR, plate);
+                parkingService.exitVehicle(plate);
+                latencies[index] = System.nanoTime() - submitted;
+                done.countDown();
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        Arrays.sort(latencies);
+        System.out.printf("%-20s %6d gates  %8.0f gates/s  p50 %7.1f ms  p99 %7.1f ms  max %7.1f ms  DB waits %d%n",
+                mode, gates, gates / (elapsed / 1e9),
+                latencies[gates / 2] / 1e6, latencies[gates * 99 / 100] / 1e6, latencies[gates - 1] / 1e6,
+                dataBase.waits);
+    }
+
+    /**
+     * DAOs answering from memory, each call holding a simulated connection like a borrow() would.
+     */
+    private static class SimulatedDataBase {
+        private final Semaphore connections = new Semaphore(DB_CONNECTIONS, true);
+        private final ConcurrentMap<String, Ticket> tickets = new ConcurrentHashMap<>();
+        private final AtomicLong waits = new AtomicLong();
+
+        private void query() {
+            if (!connections.tryAcquire()) {
+                waits.incrementAndGet();
+                connections.acquireUninterruptibly();
+            }
+            try {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(DB_LATENCY_MICROS));
+            } finally {
+                connections.release();
+            }
+        }
+
+        ParkingSpotDAO parkingSpotDAO() {
+            return new ParkingSpotDAO() {
+                @Override
+                public int getNextAvailableSlot(ParkingType parkingType) {
+                    query();
+                    return 1;
+                }
+
+                @Override
+                public boolean claimParkingSpot(ParkingSpot parkingSpot) {
+                    query();
+                    return true;
+                }
+
+                @Override
+                public boolean updateParking(ParkingSpot parkingSpot) {
+                    query();
+                    return true;
+                }
+            };
+        }
+
+        TicketDAO ticketDAO() {
+            return new TicketDAO() {
+                @Override
+                public boolean saveTicket(Ticket ticket) {
+                    query();
+                    ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+                    tickets.put(ticket.getVehicleRegNumber(), ticket);
+                    return true;
+                }
+
+                @Override
+                public Ticket getTicket(String vehicleRegNumber) {
+                    query();
+                    return tickets.get(vehicleRegNumber);
+                }
+
+                @Override
+                public int getNbTicket(String vehicleRegNumber) {
+                    query();
+                    return 1;
+                }
+
+                @Override
+                public boolean updateTicket(Ticket ticket) {
+                    query();
+                    return true;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.service.LoadGenerator;
+import com.parkit.parkingsystem.service.LoadProfile;
+import com.parkit.parkingsystem.service.LoadReport;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.Distribution;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadGeneratorTest {
+
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+
+    private void setUpDataBase(String name, int carSpots, int bikeSpots) {
+        DataBaseConfig dataBaseConfig =
+                new EmbeddedDataBaseConfig("jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        assertTrue(new SchemaMigrator(dataBaseConfig, false).migrate());
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.ensureParkingSpots(ParkingType.CAR, carSpots);
+        parkingSpotDAO.ensureParkingSpots(ParkingType.BIKE, bikeSpots);
+        assertTrue(parkingSpotDAO.loadAllocator());
+    }
+
+    private LoadReport run(LoadProfile profile) throws Exception {
+        return new LoadGenerator(profile,
+                inputReaderUtil -> new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO), ticketDAO).run();
+    }
+
+    private int countTickets() throws Exception {
+        Connection con = ticketDAO.dataBaseConfig.getConnection();
+        ResultSet rs = con.createStatement().executeQuery("select count(*) from ticket where OUT_TIME is not null");
+        rs.next();
+        int count = rs.getInt(1);
+        con.close();
+        return count;
+    }
+
+    @Test
+    public void everyParkedVehicleLeavesAndReturningVehiclesComeBack() throws Exception {
+        setUpDataBase("load", 40, 20);
+        LoadProfile profile = new LoadProfile().setGates(3).setVehicles(150)
+                .setArrivals(Distribution.parse("fixed:0")).setDwell(Distribution.parse("uniform:1,5"))
+                .setReuseRatio(0.5).setBikeRatio(0.3);
+
+        LoadReport report = run(profile);
+
+        assertEquals(150, report.getArrivals());
+        assertEquals(150, report.getEntries() + report.getRejections());
+        assertEquals(report.getEntries(), report.getExits());
+        assertEquals(0, report.getFailedExits());
+        assertTrue(report.getLoyalEntries() > 0);
+        assertEquals(report.getEntries(), countTickets());
+        assertEquals(150, report.getEntryLatency().getTotalCount());
+        assertTrue(report.getStatements() >= report.getEntries() * 2);
+        assertEquals(0, ticketDAO.activeTicketCache.size());
+    }
+
+    @Test
+    public void arrivalsAreTurnedAwayWhenTheLotIsFull() throws Exception {
+        // lot par défaut : trois places de voiture
+        setUpDataBase("loadfull", 0, 0);
+        LoadProfile profile = new LoadProfile().setGates(1).setVehicles(10)
+                .setArrivals(Distribution.parse("fixed:0")).setDwell(Distribution.parse("fixed:1000"))
+                .setBikeRatio(0);
+
+        LoadReport report = run(profile);
+
+        assertEquals(3, report.getEntries());
+        assertEquals(7, report.getRejections());
+        assertEquals(3, report.getExits());
+        StringWriter writer = new StringWriter();
+        report.writeTo(writer);
+        assertTrue(writer.toString().contains("lot full 7"));
+    }
+
+    @Test
+    public void distributionsHaveTheRequestedMean() {
+        Random random = new Random(1);
+        for (String spec : new String[]{"fixed:5", "uniform:2,8", "exp:5", "lognormal:5,1.0"}) {
+            Distribution distribution = Distribution.parse(spec);
+            double sum = 0;
+            for (int i = 0; i < 100_000; i++) {
+                sum += distribution.sample(random);
+            }
+            assertEquals(5, distribution.mean(), 1e-9, spec);
+            assertEquals(5, sum / 100_000, 0.1, spec);
+        }
+        assertThrows(IllegalArgumentException.class, () -> Distribution.parse("normal:5"));
+        assertThrows(IllegalArgumentException.class, () -> Distribution.parse("uniform:8,2"));
+    }
+}
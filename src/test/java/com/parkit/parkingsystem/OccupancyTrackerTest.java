@@ -0,0 +1,137 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OccupancyTracker;
+import com.parkit.parkingsystem.dao.OccupancyTracker.Resolution;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OccupancyTrackerTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    // 4 mars 2024, 00:00 UTC
+    private static final long START = 1_709_510_400_000L;
+
+    private final AtomicLong now = new AtomicLong(START);
+    private OccupancyTracker occupancyTracker;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        occupancyTracker = new OccupancyTracker(now::get);
+        occupancyTracker.load(Arrays.asList(
+                new ParkingSpot(1, ParkingType.CAR, false),
+                new ParkingSpot(2, ParkingType.CAR, true),
+                new ParkingSpot(3, ParkingType.CAR, true),
+                new ParkingSpot(4, ParkingType.BIKE, true)));
+    }
+
+    @Test
+    public void loadSetsCapacityAndOccupancy() {
+        assertEquals(3, occupancyTracker.getCapacity(ParkingType.CAR));
+        assertEquals(1, occupancyTracker.getOccupied(ParkingType.CAR));
+        assertEquals(2, occupancyTracker.getAvailable(ParkingType.CAR));
+        assertEquals(1, occupancyTracker.getAvailable(ParkingType.BIKE));
+        assertEquals(1, occupancyTracker.getPeakOccupancy(ParkingType.CAR, Resolution.HOUR));
+    }
+
+    @Test
+    public void spotUpdatesAreCountedOnce() {
+        occupancyTracker.spotUpdated(2, ParkingType.CAR, false);
+        occupancyTracker.spotUpdated(2, ParkingType.CAR, false);
+        occupancyTracker.spotUpdated(3, ParkingType.CAR, false);
+        occupancyTracker.spotUpdated(1, ParkingType.CAR, true);
+        occupancyTracker.spotUpdated(4, ParkingType.BIKE, true);
+        // place inconnue au chargement
+        occupancyTracker.spotUpdated(99, ParkingType.CAR, false);
+
+        assertEquals(2, occupancyTracker.getOccupied(ParkingType.CAR));
+        assertEquals(0, occupancyTracker.getOccupied(ParkingType.BIKE));
+        assertEquals(3, occupancyTracker.getPeakOccupancy(ParkingType.CAR, Resolution.MINUTE));
+    }
+
+    @Test
+    public void entriesAndExitsAreBucketedPerMinuteHourAndDay() {
+        occupancyTracker.vehicleEntered(ParkingType.CAR);
+        now.addAndGet(MINUTE);
+        occupancyTracker.vehicleEntered(ParkingType.CAR);
+        occupancyTracker.vehicleEntered(ParkingType.BIKE);
+        occupancyTracker.vehicleExited(ParkingType.CAR);
+        now.addAndGet(HOUR);
+        occupancyTracker.vehicleEntered(ParkingType.CAR);
+
+        assertEquals(1, occupancyTracker.getEntries(ParkingType.CAR, Resolution.MINUTE, START));
+        assertEquals(1, occupancyTracker.getEntries(ParkingType.CAR, Resolution.MINUTE, START + MINUTE));
+        assertEquals(2, occupancyTracker.getEntries(ParkingType.CAR, Resolution.HOUR, START));
+        assertEquals(1, occupancyTracker.getEntries(ParkingType.CAR, Resolution.HOUR));
+        assertEquals(3, occupancyTracker.getEntries(ParkingType.CAR, Resolution.DAY));
+        assertEquals(1, occupancyTracker.getEntries(ParkingType.BIKE, Resolution.DAY));
+        assertEquals(1, occupancyTracker.getExits(ParkingType.CAR, Resolution.DAY));
+        assertEquals(0, occupancyTracker.getExits(ParkingType.BIKE, Resolution.DAY));
+    }
+
+    @Test
+    public void oldBucketsAreDroppedWhenTheRingWraps() {
+        occupancyTracker.vehicleEntered(ParkingType.CAR);
+        now.addAndGet(DAY);
+        occupancyTracker.vehicleEntered(ParkingType.CAR);
+
+        // même case de l'anneau des minutes, un tour plus tard
+        assertEquals(0, occupancyTracker.getEntries(ParkingType.CAR, Resolution.MINUTE, START));
+        assertEquals(1, occupancyTracker.getEntries(ParkingType.CAR, Resolution.MINUTE));
+        assertEquals(1, occupancyTracker.getEntries(ParkingType.CAR, Resolution.HOUR, START));
+        assertEquals(2, occupancyTracker.getEntries(ParkingType.CAR, Resolution.DAY, START) + occupancyTracker.getEntries(ParkingType.CAR, Resolution.DAY));
+    }
+
+    @Test
+    public void peakOccupancyCarriesOverQuietBuckets() {
+        occupancyTracker.spotUpdated(2, ParkingType.CAR, false);
+        now.addAndGet(3 * HOUR);
+        occupancyTracker.spotUpdated(2, ParkingType.CAR, true);
+
+        assertEquals(2, occupancyTracker.getPeakOccupancy(ParkingType.CAR, Resolution.HOUR, START));
+        // aucune mise à jour pendant ces heures : 2 places occupées
+        assertEquals(2, occupancyTracker.getPeakOccupancy(ParkingType.CAR, Resolution.HOUR, START + HOUR));
+        assertEquals(2, occupancyTracker.getPeakOccupancy(ParkingType.CAR, Resolution.HOUR, START + 2 * HOUR));
+        assertEquals(2, occupancyTracker.getPeakOccupancy(ParkingType.CAR, Resolution.HOUR));
+        // après le dernier changement
+        assertEquals(1, occupancyTracker.getPeakOccupancy(ParkingType.CAR, Resolution.HOUR, START + 4 * HOUR));
+    }
+
+    @Test
+    public void concurrentUpdatesAreNotLost() throws Exception {
+        List<ParkingSpot> parkingSpots = new ArrayList<>();
+        for (int number = 1; number <= 1000; number++) {
+            parkingSpots.add(new ParkingSpot(number, ParkingType.CAR, true));
+        }
+        occupancyTracker.load(parkingSpots);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int thread = 0; thread < 8; thread++) {
+            int first = thread;
+            executor.execute(() -> {
+                for (int number = 1 + first; number <= 1000; number += 8) {
+                    occupancyTracker.spotUpdated(number, ParkingType.CAR, false);
+                    occupancyTracker.vehicleEntered(ParkingType.CAR);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(1000, occupancyTracker.getOccupied(ParkingType.CAR));
+        assertEquals(1000, occupancyTracker.getEntries(ParkingType.CAR, Resolution.MINUTE));
+        assertEquals(1000, occupancyTracker.getPeakOccupancy(ParkingType.CAR, Resolution.DAY));
+    }
+}
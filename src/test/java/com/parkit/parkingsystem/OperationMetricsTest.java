@@ -0,0 +1,64 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.VisitCounter;
+import com.parkit.parkingsystem.util.OperationMetrics;
+import com.parkit.parkingsystem.util.OperationTimer;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OperationMetricsTest {
+
+    @Test
+    public void timerRecordsLatencyPercentilesAndErrors() {
+        OperationTimer timer = new OperationTimer("test", Long.MAX_VALUE);
+        for (int i = 1; i <= 1000; i++) {
+            // opération commencée il y a i microsecondes
+            timer.stop(System.nanoTime() - i * 1000L);
+        }
+        timer.error();
+        timer.refresh();
+
+        assertEquals(1000, timer.getCount());
+        assertEquals(1, timer.getErrors());
+        assertEquals(1000, timer.getIntervalCount());
+        assertTrue(timer.getP50Micros() >= 500 && timer.getP50Micros() < 510, "p50 " + timer.getP50Micros());
+        assertTrue(timer.getP99Micros() >= 990, "p99 " + timer.getP99Micros());
+        assertTrue(timer.getMaxMicros() >= 1000, "max " + timer.getMaxMicros());
+        assertTrue(timer.getThroughputPerSecond() >= 0);
+    }
+
+    @Test
+    public void timersArePublishedOverJmx() throws Exception {
+        OperationTimer timer = OperationMetrics.timer("OperationMetricsTest.jmx");
+        timer.stop(timer.start());
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        ObjectName name = new ObjectName("com.parkit.parkingsystem:type=Operation,name=OperationMetricsTest.jmx");
+
+        assertSame(timer, OperationMetrics.timer("OperationMetricsTest.jmx"));
+        timer.refresh();
+        assertEquals(1L, server.getAttribute(name, "Count"));
+        assertEquals(0L, server.getAttribute(name, "Errors"));
+        assertNotNull(server.getAttribute(name, "P999Micros"));
+    }
+
+    @Test
+    public void daoOperationsAreTimed() {
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.visitCounter = new VisitCounter();
+        OperationTimer timer = OperationMetrics.timer("TicketDAO.getNbTicket");
+        timer.refresh();
+        long before = timer.getCount();
+
+        ticketDAO.getNbTicket("ABCDEF");
+        timer.refresh();
+
+        assertEquals(before + 1, timer.getCount());
+    }
+}
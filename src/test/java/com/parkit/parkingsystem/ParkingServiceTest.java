@@ -1,7 +1,9 @@
 package com.parkit.parkingsystem;
 
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.GateJournal;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
@@ -9,13 +11,17 @@ import com.parkit.parkingsystem.service.ParkingService;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 public class ParkingServiceTest {
@@ -31,6 +37,9 @@ public class ParkingServiceTest {
     @Mock
     private TicketDAO ticketDAO;
 
+    @Mock
+    private ParkingTransactionDAO parkingTransactionDAO;
+
     @BeforeEach
     public void setUpPerTest() {
         MockitoAnnotations.initMocks(this);
@@ -45,13 +54,13 @@ public class ParkingServiceTest {
         when(inputReaderUtil.readSelection()).thenReturn(1); // CAR
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
         when(parkingSpotDAO.getNextAvailableSlot(any())).thenReturn(1);
-        when(parkingSpotDAO.updateParking(any())).thenReturn(true);
+        when(parkingSpotDAO.claimParkingSpot(any())).thenReturn(true);
         when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
         when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(0); // pas encore fidèle
 
         parkingService.processIncomingVehicle();
 
-        verify(parkingSpotDAO, times(1)).updateParking(any(ParkingSpot.class));
+        verify(parkingSpotDAO, times(1)).claimParkingSpot(any(ParkingSpot.class));
         verify(ticketDAO, times(1)).saveTicket(any(Ticket.class));
     }
 
@@ -64,7 +73,7 @@ public class ParkingServiceTest {
         when(inputReaderUtil.readSelection()).thenReturn(1); // CAR
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
         when(parkingSpotDAO.getNextAvailableSlot(any())).thenReturn(1);
-        when(parkingSpotDAO.updateParking(any())).thenReturn(true);
+        when(parkingSpotDAO.claimParkingSpot(any())).thenReturn(true);
         when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
         when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(3); // fidèle
 
@@ -74,6 +83,42 @@ public class ParkingServiceTest {
         verify(ticketDAO, times(1)).saveTicket(any(Ticket.class));
     }
 
+    /**
+     * Cas 2 bis : une autre borne a pris la place entre-temps -> le véhicule est envoyé sur la suivante.
+     */
+    @Test
+    public void testProcessIncomingVehicleSpotTakenByAnotherGate() throws Exception {
+        when(inputReaderUtil.readSelection()).thenReturn(1); // CAR
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+        when(parkingSpotDAO.getNextAvailableSlot(any())).thenReturn(1);
+        when(parkingSpotDAO.claimParkingSpot(any())).thenReturn(false);
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)).thenReturn(2);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+
+        parkingService.processIncomingVehicle();
+
+        ArgumentCaptor<Ticket> savedTicket = ArgumentCaptor.forClass(Ticket.class);
+        verify(ticketDAO, times(1)).saveTicket(savedTicket.capture());
+        assertEquals(2, savedTicket.getValue().getParkingSpot().getId());
+        assertFalse(savedTicket.getValue().getParkingSpot().isAvailable());
+    }
+
+    /**
+     * Cas 2 ter : la dernière place a été prise par une autre borne -> aucun ticket.
+     */
+    @Test
+    public void testProcessIncomingVehicleLastSpotTakenByAnotherGate() throws Exception {
+        when(inputReaderUtil.readSelection()).thenReturn(1); // CAR
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+        when(parkingSpotDAO.getNextAvailableSlot(any())).thenReturn(1);
+        when(parkingSpotDAO.claimParkingSpot(any())).thenReturn(false);
+        when(parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR)).thenReturn(-1);
+
+        parkingService.processIncomingVehicle();
+
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+    }
+
     /**
      * Cas 3 : getNextParkingNumberIfAvailable retourne un spot valide.
      */
@@ -124,7 +169,6 @@ public class ParkingServiceTest {
         ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
         ticket.setVehicleRegNumber("ABCDEF");
         ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000)); // 1h
-        ticket.setOutTime(new Date());
 
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
         when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
@@ -147,7 +191,6 @@ public class ParkingServiceTest {
         ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
         ticket.setVehicleRegNumber("ABCDEF");
         ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
-        ticket.setOutTime(new Date());
 
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
         when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
@@ -170,4 +213,218 @@ public class ParkingServiceTest {
         assertDoesNotThrow(() -> parkingService.processExitingVehicle());
         verify(ticketDAO, times(1)).getTicket("ABCDEF");
     }
-}
\ No newline at end of file
+
+    /**
+     * Cas 8 bis : le véhicule est déjà sorti -> son dernier ticket n'est ni refacturé ni refermé.
+     */
+    @Test
+    public void testProcessExitingVehicleWithClosedTicket() throws Exception {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, true));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(System.currentTimeMillis() - 2 * 60 * 60 * 1000));
+        ticket.setOutTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        ticket.setPrice(1.5);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
+
+        parkingService.processExitingVehicle();
+
+        assertEquals(1.5, ticket.getPrice());
+        verify(ticketDAO, never()).updateTicket(any(Ticket.class));
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+    }
+
+    /**
+     * Cas 9 : entrée et sortie transactionnelles -> une seule opération DAO par passage.
+     */
+    @Test
+    public void testTransactionalEntryAndExit() throws Exception {
+        parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, parkingTransactionDAO);
+        when(inputReaderUtil.readSelection()).thenReturn(1); // CAR
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+        when(parkingSpotDAO.getNextAvailableSlot(any())).thenReturn(1);
+        when(parkingTransactionDAO.enterVehicle(any(Ticket.class))).thenReturn(true);
+
+        parkingService.processIncomingVehicle();
+
+        ArgumentCaptor<Ticket> enteredTicket = ArgumentCaptor.forClass(Ticket.class);
+        verify(parkingTransactionDAO, times(1)).enterVehicle(enteredTicket.capture());
+        verify(parkingSpotDAO, never()).claimParkingSpot(any(ParkingSpot.class));
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+
+        Ticket ticket = enteredTicket.getValue();
+        ticket.getParkingSpot().setAvailable(false);
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
+        when(parkingTransactionDAO.exitVehicle(ticket)).thenReturn(true);
+
+        parkingService.processExitingVehicle();
+
+        verify(parkingTransactionDAO, times(1)).exitVehicle(ticket);
+        verify(ticketDAO, never()).updateTicket(any(Ticket.class));
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+    }
+
+    /**
+     * Cas 10 : entrée et sortie sans console, utilisées par le serveur des bornes.
+     */
+    @Test
+    public void testEnterAndExitVehicleWithoutConsole() {
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE)).thenReturn(4);
+        when(parkingSpotDAO.claimParkingSpot(any())).thenReturn(true);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+
+        Ticket ticket = parkingService.enterVehicle(ParkingType.BIKE, "ABCDEF");
+
+        assertNotNull(ticket);
+        assertEquals(4, ticket.getParkingSpot().getId());
+        assertNull(ticket.getOutTime());
+        verifyNoInteractions(inputReaderUtil);
+
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
+        when(ticketDAO.updateTicket(ticket)).thenReturn(true);
+
+        Ticket quote = parkingService.quote("ABCDEF");
+        assertEquals(1.0, quote.getPrice(), 0.001);
+        assertNull(ticket.getOutTime(), "Le devis ne doit pas modifier le ticket");
+        verify(ticketDAO, never()).updateTicket(any(Ticket.class));
+
+        Ticket closed = parkingService.exitVehicle("ABCDEF");
+        assertNotNull(closed.getOutTime());
+        assertEquals(1.0, closed.getPrice(), 0.001);
+        verify(parkingSpotDAO, times(1)).updateParking(ticket.getParkingSpot());
+    }
+
+    /**
+     * Cas 11 : sortie sans ticket ouvert -> null, rien n'est écrit.
+     */
+    @Test
+    public void testExitVehicleWithoutOpenTicket() {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, true));
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        ticket.setOutTime(new Date());
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
+
+        assertNull(parkingService.exitVehicle("ABCDEF"));
+        assertNull(parkingService.quote("GHIJKL"));
+        verify(ticketDAO, never()).updateTicket(any(Ticket.class));
+    }
+
+    /**
+     * Cas 12 : avec un journal, l'entrée et la sortie y sont écrites avant la base puis marquées terminées.
+     */
+    @Test
+    public void testEntryAndExitAreJournaled() {
+        GateJournal gateJournal = mock(GateJournal.class);
+        when(gateJournal.entering(any(Ticket.class))).thenReturn(1L);
+        when(gateJournal.exiting(any(Ticket.class))).thenReturn(2L);
+        parkingService.setGateJournal(gateJournal);
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(parkingSpotDAO.claimParkingSpot(any())).thenReturn(true);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+
+        Ticket ticket = parkingService.enterVehicle(ParkingType.CAR, "ABCDEF");
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
+        when(ticketDAO.updateTicket(ticket)).thenReturn(true);
+        parkingService.exitVehicle("ABCDEF");
+
+        InOrder inOrder = inOrder(gateJournal, parkingSpotDAO, ticketDAO);
+        inOrder.verify(gateJournal).entering(ticket);
+        inOrder.verify(parkingSpotDAO).claimParkingSpot(any(ParkingSpot.class));
+        inOrder.verify(ticketDAO).saveTicket(ticket);
+        inOrder.verify(gateJournal).done(1L);
+        inOrder.verify(gateJournal).exiting(ticket);
+        inOrder.verify(ticketDAO).updateTicket(ticket);
+        inOrder.verify(parkingSpotDAO).updateParking(ticket.getParkingSpot());
+        inOrder.verify(gateJournal).done(2L);
+    }
+
+    /**
+     * Cas 13 : le ticket n'a pas pu être enregistré -> la place est rendue et l'entrée annulée dans le journal.
+     */
+    @Test
+    public void testFailedEntryReleasesTheSpot() {
+        GateJournal gateJournal = mock(GateJournal.class);
+        when(gateJournal.entering(any(Ticket.class))).thenReturn(1L);
+        parkingService.setGateJournal(gateJournal);
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(3);
+        when(parkingSpotDAO.claimParkingSpot(any())).thenReturn(true);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(false);
+
+        assertNull(parkingService.enterVehicle(ParkingType.CAR, "ABCDEF"));
+
+        ArgumentCaptor<ParkingSpot> releasedSpot = ArgumentCaptor.forClass(ParkingSpot.class);
+        verify(parkingSpotDAO).updateParking(releasedSpot.capture());
+        assertEquals(3, releasedSpot.getValue().getId());
+        assertTrue(releasedSpot.getValue().isAvailable());
+        verify(gateJournal).aborted(1L);
+        verify(gateJournal, never()).done(anyLong());
+    }
+
+    /**
+     * Cas 14 : écriture différée -> l'opération n'est terminée dans le journal qu'une fois en base.
+     */
+    @Test
+    public void testWriteBehindEntryIsDoneOnlyOnceWritten() {
+        GateJournal gateJournal = mock(GateJournal.class);
+        when(gateJournal.entering(any(Ticket.class))).thenReturn(1L, 2L);
+        parkingService.setGateJournal(gateJournal);
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1, 2);
+        when(parkingSpotDAO.claimParkingSpot(any())).thenReturn(true);
+        when(ticketDAO.isWriteBehind()).thenReturn(true);
+        CompletableFuture<Boolean> written = new CompletableFuture<>();
+        CompletableFuture<Boolean> rejected = new CompletableFuture<>();
+        when(ticketDAO.saveTicketAsync(any(Ticket.class))).thenReturn(written, rejected);
+
+        assertNotNull(parkingService.enterVehicle(ParkingType.CAR, "ABCDEF"));
+        assertNotNull(parkingService.enterVehicle(ParkingType.CAR, "GHIJKL"));
+        verify(gateJournal, never()).done(anyLong());
+
+        written.complete(true);
+        rejected.complete(false);
+
+        verify(gateJournal).done(1L);
+        // le lot a échoué après l'ouverture de la barrière : l'entrée reste à rejouer au démarrage
+        verify(gateJournal, never()).done(2L);
+        verify(gateJournal, never()).aborted(anyLong());
+        verify(ticketDAO, never()).saveTicket(any(Ticket.class));
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+    }
+
+    /**
+     * Cas 15 : écriture différée -> la place n'est libérée qu'une fois la sortie écrite en base.
+     */
+    @Test
+    public void testWriteBehindExitFreesTheSpotOnlyOnceWritten() {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        Ticket other = new Ticket();
+        other.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        other.setVehicleRegNumber("GHIJKL");
+        other.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
+        when(ticketDAO.getTicket("GHIJKL")).thenReturn(other);
+        when(ticketDAO.isWriteBehind()).thenReturn(true);
+        CompletableFuture<Boolean> written = new CompletableFuture<>();
+        CompletableFuture<Boolean> rejected = new CompletableFuture<>();
+        when(ticketDAO.updateTicketAsync(ticket)).thenReturn(written);
+        when(ticketDAO.updateTicketAsync(other)).thenReturn(rejected);
+
+        assertNotNull(parkingService.exitVehicle("ABCDEF"));
+        assertNotNull(parkingService.exitVehicle("GHIJKL"));
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class));
+
+        written.complete(true);
+        rejected.complete(false);
+
+        verify(parkingSpotDAO).updateParking(ticket.getParkingSpot());
+        assertTrue(ticket.getParkingSpot().isAvailable());
+        // la sortie n'a pas été écrite : la place reste occupée
+        verify(parkingSpotDAO, never()).updateParking(other.getParkingSpot());
+        assertFalse(other.getParkingSpot().isAvailable());
+    }
+}
@@ -0,0 +1,109 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotAllocator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingSpotAllocatorTest {
+
+    @Test
+    public void nextAvailableReturnsLowestFreeSpotOfTheType() {
+        ParkingSpotAllocator allocator = new ParkingSpotAllocator(6);
+        allocator.setAvailable(1, ParkingType.CAR, true);
+        allocator.setAvailable(2, ParkingType.CAR, true);
+        allocator.setAvailable(4, ParkingType.BIKE, true);
+        allocator.setAvailable(5, ParkingType.BIKE, true);
+
+        assertEquals(1, allocator.nextAvailable(ParkingType.CAR));
+        assertEquals(4, allocator.nextAvailable(ParkingType.BIKE));
+
+        allocator.setAvailable(1, ParkingType.CAR, false);
+        assertEquals(2, allocator.nextAvailable(ParkingType.CAR));
+        assertFalse(allocator.isAvailable(1, ParkingType.CAR));
+    }
+
+    @Test
+    public void nextAvailableReturnsMinusOneWhenFull() {
+        ParkingSpotAllocator allocator = new ParkingSpotAllocator(3);
+        allocator.setAvailable(1, ParkingType.CAR, true);
+        allocator.setAvailable(1, ParkingType.CAR, false);
+
+        assertEquals(-1, allocator.nextAvailable(ParkingType.CAR));
+        assertEquals(-1, allocator.nextAvailable(ParkingType.BIKE));
+    }
+
+    @Test
+    public void findsSpotsAcrossWordBoundariesOnBigLots() {
+        int spots = 50_000;
+        ParkingSpotAllocator allocator = new ParkingSpotAllocator(spots + 1);
+        for (int number = 1; number <= spots; number++) {
+            allocator.setAvailable(number, ParkingType.CAR, true);
+        }
+        for (int number = 1; number < 40_000; number++) {
+            allocator.setAvailable(number, ParkingType.CAR, false);
+        }
+
+        assertEquals(40_000, allocator.nextAvailable(ParkingType.CAR));
+        assertEquals(10_001, allocator.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void concurrentClaimsNeverReturnTheSameSpot() throws Exception {
+        int spots = 20_000;
+        int gates = 16;
+        ParkingSpotAllocator allocator = new ParkingSpotAllocator(spots + 1);
+        for (int number = 1; number <= spots; number++) {
+            allocator.setAvailable(number, ParkingType.CAR, true);
+        }
+
+        Set<Integer> claimed = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(gates);
+        for (int gate = 0; gate < gates; gate++) {
+            executor.submit(() -> {
+                start.await();
+                int number;
+                while ((number = allocator.claim(ParkingType.CAR)) != -1) {
+                    if (!claimed.add(number)) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(0, duplicates.get());
+        assertEquals(spots, claimed.size());
+        assertEquals(0, allocator.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void claimOfASpecificSpotSucceedsOnlyOnce() {
+        ParkingSpotAllocator allocator = new ParkingSpotAllocator(3);
+        allocator.setAvailable(2, ParkingType.CAR, true);
+
+        assertTrue(allocator.claim(2, ParkingType.CAR));
+        assertFalse(allocator.claim(2, ParkingType.CAR));
+    }
+
+    @Test
+    public void rejectsSpotNumbersOutOfRange() {
+        ParkingSpotAllocator allocator = new ParkingSpotAllocator(3);
+
+        assertThrows(IllegalArgumentException.class, () -> allocator.setAvailable(3, ParkingType.CAR, true));
+    }
+}
@@ -0,0 +1,274 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.OccupancyTracker;
+import com.parkit.parkingsystem.dao.ParkingSpotAllocator;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ParkingSpotDAOTest {
+
+    private ParkingSpotDAO parkingSpotDAO;
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        parkingSpotDAO = new ParkingSpotDAO();
+        dataBaseConfig = mock(DataBaseConfig.class);
+        connection = mock(Connection.class);
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+    }
+
+    private void givenParkingTable() throws Exception {
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(DBConstants.GET_PARKING_SPOTS)).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, true, false);
+        when(resultSet.getInt(1)).thenReturn(1, 2, 4);
+        when(resultSet.getBoolean(2)).thenReturn(false, true, true);
+        when(resultSet.getString(3)).thenReturn("CAR", "CAR", "BIKE");
+    }
+
+    @Test
+    public void getNextAvailableSlotUsesAllocatorOnceLoaded() throws Exception {
+        givenParkingTable();
+
+        assertTrue(parkingSpotDAO.loadAllocator());
+
+        assertEquals(2, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(4, parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE));
+        verify(connection, never()).prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
+    }
+
+    @Test
+    public void updateParkingWritesThroughToAllocator() throws Exception {
+        givenParkingTable();
+        parkingSpotDAO.loadAllocator();
+        PreparedStatement update = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(update);
+        when(update.executeUpdate()).thenReturn(1);
+
+        assertTrue(parkingSpotDAO.updateParking(new ParkingSpot(2, ParkingType.CAR, false)));
+
+        assertEquals(-1, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void updateParkingKeepsOccupancyTrackerInSync() throws Exception {
+        givenParkingTable();
+        parkingSpotDAO.occupancyTracker = new OccupancyTracker();
+        parkingSpotDAO.loadAllocator();
+        PreparedStatement update = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(update);
+        when(update.executeUpdate()).thenReturn(1);
+        assertEquals(1, parkingSpotDAO.occupancyTracker.getOccupied(ParkingType.CAR));
+
+        assertTrue(parkingSpotDAO.updateParking(new ParkingSpot(2, ParkingType.CAR, false)));
+        assertTrue(parkingSpotDAO.updateParking(new ParkingSpot(2, ParkingType.CAR, false)));
+
+        assertEquals(2, parkingSpotDAO.occupancyTracker.getOccupied(ParkingType.CAR));
+        assertEquals(0, parkingSpotDAO.occupancyTracker.getAvailable(ParkingType.CAR));
+        assertEquals(1, parkingSpotDAO.occupancyTracker.getAvailable(ParkingType.BIKE));
+    }
+
+    @Test
+    public void spotAddedAfterTheAllocatorWasLoadedIsUpdated() throws Exception {
+        givenParkingTable();
+        // allocateur chargé avant l'ajout de la place 4
+        parkingSpotDAO.allocator = new ParkingSpotAllocator(3);
+        parkingSpotDAO.allocator.setAvailable(2, ParkingType.CAR, true);
+        PreparedStatement update = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(update);
+        when(update.executeUpdate()).thenReturn(1);
+
+        assertTrue(parkingSpotDAO.updateParking(new ParkingSpot(4, ParkingType.BIKE, false)));
+
+        assertEquals(5, parkingSpotDAO.allocator.getCapacity());
+        assertFalse(parkingSpotDAO.allocator.isAvailable(4, ParkingType.BIKE));
+        assertEquals(2, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void failedUpdateLeavesAllocatorUntouched() throws Exception {
+        givenParkingTable();
+        parkingSpotDAO.loadAllocator();
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenThrow(new SQLException("DB error"));
+
+        assertFalse(parkingSpotDAO.updateParking(new ParkingSpot(2, ParkingType.CAR, false)));
+
+        assertEquals(2, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void getNextAvailableSlotQueriesDatabaseWithoutAllocator() throws Exception {
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(3);
+
+        assertEquals(3, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        verify(connection).prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
+    }
+
+    @Test
+    public void claimParkingSpotFailsWhenSpotIsNoLongerAvailable() throws Exception {
+        PreparedStatement claim = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)).thenReturn(claim);
+        when(claim.executeUpdate()).thenReturn(0);
+
+        assertFalse(parkingSpotDAO.claimParkingSpot(new ParkingSpot(1, ParkingType.CAR, true)));
+        verify(claim).setInt(1, 1);
+    }
+
+    @Test
+    public void claimNextAvailableSlotTakesFromTheAllocatorUntilASpotIsFreeInDatabase() throws Exception {
+        parkingSpotDAO.allocator = new ParkingSpotAllocator(21);
+        for (int number = 1; number <= 20; number++) {
+            parkingSpotDAO.allocator.setAvailable(number, ParkingType.CAR, true);
+        }
+        PreparedStatement claim = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)).thenReturn(claim);
+        // les 15 premières places sont déjà prises en base : elles ne sont plus proposées ensuite
+        when(claim.executeUpdate()).thenReturn(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1);
+
+        assertEquals(16, parkingSpotDAO.claimNextAvailableSlot(ParkingType.CAR));
+        assertEquals(4, parkingSpotDAO.allocator.countAvailable(ParkingType.CAR));
+        verify(connection, never()).prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
+    }
+
+    @Test
+    public void claimParkingSpotKeepsTheSpotTakenOnceTheUpdateWentThrough() throws Exception {
+        parkingSpotDAO.allocator = new ParkingSpotAllocator(3);
+        parkingSpotDAO.allocator.setAvailable(1, ParkingType.CAR, true);
+        parkingSpotDAO.allocator.setAvailable(2, ParkingType.CAR, true);
+        parkingSpotDAO.occupancyTracker = mock(OccupancyTracker.class);
+        doThrow(new IllegalStateException("tracker failed")).when(parkingSpotDAO.occupancyTracker)
+                .spotUpdated(1, ParkingType.CAR, false);
+        PreparedStatement claim = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)).thenReturn(claim);
+        when(claim.executeUpdate()).thenReturn(1).thenThrow(new SQLException("connection lost"));
+
+        assertTrue(parkingSpotDAO.claimParkingSpot(new ParkingSpot(1, ParkingType.CAR, true)));
+        assertFalse(parkingSpotDAO.allocator.isAvailable(1, ParkingType.CAR));
+
+        // la mise à jour n'a pas eu lieu : la place est rendue à l'allocateur
+        assertFalse(parkingSpotDAO.claimParkingSpot(new ParkingSpot(2, ParkingType.CAR, true)));
+        assertTrue(parkingSpotDAO.allocator.isAvailable(2, ParkingType.CAR));
+    }
+
+    @Test
+    public void concurrentGatesNeverClaimTheSameSpotInDatabase() throws Exception {
+        int spots = 500;
+        int gates = 8;
+        AtomicBoolean[] available = new AtomicBoolean[spots + 1];
+        for (int number = 1; number <= spots; number++) {
+            available[number] = new AtomicBoolean(true);
+        }
+        Connection table = fakeParkingTable(available);
+        ParkingSpotDAO sharedDAO = new ParkingSpotDAO();
+        sharedDAO.dataBaseConfig = new DataBaseConfig() {
+            @Override
+            public Connection getConnection() {
+                return table;
+            }
+        };
+
+        Set<Integer> claimed = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(gates);
+        for (int gate = 0; gate < gates; gate++) {
+            executor.submit(() -> {
+                start.await();
+                int number;
+                while ((number = sharedDAO.claimNextAvailableSlot(ParkingType.CAR)) > 0) {
+                    if (!claimed.add(number)) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(0, duplicates.get());
+        assertEquals(spots, claimed.size());
+    }
+
+    /**
+     * Minimal parking table: the min() query and the conditional update behave like MySQL row updates.
+     */
+    private static Connection fakeParkingTable(AtomicBoolean[] available) {
+        return proxy(Connection.class, (connection, method, args) -> {
+            if (!"prepareStatement".equals(method.getName())) {
+                return null;
+            }
+            String sql = (String) args[0];
+            int[] parkingNumber = new int[1];
+            return proxy(PreparedStatement.class, (ps, psMethod, psArgs) -> {
+                switch (psMethod.getName()) {
+                    case "setInt":
+                        parkingNumber[0] = (Integer) psArgs[1];
+                        return null;
+                    case "executeUpdate":
+                        assertEquals(DBConstants.CLAIM_PARKING_SPOT, sql);
+                        return available[parkingNumber[0]].compareAndSet(true, false) ? 1 : 0;
+                    case "executeQuery":
+                        int min = 0;
+                        for (int number = 1; number < available.length && min == 0; number++) {
+                            if (available[number].get()) {
+                                min = number;
+                            }
+                        }
+                        int result = min;
+                        boolean[] read = new boolean[1];
+                        return proxy(ResultSet.class, (rs, rsMethod, rsArgs) -> {
+                            if ("next".equals(rsMethod.getName())) {
+                                boolean first = !read[0];
+                                read[0] = true;
+                                return first;
+                            }
+                            return "getInt".equals(rsMethod.getName()) ? result : null;
+                        });
+                    default:
+                        return null;
+                }
+            });
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
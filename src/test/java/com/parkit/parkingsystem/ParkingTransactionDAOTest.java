@@ -0,0 +1,200 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotAllocator;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingTransactionDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ParkingTransactionDAOTest {
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private PreparedStatement claim;
+    private PreparedStatement insert;
+    private PreparedStatement update;
+    private PreparedStatement free;
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+    private ParkingTransactionDAO parkingTransactionDAO;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        dataBaseConfig = mock(DataBaseConfig.class);
+        connection = mock(Connection.class);
+        claim = mock(PreparedStatement.class);
+        insert = mock(PreparedStatement.class);
+        update = mock(PreparedStatement.class);
+        free = mock(PreparedStatement.class);
+        ResultSet keys = mock(ResultSet.class);
+
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.CLAIM_PARKING_SPOT)).thenReturn(claim);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(insert);
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(update);
+        when(connection.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(free);
+        when(insert.getGeneratedKeys()).thenReturn(keys);
+        when(keys.next()).thenReturn(true);
+        when(keys.getInt(1)).thenReturn(42);
+
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.allocator = new ParkingSpotAllocator(6);
+        for (int number = 1; number <= 5; number++) {
+            parkingSpotDAO.allocator.setAvailable(number, ParkingType.CAR, true);
+        }
+        ticketDAO = new TicketDAO();
+        parkingTransactionDAO = new ParkingTransactionDAO(parkingSpotDAO, ticketDAO);
+        parkingTransactionDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    private static Ticket newTicket(int parkingNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, ParkingType.CAR, true));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        return ticket;
+    }
+
+    @Test
+    public void enterVehicleClaimsSpotAndSavesTicketInOneTransaction() throws Exception {
+        when(claim.executeUpdate()).thenReturn(1);
+        Ticket ticket = newTicket(1);
+
+        assertTrue(parkingTransactionDAO.enterVehicle(ticket));
+
+        InOrder inOrder = inOrder(connection, claim, insert);
+        inOrder.verify(connection).setAutoCommit(false);
+        inOrder.verify(claim).executeUpdate();
+        inOrder.verify(insert).executeUpdate();
+        inOrder.verify(connection).commit();
+        verify(connection, never()).rollback();
+        verify(dataBaseConfig, times(1)).getConnection();
+        assertEquals(42, ticket.getId());
+        assertFalse(ticket.getParkingSpot().isAvailable());
+        assertFalse(parkingSpotDAO.allocator.isAvailable(1, ParkingType.CAR));
+        assertEquals(42, ticketDAO.getTicket("ABCDEF").getId());
+    }
+
+    @Test
+    public void enterVehicleMovesToNextSpotWhenClaimIsLost() throws Exception {
+        when(claim.executeUpdate()).thenReturn(0, 1);
+        Ticket ticket = newTicket(1);
+
+        assertTrue(parkingTransactionDAO.enterVehicle(ticket));
+
+        assertEquals(2, ticket.getParkingSpot().getId());
+        verify(claim).setInt(1, 1);
+        verify(claim).setInt(1, 2);
+        verify(connection, times(1)).rollback();
+        verify(connection, times(1)).commit();
+        verify(insert, times(1)).executeUpdate();
+        // la place 1 est prise en base par l'autre borne
+        assertFalse(parkingSpotDAO.allocator.isAvailable(1, ParkingType.CAR));
+    }
+
+    @Test
+    public void enterVehicleKeepsTakingSpotsFromTheAllocatorUntilOneIsFreeInDatabase() throws Exception {
+        parkingSpotDAO.allocator = new ParkingSpotAllocator(21);
+        for (int number = 1; number <= 20; number++) {
+            parkingSpotDAO.allocator.setAvailable(number, ParkingType.CAR, true);
+        }
+        // les 15 premières places sont déjà prises en base
+        when(claim.executeUpdate()).thenReturn(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1);
+        Ticket ticket = newTicket(1);
+
+        assertTrue(parkingTransactionDAO.enterVehicle(ticket));
+
+        assertEquals(16, ticket.getParkingSpot().getId());
+        verify(claim, times(16)).executeUpdate();
+        assertEquals(4, parkingSpotDAO.allocator.countAvailable(ParkingType.CAR));
+    }
+
+    @Test
+    public void enterVehicleRollsBackAndReleasesSpotWhenInsertFails() throws Exception {
+        when(claim.executeUpdate()).thenReturn(1);
+        when(insert.executeUpdate()).thenThrow(new SQLException("insert failed"));
+        Ticket ticket = newTicket(1);
+
+        assertFalse(parkingTransactionDAO.enterVehicle(ticket));
+
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(dataBaseConfig).closeConnection(connection);
+        assertTrue(parkingSpotDAO.allocator.isAvailable(1, ParkingType.CAR));
+        assertNull(ticketDAO.activeTicketCache.get("ABCDEF"));
+    }
+
+    @Test
+    public void exitVehicleClosesTicketAndFreesSpotInOneTransaction() throws Exception {
+        Ticket ticket = newTicket(1);
+        ticket.setId(42);
+        ticket.getParkingSpot().setAvailable(false);
+        ticket.setOutTime(new Date());
+        ticket.setPrice(1.5);
+        parkingSpotDAO.allocator.setAvailable(1, ParkingType.CAR, false);
+        ticketDAO.activeTicketCache.put(ticket);
+        when(update.executeUpdate()).thenReturn(1);
+
+        assertTrue(parkingTransactionDAO.exitVehicle(ticket));
+
+        InOrder inOrder = inOrder(connection, update, free);
+        inOrder.verify(connection).setAutoCommit(false);
+        inOrder.verify(update).executeUpdate();
+        inOrder.verify(free).executeUpdate();
+        inOrder.verify(connection).commit();
+        assertTrue(ticket.getParkingSpot().isAvailable());
+        assertTrue(parkingSpotDAO.allocator.isAvailable(1, ParkingType.CAR));
+        assertNull(ticketDAO.activeTicketCache.get("ABCDEF"));
+    }
+
+    @Test
+    public void exitVehicleRollsBackWhenFreeingSpotFails() throws Exception {
+        Ticket ticket = newTicket(1);
+        ticket.setId(42);
+        ticket.getParkingSpot().setAvailable(false);
+        ticket.setOutTime(new Date());
+        parkingSpotDAO.allocator.setAvailable(1, ParkingType.CAR, false);
+        when(update.executeUpdate()).thenReturn(1);
+        when(free.executeUpdate()).thenThrow(new SQLException("update failed"));
+
+        assertFalse(parkingTransactionDAO.exitVehicle(ticket));
+
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        assertFalse(parkingSpotDAO.allocator.isAvailable(1, ParkingType.CAR));
+    }
+
+    @Test
+    public void exitVehicleOfATicketAlreadyClosedLeavesTheSpotTaken() throws Exception {
+        Ticket ticket = newTicket(1);
+        ticket.setId(42);
+        ticket.getParkingSpot().setAvailable(false);
+        ticket.setOutTime(new Date());
+        parkingSpotDAO.allocator.setAvailable(1, ParkingType.CAR, false);
+        when(update.executeUpdate()).thenReturn(0);
+
+        assertFalse(parkingTransactionDAO.exitVehicle(ticket));
+
+        verify(free, never()).executeUpdate();
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        assertFalse(parkingSpotDAO.allocator.isAvailable(1, ParkingType.CAR));
+    }
+}
@@ -0,0 +1,104 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.ReplicaRouter;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ReplicaRouterTest {
+
+    private static DataBaseConfig emptyDataBase(String name) throws Exception {
+        DataBaseConfig dataBaseConfig = new EmbeddedDataBaseConfig("jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        assertTrue(new SchemaMigrator(dataBaseConfig, false).migrate());
+        try (Connection con = dataBaseConfig.getConnection(); Statement statement = con.createStatement()) {
+            statement.execute("delete from ticket");
+        }
+        return dataBaseConfig;
+    }
+
+    @Test
+    public void readsGoToTheReplicaUnlessTheVehicleWasJustWritten() throws Exception {
+        DataBaseConfig primary = emptyDataBase("primary");
+        DataBaseConfig replica = emptyDataBase("replica");
+        // ticket déjà répliqué : seule la réplique l'a, ce qui montre d'où vient la lecture
+        try (Connection con = replica.getConnection(); Statement statement = con.createStatement()) {
+            statement.execute("insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(1, 'REPLICATED', 2, now(), now())");
+        }
+        ReplicaRouter replicaRouter = new ReplicaRouter(primary, Collections.singletonList(replica), 60_000, 0);
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = primary;
+        ticketDAO.replicaRouter = replicaRouter;
+
+        assertEquals(2, ticketDAO.getTicket("REPLICATED").getPrice());
+        assertEquals(1, ticketDAO.getNbTicket("REPLICATED"));
+        assertEquals(2, replicaRouter.getReplicaReads());
+
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("WRITTEN");
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        ticket.setOutTime(new Date());
+        ticket.setPrice(1.5);
+        assertTrue(ticketDAO.saveTicket(ticket));
+
+        // la réplique n'a pas encore le ticket : la lecture reste sur le primaire
+        assertEquals(1.5, ticketDAO.getTicket("WRITTEN").getPrice());
+        assertEquals(1, ticketDAO.getNbTicket("WRITTEN"));
+        assertEquals(2, replicaRouter.getPrimaryReads());
+        replicaRouter.close();
+    }
+
+    @Test
+    public void readsAreBalancedOverTheHealthyReplicas() throws Exception {
+        DataBaseConfig primary = mock(DataBaseConfig.class);
+        DataBaseConfig failing = mock(DataBaseConfig.class);
+        DataBaseConfig healthy = mock(DataBaseConfig.class);
+        Connection failingConnection = mock(Connection.class);
+        Connection healthyConnection = mock(Connection.class);
+        when(failing.getConnection()).thenThrow(new SQLException("Connection refused"));
+        when(healthy.getConnection()).thenReturn(healthyConnection);
+        when(healthyConnection.isValid(anyInt())).thenReturn(true);
+        ReplicaRouter replicaRouter = new ReplicaRouter(primary, Arrays.asList(failing, healthy), 0, 0);
+
+        for (int i = 0; i < 4; i++) {
+            assertSame(healthyConnection, replicaRouter.getReadConnection(null));
+        }
+        assertEquals(1, replicaRouter.getHealthyReplicaCount());
+        verify(failing, times(1)).getConnection();
+
+        // la réplique est revenue : le contrôle de santé la remet dans la rotation
+        reset(failing);
+        when(failing.getConnection()).thenReturn(failingConnection);
+        when(failingConnection.isValid(anyInt())).thenReturn(true);
+        replicaRouter.checkHealth();
+        assertEquals(2, replicaRouter.getHealthyReplicaCount());
+        replicaRouter.getReadConnection(null);
+        replicaRouter.getReadConnection(null);
+        verify(failing, times(2)).getConnection();
+        assertEquals(0, replicaRouter.getPrimaryReads());
+
+        // plus aucune réplique : les lectures se replient sur le primaire
+        when(failingConnection.isValid(anyInt())).thenReturn(false);
+        when(healthyConnection.isValid(anyInt())).thenReturn(false);
+        replicaRouter.checkHealth();
+        replicaRouter.getReadConnection("AB123CD");
+        assertEquals(1, replicaRouter.getPrimaryReads());
+        verify(primary).getConnection();
+        replicaRouter.close();
+    }
+}
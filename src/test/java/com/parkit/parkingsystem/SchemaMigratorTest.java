@@ -0,0 +1,109 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+public class SchemaMigratorTest {
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private Statement statement;
+    private PreparedStatement versions;
+    private ResultSet appliedVersions;
+    private PreparedStatement saveVersion;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        dataBaseConfig = mock(DataBaseConfig.class);
+        connection = mock(Connection.class);
+        statement = mock(Statement.class);
+        versions = mock(PreparedStatement.class);
+        appliedVersions = mock(ResultSet.class);
+        saveVersion = mock(PreparedStatement.class);
+
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.prepareStatement(startsWith("select VERSION"))).thenReturn(versions);
+        when(connection.prepareStatement(startsWith("insert into schema_version"))).thenReturn(saveVersion);
+        when(versions.executeQuery()).thenReturn(appliedVersions);
+    }
+
+    @Test
+    public void migrateAppliesIndexesAndRecordsVersion() throws Exception {
+        when(appliedVersions.next()).thenReturn(false);
+
+        assertTrue(new SchemaMigrator(dataBaseConfig, false).migrate());
+
+        ArgumentCaptor<String> executed = ArgumentCaptor.forClass(String.class);
+        verify(statement, atLeastOnce()).execute(executed.capture());
+        List<String> sql = executed.getAllValues();
+        assertTrue(sql.get(0).startsWith("create table if not exists schema_version"));
+        assertTrue(sql.stream().anyMatch(s -> s.startsWith("create index IDX_TICKET_VEHICLE_OPEN")));
+        assertTrue(sql.stream().anyMatch(s -> s.startsWith("create index IDX_PARKING_FREE")));
+        assertTrue(sql.stream().anyMatch(s -> s.startsWith("create index IDX_TICKET_OUT_TIME")));
+        // la migration de partitionnement n'est pas activée
+        assertTrue(sql.stream().noneMatch(s -> s.contains("partition")));
+        verify(saveVersion).setInt(1, 1);
+        verify(saveVersion).setInt(1, 3);
+        verify(saveVersion).setInt(1, 4);
+        assertTrue(sql.stream().anyMatch(s -> s.startsWith("create table if not exists ticket_archive")));
+        verify(saveVersion, times(3)).execute();
+        verify(dataBaseConfig).closeConnection(connection);
+    }
+
+    @Test
+    public void migrateSkipsAppliedVersions() throws Exception {
+        when(appliedVersions.next()).thenReturn(true, true, true, false);
+        when(appliedVersions.getInt(1)).thenReturn(1, 3, 4);
+
+        assertTrue(new SchemaMigrator(dataBaseConfig, false).migrate());
+
+        verify(statement, times(1)).execute(anyString());
+        verify(saveVersion, never()).execute();
+    }
+
+    @Test
+    public void migrateStopsAtFailingMigration() throws Exception {
+        when(appliedVersions.next()).thenReturn(false);
+        when(statement.execute(startsWith("create index"))).thenThrow(new SQLException("duplicate key name"));
+
+        assertFalse(new SchemaMigrator(dataBaseConfig, false).migrate());
+
+        verify(saveVersion, never()).execute();
+        verify(dataBaseConfig).closeConnection(connection);
+    }
+
+    @Test
+    public void partitioningCreatesMonthlyPartitions() throws Exception {
+        when(appliedVersions.next()).thenReturn(true, false);
+        when(appliedVersions.getInt(1)).thenReturn(1);
+        PreparedStatement partitions = mock(PreparedStatement.class);
+        ResultSet existing = mock(ResultSet.class);
+        when(connection.prepareStatement(startsWith("select PARTITION_NAME"))).thenReturn(partitions);
+        when(partitions.executeQuery()).thenReturn(existing);
+        when(existing.next()).thenReturn(true, false);
+        when(existing.getString(1)).thenReturn("P_FUTURE");
+
+        assertTrue(new SchemaMigrator(dataBaseConfig, true).migrate());
+
+        verify(statement).execute(startsWith("alter table ticket partition by range columns(IN_TIME)"));
+        verify(saveVersion).setInt(1, 2);
+        // mois courant + 3 mois d'avance
+        verify(statement, times(4)).execute(startsWith("alter table ticket reorganize partition P_FUTURE"));
+    }
+}
@@ -0,0 +1,176 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.SettlementReport;
+import com.parkit.parkingsystem.service.SettlementService;
+import com.parkit.parkingsystem.service.Tariff;
+import com.parkit.parkingsystem.service.TariffRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SettlementServiceTest {
+
+    private static final int TICKETS = 10_000;
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private static final DataBaseConfig dataBaseConfig =
+            new EmbeddedDataBaseConfig("jdbc:h2:mem:settlement;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+
+    private static Date at(int day, int hour, int minute) {
+        return Date.from(LocalDateTime.of(2024, 3, day, hour, minute).atZone(ZONE).toInstant());
+    }
+
+    private static DataBaseConfig dataBase(String name) {
+        DataBaseConfig config = new EmbeddedDataBaseConfig(
+                "jdbc:h2:mem:" + name + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        assertTrue(new SchemaMigrator(config, false).migrate());
+        return config;
+    }
+
+    private static PreparedStatement insertTicket(Connection con) throws Exception {
+        return con.prepareStatement(
+                "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)");
+    }
+
+    private static void insert(PreparedStatement ps, int parkingNumber, double price, Date in, Date out) throws Exception {
+        ps.setInt(1, parkingNumber);
+        ps.setString(2, "AB" + parkingNumber);
+        ps.setDouble(3, price);
+        ps.setTimestamp(4, new Timestamp(in.getTime()));
+        ps.setTimestamp(5, new Timestamp(out.getTime()));
+        ps.addBatch();
+    }
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        assertTrue(new SchemaMigrator(dataBaseConfig, false).migrate());
+        Connection con = dataBaseConfig.getConnection();
+        PreparedStatement ps = insertTicket(con);
+        for (int i = 0; i < TICKETS; i++) {
+            // une heure de voiture, payée plein tarif ou avec la remise (1,4249... en double), sortie à 10 h ou 15 h
+            int outHour = i % 2 == 0 ? 10 : 15;
+            insert(ps, 1, i % 4 < 2 ? 1.5 : 1.5 * 0.95, at(4, outHour - 1, 0), at(4, outHour, 0));
+        }
+        // moto, deux heures
+        insert(ps, 4, 2.0, at(4, 8, 0), at(4, 10, 0));
+        // prix erroné
+        insert(ps, 4, 5.0, at(4, 8, 0), at(4, 10, 0));
+        // hors période
+        insert(ps, 1, 1.5, at(5, 8, 0), at(5, 9, 0));
+        ps.executeBatch();
+        ps.close();
+        dataBaseConfig.closeConnection(con);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TariffRegistry.clear();
+    }
+
+    @Test
+    public void settleAggregatesClosedTicketsOfThePeriod() {
+        SettlementService settlementService = new SettlementService(dataBaseConfig, 500, 4, ZONE);
+
+        SettlementReport report = settlementService.settle(at(4, 0, 0), at(5, 0, 0));
+
+        assertNotNull(report);
+        assertEquals(TICKETS + 2, report.getTotalTickets());
+        assertEquals(TICKETS / 4, report.getTickets(ParkingType.CAR, 10, false));
+        assertEquals(TICKETS / 4, report.getTickets(ParkingType.CAR, 10, true));
+        assertEquals(TICKETS / 4 * 150, report.getRevenueCents(ParkingType.CAR, 15, false));
+        assertEquals(TICKETS / 4 * 142, report.getRevenueCents(ParkingType.CAR, 15, true));
+        assertEquals(2, report.getTickets(ParkingType.BIKE, 10, false));
+        assertEquals(700, report.getRevenueCents(ParkingType.BIKE, 10, false));
+        assertEquals(1, report.getMismatches());
+        assertEquals(300, report.getMismatchCents());
+        assertEquals(1, report.getMismatchedIds().size());
+    }
+
+    @Test
+    public void settleReturnsEmptyReportForAnEmptyPeriod() {
+        SettlementReport report = new SettlementService(dataBaseConfig, 500, 2, ZONE).settle(at(10, 0, 0), at(11, 0, 0));
+
+        assertNotNull(report);
+        assertEquals(0, report.getTotalTickets());
+    }
+
+    @Test
+    public void reportIsWrittenAsCompactLines(@TempDir Path directory) throws Exception {
+        SettlementReport report = new SettlementService(dataBaseConfig, 500, 2, ZONE).settle(at(4, 0, 0), at(5, 0, 0));
+        Path file = directory.resolve("settlement.csv");
+
+        report.writeTo(file);
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertTrue(lines.get(0).startsWith("# tickets=" + (TICKETS + 2)));
+        assertTrue(lines.contains("type,hour,discount,tickets,revenue"));
+        assertTrue(lines.contains("BIKE,10,false,2,7.0"));
+        assertTrue(lines.contains("CAR,10,true,2500,3550.0"));
+    }
+
+    @Test
+    public void priceOneCentOffIsNotAMismatch() throws Exception {
+        DataBaseConfig config = dataBase("settlementrounding");
+        Connection con = config.getConnection();
+        PreparedStatement ps = insertTicket(con);
+        // les heures relues à la seconde peuvent décaler le prix d'un centime, pas de deux
+        insert(ps, 1, 1.51, at(4, 9, 0), at(4, 10, 0));
+        insert(ps, 1, 1.52, at(4, 9, 0), at(4, 10, 0));
+        ps.executeBatch();
+        ps.close();
+        config.closeConnection(con);
+
+        SettlementReport report = new SettlementService(config, 500, 2, ZONE).settle(at(4, 0, 0), at(5, 0, 0));
+
+        assertEquals(2, report.getTotalTickets());
+        assertEquals(1, report.getMismatches());
+    }
+
+    @Test
+    public void ticketsAreCheckedAgainstTheTariffInForceAtTheirOutTime() throws Exception {
+        Properties doubled = new Properties();
+        doubled.setProperty("tariff.CAR.rate", "3.0");
+        TariffRegistry.install(Tariff.load(doubled));
+        Thread.sleep(10);
+        TariffRegistry.install(Tariff.defaults());
+        Date later = Date.from(LocalDateTime.now(ZONE).plusDays(1).withNano(0).atZone(ZONE).toInstant());
+
+        DataBaseConfig config = dataBase("settlementtariffs");
+        Connection con = config.getConnection();
+        PreparedStatement ps = insertTicket(con);
+        // sortis avant le changement de tarif : une heure à 3,0
+        insert(ps, 1, 3.0, at(4, 9, 0), at(4, 10, 0));
+        insert(ps, 1, 1.5, at(4, 9, 0), at(4, 10, 0));
+        // sorti après : une heure à 1,5
+        insert(ps, 1, 1.5, new Date(later.getTime() - 3_600_000), later);
+        ps.executeBatch();
+        ps.close();
+        config.closeConnection(con);
+
+        SettlementReport report = new SettlementService(config, 500, 2, ZONE)
+                .settle(at(4, 0, 0), new Date(later.getTime() + 3_600_000));
+
+        assertEquals(3, report.getTotalTickets());
+        assertEquals(1, report.getMismatches());
+        assertEquals(-150, report.getMismatchCents());
+    }
+}
@@ -0,0 +1,60 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.ShardRouter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardRouterTest {
+
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty("parkit.facilities");
+        System.clearProperty("parkit.facility.south.url");
+        System.clearProperty("parkit.facility");
+        System.clearProperty("parkit.db");
+    }
+
+    @Test
+    public void singleDefaultFacilityWithoutConfiguration() {
+        ShardRouter shardRouter = ShardRouter.fromSystemProperties();
+
+        assertEquals(Arrays.asList(ShardRouter.DEFAULT_FACILITY), new ArrayList<>(shardRouter.getFacilityIds()));
+        assertEquals(ShardRouter.DEFAULT_FACILITY, shardRouter.getSelectedFacilityId());
+        assertEquals(DataBaseConfig.class, shardRouter.route(ShardRouter.DEFAULT_FACILITY).getClass());
+    }
+
+    @Test
+    public void eachFacilityIsRoutedToItsOwnDatabase() {
+        System.setProperty("parkit.facilities", "north, south");
+        System.setProperty("parkit.facility.south.url", "jdbc:h2:mem:south;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+        System.setProperty("parkit.facility", "south");
+
+        ShardRouter shardRouter = ShardRouter.fromSystemProperties();
+
+        assertEquals(Arrays.asList("north", "south"), new ArrayList<>(shardRouter.getFacilityIds()));
+        assertEquals("south", shardRouter.getSelectedFacilityId());
+        assertEquals(DataBaseConfig.class, shardRouter.route("north").getClass());
+        assertTrue(shardRouter.route("south") instanceof EmbeddedDataBaseConfig);
+        assertThrows(IllegalArgumentException.class, () -> shardRouter.route("east"));
+    }
+
+    @Test
+    public void embeddedFacilitiesGetOneDatabaseFileEach() {
+        System.setProperty("parkit.facilities", "north,south");
+        System.setProperty("parkit.db", "embedded");
+        System.setProperty("parkit.facility", "east");
+
+        ShardRouter shardRouter = ShardRouter.fromSystemProperties();
+
+        assertTrue(shardRouter.route("north") instanceof EmbeddedDataBaseConfig);
+        assertNotSame(shardRouter.route("north"), shardRouter.route("south"));
+        assertThrows(IllegalArgumentException.class, shardRouter::getSelectedFacilityId);
+    }
+}
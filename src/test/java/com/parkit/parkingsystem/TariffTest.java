@@ -0,0 +1,151 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.FixedPointFareEngine;
+import com.parkit.parkingsystem.service.Tariff;
+import com.parkit.parkingsystem.service.TariffRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TariffTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    @AfterEach
+    public void clearTariff() {
+        TariffRegistry.clear();
+    }
+
+    private static long at(int day, int hour, int minute) {
+        return LocalDateTime.of(2024, 3, day, hour, minute).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static Tariff banded() {
+        Properties properties = new Properties();
+        properties.setProperty("tariff.CAR.rate", "1.5");
+        properties.setProperty("tariff.CAR.bands", "08:00-19:00@2.0,22:00-06:00@0.5");
+        properties.setProperty("tariff.CAR.dailyCap", "20");
+        return Tariff.load(properties);
+    }
+
+    @Test
+    public void defaultTariffMatchesFixedPointEngine() {
+        Tariff tariff = Tariff.defaults();
+        FixedPointFareEngine fareEngine = new FixedPointFareEngine();
+        Random random = new Random(15);
+        long now = System.currentTimeMillis();
+
+        for (int i = 0; i < 10_000; i++) {
+            ParkingType parkingType = random.nextBoolean() ? ParkingType.CAR : ParkingType.BIKE;
+            long inMillis = now - (long) (random.nextDouble() * 72 * HOUR);
+            boolean discount = random.nextBoolean();
+            assertEquals(fareEngine.priceCents(parkingType, inMillis, now, discount),
+                    tariff.priceCents(parkingType, inMillis, now, discount));
+        }
+    }
+
+    @Test
+    public void bandsArePricedByTimeOfDay() {
+        Tariff tariff = banded();
+
+        // 07:00-09:00 : une heure à 1,5 et une heure à 2,0
+        assertEquals(350, tariff.priceCents(ParkingType.CAR, at(4, 7, 0), at(4, 9, 0), false));
+        // 21:30-23:30 : la plage de nuit passe minuit
+        assertEquals(75 + 25 + 50, tariff.priceCents(ParkingType.CAR, at(4, 21, 30), at(4, 23, 30), false));
+        // moto sans plage ni plafond
+        assertEquals(300, tariff.priceCents(ParkingType.BIKE, at(4, 7, 0), at(4, 10, 0), false));
+        // délai de grâce
+        assertEquals(0, tariff.priceCents(ParkingType.CAR, at(4, 8, 0), at(4, 8, 30), false));
+    }
+
+    @Test
+    public void dailyCapAppliesPerCalendarDay() {
+        Tariff tariff = banded();
+
+        // journée complète : 8 h à 0,5 + 2 h à 1,5 + 11 h à 2,0 + 3 h à 1,5 = 33,5, plafonnée à 20
+        assertEquals(2000, tariff.priceCents(ParkingType.CAR, at(4, 0, 0), at(5, 0, 0), false));
+        // 18:00 le 4 -> 09:00 le 7 : 1 h à 2,0 + 3 h à 1,5 + 2 h à 0,5 le 4, deux jours plafonnés, 6 h à 0,5 + 2 h à 1,5 + 1 h à 2,0 le 7
+        assertEquals(200 + 450 + 100 + 2 * 2000 + 300 + 300 + 200,
+                tariff.priceCents(ParkingType.CAR, at(4, 18, 0), at(7, 9, 0), false));
+        assertEquals(Math.round(2000 * 30 * 0.95),
+                tariff.priceCents(ParkingType.CAR, at(1, 0, 0), at(31, 0, 0), true));
+    }
+
+    @Test
+    public void invalidTariffsAreRejected() {
+        Properties properties = new Properties();
+        properties.setProperty("tariff.CAR.bands", "08:00@2.0");
+        assertThrows(IllegalArgumentException.class, () -> Tariff.load(properties));
+
+        Properties discount = new Properties();
+        discount.setProperty("tariff.discountPercent", "120");
+        assertThrows(IllegalArgumentException.class, () -> Tariff.load(discount));
+
+        long now = System.currentTimeMillis();
+        assertThrows(IllegalArgumentException.class, () -> Tariff.defaults().priceCents(ParkingType.CAR, now, now - 1, false));
+    }
+
+    @Test
+    public void fareCalculatorUsesInstalledTariff() {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setInTime(new Date(at(4, 7, 0)));
+        ticket.setOutTime(new Date(at(4, 9, 0)));
+        FareCalculatorService fareCalculatorService = new FareCalculatorService();
+
+        fareCalculatorService.calculateFare(ticket);
+        assertEquals(3.0, ticket.getPrice());
+
+        TariffRegistry.install(banded());
+        fareCalculatorService.calculateFare(ticket);
+        assertEquals(3.5, ticket.getPrice());
+
+        ticket.setParkingSpot(null);
+        assertThrows(IllegalArgumentException.class, () -> fareCalculatorService.calculateFare(ticket));
+    }
+
+    @Test
+    public void tariffFileIsReloadedWhenChanged(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("tariff.properties");
+        Files.write(file, "tariff.CAR.rate=1.5\n".getBytes(StandardCharsets.ISO_8859_1));
+        TariffRegistry.install(Tariff.load(file));
+        ScheduledExecutorService reload = TariffRegistry.watch(file, 10, TimeUnit.MILLISECONDS);
+        try {
+            Files.write(file, "tariff.CAR.rate=3\n".getBytes(StandardCharsets.ISO_8859_1));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (TariffRegistry.current().priceCents(ParkingType.CAR, 0, HOUR, false) != 300
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(300, TariffRegistry.current().priceCents(ParkingType.CAR, 0, HOUR, false));
+
+            // un fichier invalide laisse le tarif en vigueur
+            Files.write(file, "tariff.CAR.rate=abc\n".getBytes(StandardCharsets.ISO_8859_1));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 120_000));
+            Thread.sleep(100);
+            assertEquals(300, TariffRegistry.current().priceCents(ParkingType.CAR, 0, HOUR, false));
+        } finally {
+            reload.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.config.SchemaMigrator;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketArchiver;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.SettlementService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketArchiverTest {
+
+    private static final long NOW = System.currentTimeMillis();
+    private static final long OLD = NOW - TimeUnit.DAYS.toMillis(200);
+
+    private DataBaseConfig dataBaseConfig;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        dataBaseConfig = new EmbeddedDataBaseConfig("jdbc:h2:mem:archive;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        assertTrue(new SchemaMigrator(dataBaseConfig, false).migrate());
+        try (Connection con = dataBaseConfig.getConnection(); Statement statement = con.createStatement()) {
+            statement.execute("delete from ticket");
+            statement.execute("delete from ticket_archive");
+            statement.execute("delete from vehicle_visit_summary");
+        }
+        // trois passages anciens et un récent pour LOYAL, un passage ancien pour GONE, un véhicule encore garé
+        insertTicket(1, "LOYAL", OLD, OLD + 3_600_000L);
+        insertTicket(2, "LOYAL", OLD + 86_400_000L, OLD + 90_000_000L);
+        insertTicket(1, "LOYAL", OLD + 172_800_000L, OLD + 180_000_000L);
+        insertTicket(4, "GONE", OLD + 3_600_000L, OLD + 7_200_000L);
+        insertTicket(1, "LOYAL", NOW - 7_200_000L, NOW - 3_600_000L);
+        insertTicket(2, "PARKED", OLD, null);
+    }
+
+    private void insertTicket(int parkingNumber, String vehicleRegNumber, long inTime, Long outTime) throws Exception {
+        try (Connection con = dataBaseConfig.getConnection();
+             PreparedStatement ps = con.prepareStatement("insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?, ?, 1.5, ?, ?)")) {
+            ps.setInt(1, parkingNumber);
+            ps.setString(2, vehicleRegNumber);
+            ps.setTimestamp(3, new Timestamp(inTime));
+            ps.setTimestamp(4, outTime == null ? null : new Timestamp(outTime));
+            ps.execute();
+        }
+    }
+
+    private int count(String sql) throws Exception {
+        try (Connection con = dataBaseConfig.getConnection(); Statement statement = con.createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void closedTicketsOlderThanTheRetentionAreMovedInChunks() throws Exception {
+        TicketArchiver ticketArchiver = new TicketArchiver(dataBaseConfig, TimeUnit.DAYS.toMillis(90), 3, 0);
+
+        assertEquals(4, ticketArchiver.archive());
+
+        // le ticket récent et le ticket ouvert restent dans la table des bornes
+        assertEquals(2, count("select count(*) from ticket"));
+        assertEquals(4, count("select count(*) from ticket_archive"));
+        assertEquals(3, count("select ARCHIVED_TICKETS from vehicle_visit_summary where VEHICLE_REG_NUMBER = 'LOYAL'"));
+        assertEquals(0, ticketArchiver.archive());
+        assertEquals(4, ticketArchiver.getArchivedTickets());
+    }
+
+    @Test
+    public void countsAndHistoryReadBothTiers() throws Exception {
+        new TicketArchiver(dataBaseConfig, TimeUnit.DAYS.toMillis(90), 1_000, 0).archive();
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+
+        assertEquals(4, ticketDAO.getNbTicket("LOYAL"));
+        assertEquals(1, ticketDAO.getNbTicket("GONE"));
+        assertTrue(ticketDAO.loadVisitCounts());
+        assertEquals(4, ticketDAO.getNbTicket("LOYAL"));
+        assertEquals(1, ticketDAO.getNbTicket("PARKED"));
+
+        Ticket gone = ticketDAO.getTicket("GONE");
+        assertNotNull(gone);
+        assertEquals(ParkingType.BIKE, gone.getParkingSpot().getParkingType());
+        assertEquals(OLD + 7_200_000L, gone.getOutTime().getTime(), 1_000);
+
+        // le règlement d'une période archivée relit l'archive
+        assertEquals(4, new SettlementService(dataBaseConfig, 500, 2, ZoneId.systemDefault())
+                .settle(new Date(OLD - 1_000), new Date(OLD + TimeUnit.DAYS.toMillis(3))).getTotalTickets());
+    }
+
+    @Test
+    public void closedTicketsAreNotUpdatedUnderTheArchiver() throws Exception {
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        Ticket gone = ticketDAO.getTicket("GONE");
+        gone.setOutTime(new Date());
+        gone.setPrice(9);
+
+        // une sortie rejouée sur un ticket fermé ne touche pas la ligne que l'archiveur copie
+        ticketDAO.updateTicket(gone);
+        assertEquals(0, count("select count(*) from ticket where VEHICLE_REG_NUMBER = 'GONE' and PRICE = 9"));
+
+        assertEquals(4, new TicketArchiver(dataBaseConfig, TimeUnit.DAYS.toMillis(90), 1_000, 0).archive());
+        assertEquals(0, count("select count(*) from ticket_archive where PRICE = 9"));
+    }
+}
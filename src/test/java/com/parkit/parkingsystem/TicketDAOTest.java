@@ -12,6 +12,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.Date;
 
@@ -32,7 +33,8 @@ public class TicketDAOTest {
         ticketDAO.dataBaseConfig = dataBaseConfig;
 
         when(dataBaseConfig.getConnection()).thenReturn(connection);
-        when(connection.prepareStatement(DBConstants.SAVE_TICKET)).thenReturn(preparedStatement);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(preparedStatement);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(mock(ResultSet.class));
 
         Ticket ticket = new Ticket();
         ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
@@ -111,6 +113,40 @@ public class TicketDAOTest {
         verify(dataBaseConfig, times(1)).closeConnection(connection);
     }
 
+    @Test
+    public void getTicketShouldReturnLastTicketWhenNoTicketIsOpen() throws Exception {
+        TicketDAO ticketDAO = new TicketDAO();
+
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement openTicket = mock(PreparedStatement.class);
+        PreparedStatement lastTicket = mock(PreparedStatement.class);
+        ResultSet noTicket = mock(ResultSet.class);
+        ResultSet resultSet = mock(ResultSet.class);
+
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.GET_TICKET)).thenReturn(openTicket);
+        when(connection.prepareStatement(DBConstants.GET_LAST_TICKET)).thenReturn(lastTicket);
+        when(openTicket.executeQuery()).thenReturn(noTicket);
+        when(lastTicket.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getInt(1)).thenReturn(1);
+        when(resultSet.getInt(2)).thenReturn(7);
+        when(resultSet.getTimestamp(4)).thenReturn(new Timestamp(System.currentTimeMillis() - 60 * 60 * 1000));
+        when(resultSet.getTimestamp(5)).thenReturn(new Timestamp(System.currentTimeMillis()));
+        when(resultSet.getString(6)).thenReturn(ParkingType.CAR.toString());
+
+        Ticket ticket = ticketDAO.getTicket("ABCDEF");
+
+        assertNotNull(ticket);
+        assertEquals(7, ticket.getId());
+        assertNotNull(ticket.getOutTime());
+        assertEquals(0, ticketDAO.activeTicketCache.size());
+        verify(dataBaseConfig, times(1)).closeConnection(connection);
+    }
+
     @Test
     public void getTicketShouldReturnNullWhenExceptionOccurs() throws Exception {
         TicketDAO ticketDAO = new TicketDAO();
@@ -138,6 +174,7 @@ public class TicketDAOTest {
 
         when(dataBaseConfig.getConnection()).thenReturn(connection);
         when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
 
         Ticket ticket = new Ticket();
         ticket.setId(7);
@@ -150,10 +187,35 @@ public class TicketDAOTest {
         boolean result = ticketDAO.updateTicket(ticket);
 
         assertTrue(result);
-        verify(preparedStatement, times(1)).execute();
+        verify(preparedStatement, times(1)).executeUpdate();
         verify(dataBaseConfig, times(1)).closeConnection(connection);
     }
 
+    @Test
+    public void updateTicketOfATicketAlreadyClosedFails() throws Exception {
+        TicketDAO ticketDAO = new TicketDAO();
+
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(preparedStatement);
+        // une autre borne a déjà fermé le ticket : OUT_TIME n'est plus nul, aucune ligne ne correspond
+        when(preparedStatement.executeUpdate()).thenReturn(0);
+
+        Ticket ticket = new Ticket();
+        ticket.setId(7);
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        ticketDAO.activeTicketCache.put(ticket);
+        ticket.setOutTime(new Date());
+
+        assertFalse(ticketDAO.updateTicket(ticket));
+        assertEquals(1, ticketDAO.activeTicketCache.size());
+    }
+
     @Test
     public void updateTicketShouldReturnFalseWhenExceptionOccurs() throws Exception {
         TicketDAO ticketDAO = new TicketDAO();
@@ -189,7 +251,7 @@ public class TicketDAOTest {
         ticketDAO.dataBaseConfig = dataBaseConfig;
 
         when(dataBaseConfig.getConnection()).thenReturn(connection);
-        when(connection.prepareStatement("SELECT COUNT(*) FROM ticket WHERE VEHICLE_REG_NUMBER=?"))
+        when(connection.prepareStatement(DBConstants.COUNT_TICKETS))
                 .thenReturn(preparedStatement);
         when(preparedStatement.executeQuery()).thenReturn(resultSet);
         when(resultSet.next()).thenReturn(true);
@@ -217,4 +279,124 @@ public class TicketDAOTest {
         assertEquals(0, count);
         verify(dataBaseConfig, times(1)).closeConnection(null);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void openTicketIsServedFromCacheAfterSave() throws Exception {
+        TicketDAO ticketDAO = new TicketDAO();
+
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet generatedKeys = mock(ResultSet.class);
+
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(preparedStatement);
+        when(preparedStatement.getGeneratedKeys()).thenReturn(generatedKeys);
+        when(generatedKeys.next()).thenReturn(true);
+        when(generatedKeys.getInt(1)).thenReturn(42);
+
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date());
+        ticketDAO.saveTicket(ticket);
+
+        Ticket cached = ticketDAO.getTicket("ABCDEF");
+
+        assertNotNull(cached);
+        assertEquals(42, cached.getId());
+        assertEquals(1, cached.getParkingSpot().getId());
+        assertEquals(1, ticketDAO.activeTicketCache.getHitCount());
+        verify(connection, never()).prepareStatement(DBConstants.GET_TICKET);
+    }
+
+    @Test
+    public void closedTicketIsRemovedFromCache() throws Exception {
+        TicketDAO ticketDAO = new TicketDAO();
+
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(preparedStatement);
+        when(preparedStatement.executeUpdate()).thenReturn(1);
+
+        Ticket ticket = new Ticket();
+        ticket.setId(7);
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        ticketDAO.activeTicketCache.put(ticket);
+
+        ticket.setOutTime(new Date());
+        assertTrue(ticketDAO.updateTicket(ticket));
+
+        assertEquals(0, ticketDAO.activeTicketCache.size());
+    }
+
+    @Test
+    public void loadActiveTicketsWarmsCacheFromOpenTickets() throws Exception {
+        TicketDAO ticketDAO = new TicketDAO();
+
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.GET_OPEN_TICKETS)).thenReturn(preparedStatement);
+        when(preparedStatement.executeQuery()).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true, true, false);
+        when(resultSet.getInt(1)).thenReturn(1, 4);
+        when(resultSet.getInt(2)).thenReturn(10, 11);
+        when(resultSet.getTimestamp(4)).thenReturn(new Timestamp(System.currentTimeMillis()));
+        when(resultSet.getString(6)).thenReturn("CAR", "BIKE");
+        when(resultSet.getString(7)).thenReturn("ABCDEF", "GHIJKL");
+
+        assertTrue(ticketDAO.loadActiveTickets());
+
+        assertEquals(2, ticketDAO.activeTicketCache.size());
+        Ticket bike = ticketDAO.getTicket("GHIJKL");
+        assertEquals(11, bike.getId());
+        assertEquals(ParkingType.BIKE, bike.getParkingSpot().getParkingType());
+        verify(connection, never()).prepareStatement(DBConstants.GET_TICKET);
+    }
+
+    @Test
+    public void getNbTicketUsesVisitCountsOnceLoaded() throws Exception {
+        TicketDAO ticketDAO = new TicketDAO();
+
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection connection = mock(Connection.class);
+        PreparedStatement countPerVehicle = mock(PreparedStatement.class);
+        ResultSet counts = mock(ResultSet.class);
+        PreparedStatement save = mock(PreparedStatement.class);
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.COUNT_TICKETS_PER_VEHICLE)).thenReturn(countPerVehicle);
+        when(countPerVehicle.executeQuery()).thenReturn(counts);
+        when(counts.next()).thenReturn(true, false);
+        when(counts.getString(1)).thenReturn("ABCDEF");
+        when(counts.getInt(2)).thenReturn(2);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(save);
+        when(save.getGeneratedKeys()).thenReturn(mock(ResultSet.class));
+
+        assertTrue(ticketDAO.loadVisitCounts());
+        assertEquals(2, ticketDAO.getNbTicket("ABCDEF"));
+
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date());
+        ticketDAO.saveTicket(ticket);
+
+        assertEquals(3, ticketDAO.getNbTicket("ABCDEF"));
+        assertEquals(0, ticketDAO.getNbTicket("GHIJKL"));
+        verify(connection, never()).prepareStatement(DBConstants.COUNT_TICKETS);
+    }
+}
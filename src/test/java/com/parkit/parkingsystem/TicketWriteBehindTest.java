@@ -0,0 +1,289 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketWriteBehind;
+import com.parkit.parkingsystem.dao.VisitCounter;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TicketWriteBehindTest {
+
+    private DataBaseConfig dataBaseConfig;
+    private Connection connection;
+    private PreparedStatement insert;
+    private PreparedStatement update;
+    private TicketWriteBehind writeBehind;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        dataBaseConfig = mock(DataBaseConfig.class);
+        connection = mock(Connection.class);
+        insert = mock(PreparedStatement.class);
+        update = mock(PreparedStatement.class);
+        ResultSet keys = mock(ResultSet.class);
+
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS)).thenReturn(insert);
+        when(connection.prepareStatement(DBConstants.UPDATE_TICKET)).thenReturn(update);
+        when(insert.getGeneratedKeys()).thenReturn(keys);
+        when(keys.next()).thenReturn(true);
+        when(keys.getInt(1)).thenReturn(101, 102, 103, 104, 105);
+        when(update.executeBatch()).thenReturn(new int[]{1});
+        when(update.executeUpdate()).thenReturn(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        writeBehind.close();
+    }
+
+    private static Ticket newTicket(String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        return ticket;
+    }
+
+    @Test
+    public void queuedSavesAreWrittenInOneBatchAndOneCommit() throws Exception {
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 5, 1_000, 100);
+
+        List<CompletableFuture<Boolean>> completions = new ArrayList<>();
+        List<Ticket> tickets = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Ticket ticket = newTicket("PLATE" + i);
+            tickets.add(ticket);
+            completions.add(writeBehind.enqueueSave(ticket));
+        }
+        for (CompletableFuture<Boolean> completion : completions) {
+            assertTrue(completion.get(5, TimeUnit.SECONDS));
+        }
+
+        verify(insert, times(5)).addBatch();
+        verify(insert, times(1)).executeBatch();
+        verify(connection, times(1)).commit();
+        assertEquals(101, tickets.get(0).getId());
+        assertEquals(105, tickets.get(4).getId());
+        assertEquals(1, writeBehind.getFlushedBatches());
+    }
+
+    @Test
+    public void ticketClosedBeforeItsInsertIsFlushedGetsTheGeneratedId() throws Exception {
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 2, 1_000, 100);
+        Ticket ticket = newTicket("ABCDEF");
+        writeBehind.enqueueSave(ticket);
+
+        // copie sans ID, comme celle renvoyée par le cache des tickets ouverts
+        Ticket closed = newTicket("ABCDEF");
+        closed.setOutTime(new Date());
+        closed.setPrice(1.5);
+        assertTrue(writeBehind.enqueueUpdate(closed).get(5, TimeUnit.SECONDS));
+
+        verify(update).setInt(3, 101);
+        verify(update, times(1)).executeBatch();
+        verify(connection, times(1)).commit();
+    }
+
+    @Test
+    public void failedFlushIsRolledBackAndReported() throws Exception {
+        when(insert.executeBatch()).thenThrow(new SQLException("DB error"));
+        when(insert.executeUpdate()).thenThrow(new SQLException("DB error"));
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 10, 10, 100);
+
+        assertFalse(writeBehind.enqueueSave(newTicket("ABCDEF")).get(5, TimeUnit.SECONDS));
+
+        verify(connection, times(1)).rollback();
+        assertEquals(1, writeBehind.getFailedWrites());
+    }
+
+    @Test
+    public void failingWriteDoesNotFailTheRestOfItsBatch() throws Exception {
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 2, 1_000, 100);
+        Ticket saved = newTicket("SAVED");
+        // fermeture d'un ticket dont aucun insert n'est connu : l'ID ne peut pas être retrouvé
+        Ticket unknown = newTicket("UNKNOWN");
+        unknown.setOutTime(new Date());
+
+        CompletableFuture<Boolean> save = writeBehind.enqueueSave(saved);
+        CompletableFuture<Boolean> exit = writeBehind.enqueueUpdate(unknown);
+
+        assertTrue(save.get(5, TimeUnit.SECONDS));
+        assertFalse(exit.get(5, TimeUnit.SECONDS));
+        verify(connection, times(1)).rollback();
+        verify(insert, times(1)).executeUpdate();
+        // l'ID du lot annulé est remplacé par celui de l'insert rejoué
+        assertEquals(102, saved.getId());
+        assertEquals(1, writeBehind.getFailedWrites());
+    }
+
+    @Test
+    public void vehicleLeavingAndComingBackInOneBatchClosesItsFirstTicket() throws Exception {
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 3, 1_000, 100);
+        Ticket first = newTicket("ABCDEF");
+        writeBehind.enqueueSave(first);
+        Ticket closed = newTicket("ABCDEF");
+        closed.setInTime(first.getInTime());
+        closed.setOutTime(new Date());
+        CompletableFuture<Boolean> exit = writeBehind.enqueueUpdate(closed);
+        Ticket second = newTicket("ABCDEF");
+        second.setInTime(new Date());
+        writeBehind.enqueueSave(second);
+
+        assertTrue(exit.get(5, TimeUnit.SECONDS));
+        verify(update).setInt(3, 101);
+        assertEquals(102, second.getId());
+    }
+
+    @Test
+    public void ticketDAOForgetsTicketsTheDatabaseRejected() throws Exception {
+        when(insert.executeBatch()).thenThrow(new SQLException("DB error"));
+        when(insert.executeUpdate()).thenThrow(new SQLException("DB error"));
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 10, 10, 100);
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.writeBehind = writeBehind;
+        ticketDAO.visitCounter = new VisitCounter();
+
+        assertFalse(ticketDAO.saveTicketAsync(newTicket("ABCDEF")).get(5, TimeUnit.SECONDS));
+
+        long deadline = System.currentTimeMillis() + 2_000;
+        while ((ticketDAO.activeTicketCache.size() > 0 || ticketDAO.getNbTicket("ABCDEF") > 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, ticketDAO.activeTicketCache.size());
+        assertEquals(0, ticketDAO.getNbTicket("ABCDEF"));
+    }
+
+    @Test
+    public void ticketAlreadyClosedFailsOnlyItsOwnUpdate() throws Exception {
+        Ticket first = newTicket("FIRST");
+        first.setId(7);
+        first.setOutTime(new Date());
+        Ticket second = newTicket("SECOND");
+        second.setId(8);
+        second.setOutTime(new Date());
+        // la sortie de FIRST a déjà été écrite par une autre borne
+        when(update.executeBatch()).thenReturn(new int[]{0, 1});
+        when(update.executeUpdate()).thenReturn(0, 1);
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 2, 1_000, 100);
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.writeBehind = writeBehind;
+
+        CompletableFuture<Boolean> closedTwice = ticketDAO.updateTicketAsync(first);
+        CompletableFuture<Boolean> closed = ticketDAO.updateTicketAsync(second);
+
+        assertTrue(closed.get(5, TimeUnit.SECONDS));
+        ExecutionException notOpen = assertThrows(ExecutionException.class, () -> closedTwice.get(5, TimeUnit.SECONDS));
+        assertTrue(notOpen.getCause() instanceof IllegalStateException);
+        // rien n'est à défaire : le ticket fermé ailleurs ne revient pas dans le cache des tickets ouverts
+        assertEquals(0, ticketDAO.activeTicketCache.size());
+        assertEquals(1, writeBehind.getFailedWrites());
+    }
+
+    @Test
+    public void fullQueueAppliesBackpressureThenRejects() throws Exception {
+        CountDownLatch databaseBlocked = new CountDownLatch(1);
+        when(dataBaseConfig.getConnection()).thenAnswer(invocation -> {
+            databaseBlocked.await(5, TimeUnit.SECONDS);
+            return connection;
+        });
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 1, 1, 1, 50);
+
+        writeBehind.enqueueSave(newTicket("FIRST"));
+        // le flusher est bloqué sur le premier ticket : le second remplit la file, le troisième est refusé
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (writeBehind.getQueueSize() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        writeBehind.enqueueSave(newTicket("SECOND"));
+        CompletableFuture<Boolean> rejected = writeBehind.enqueueSave(newTicket("THIRD"));
+        databaseBlocked.countDown();
+
+        assertFalse(rejected.get(1, TimeUnit.SECONDS));
+        assertEquals(1, writeBehind.getRejectedWrites());
+    }
+
+    @Test
+    public void closeFlushesWhatIsStillQueued() throws Exception {
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 1_000, 60_000, 100);
+        CompletableFuture<Boolean> completion = writeBehind.enqueueSave(newTicket("ABCDEF"));
+
+        writeBehind.close();
+
+        assertTrue(completion.isDone());
+        assertTrue(completion.get());
+    }
+
+    @Test
+    public void noWriteIsLeftPendingByClose() throws Exception {
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 10, 1, 100);
+        List<CompletableFuture<Boolean>> completions = new CopyOnWriteArrayList<>();
+        List<Thread> gates = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String gate = "GATE" + i;
+            Thread thread = new Thread(() -> {
+                // chaque borne écrit jusqu'à ce que la file refuse, pendant que close() s'exécute
+                for (int n = 0; ; n++) {
+                    CompletableFuture<Boolean> completion = writeBehind.enqueueSave(newTicket(gate + "-" + n));
+                    completions.add(completion);
+                    if (completion.isDone() && !completion.join()) {
+                        return;
+                    }
+                }
+            });
+            gates.add(thread);
+            thread.start();
+        }
+        Thread.sleep(20);
+
+        writeBehind.close();
+        for (Thread thread : gates) {
+            thread.join(5_000);
+        }
+
+        for (CompletableFuture<Boolean> completion : completions) {
+            assertTrue(completion.isDone());
+        }
+        assertFalse(writeBehind.enqueueUpdate(newTicket("LATE")).get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void ticketDAOInWriteBehindModeReturnsBeforeTheDatabaseWrite() throws Exception {
+        writeBehind = new TicketWriteBehind(dataBaseConfig, 100, 10, 10, 100);
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.writeBehind = writeBehind;
+        Ticket ticket = newTicket("ABCDEF");
+
+        CompletableFuture<Boolean> saved = ticketDAO.saveTicketAsync(ticket);
+
+        assertNotNull(ticketDAO.getTicket("ABCDEF"));
+        assertTrue(saved.get(5, TimeUnit.SECONDS));
+        assertEquals(101, ticket.getId());
+    }
+}
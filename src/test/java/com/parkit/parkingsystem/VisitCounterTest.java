@@ -0,0 +1,64 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.dao.VisitCounter;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class VisitCounterTest {
+
+    @Test
+    public void unknownPlateHasNoVisit() {
+        VisitCounter visitCounter = new VisitCounter();
+
+        assertEquals(0, visitCounter.get("ABCDEF"));
+    }
+
+    @Test
+    public void countsVisitsPerPlate() {
+        VisitCounter visitCounter = new VisitCounter();
+        visitCounter.add("ABCDEF", 3);
+        visitCounter.increment("ABCDEF");
+        visitCounter.increment("AB-123-CD");
+
+        assertEquals(4, visitCounter.get("ABCDEF"));
+        assertEquals(1, visitCounter.get("AB-123-CD"));
+        assertEquals(2, visitCounter.size());
+    }
+
+    @Test
+    public void platesDifferingOnlyByLengthOrCaseAreDistinct() {
+        VisitCounter visitCounter = new VisitCounter();
+        visitCounter.increment("A");
+        visitCounter.increment("A0");
+        visitCounter.increment("a");
+
+        assertEquals(1, visitCounter.get("A"));
+        assertEquals(1, visitCounter.get("A0"));
+        assertEquals(1, visitCounter.get("a"));
+    }
+
+    @Test
+    public void platesThatCannotBePackedAreStillCounted() {
+        VisitCounter visitCounter = new VisitCounter();
+        visitCounter.increment("ÉTÉ-2024");
+        visitCounter.increment("VERY-LONG-PLATE");
+        visitCounter.increment("VERY-LONG-PLATE");
+
+        assertEquals(1, visitCounter.get("ÉTÉ-2024"));
+        assertEquals(2, visitCounter.get("VERY-LONG-PLATE"));
+    }
+
+    @Test
+    public void keepsCountsWhileGrowing() {
+        VisitCounter visitCounter = new VisitCounter(16);
+        for (int i = 0; i < 100_000; i++) {
+            visitCounter.add("P" + i, i % 7 + 1);
+        }
+
+        assertEquals(100_000, visitCounter.size());
+        for (int i = 0; i < 100_000; i += 997) {
+            assertEquals(i % 7 + 1, visitCounter.get("P" + i));
+        }
+    }
+}